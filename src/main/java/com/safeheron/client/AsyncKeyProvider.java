@@ -0,0 +1,128 @@
+package com.safeheron.client;
+
+import com.safeheron.client.config.RSATypeEnum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Asynchronous variant of {@link KeyProvider} for keys held by a remote HSM or KMS.
+ * <p>
+ * Implementations that can sign or decrypt several payloads in one round-trip should override
+ * the batch methods; the defaults simply fan out to the single-item methods. Wrap an
+ * implementation in a {@link BatchingKeyProvider} to use it as the SDK's KeyProvider.
+ *
+ * @author safeheron
+ */
+public interface AsyncKeyProvider {
+    /**
+     * Sign content using RSA (PKCS#1 v1.5)
+     *
+     * @param content the content to sign
+     * @return future of the Base64-encoded signature
+     */
+    CompletableFuture<String> signAsync(String content);
+
+    /**
+     * Sign content using RSA-PSS
+     *
+     * @param content the content to sign
+     * @return future of the Base64-encoded RSA-PSS signature
+     */
+    CompletableFuture<String> signPSSAsync(String content);
+
+    /**
+     * Decrypt content using RSA
+     *
+     * @param content the Base64-encoded encrypted content
+     * @param rsaType the RSA algorithm type used for decryption
+     * @return future of the decrypted raw byte array
+     */
+    CompletableFuture<byte[]> decryptAsync(String content, RSATypeEnum rsaType);
+
+    /**
+     * Sign several contents using RSA (PKCS#1 v1.5)
+     *
+     * @param contents the contents to sign
+     * @return future of the Base64-encoded signatures, in the order of contents
+     */
+    default CompletableFuture<List<String>> signBatch(List<String> contents) {
+        return all(contents, this::signAsync);
+    }
+
+    /**
+     * Sign several contents using RSA-PSS
+     *
+     * @param contents the contents to sign
+     * @return future of the Base64-encoded RSA-PSS signatures, in the order of contents
+     */
+    default CompletableFuture<List<String>> signPSSBatch(List<String> contents) {
+        return all(contents, this::signPSSAsync);
+    }
+
+    /**
+     * Decrypt several contents using RSA
+     *
+     * @param contents the Base64-encoded encrypted contents
+     * @param rsaType  the RSA algorithm type used for decryption
+     * @return future of the decrypted raw byte arrays, in the order of contents
+     */
+    default CompletableFuture<List<byte[]>> decryptBatch(List<String> contents, RSATypeEnum rsaType) {
+        return all(contents, content -> decryptAsync(content, rsaType));
+    }
+
+    /**
+     * Run a synchronous KeyProvider on an executor
+     *
+     * @param keyProvider the synchronous KeyProvider
+     * @param executor    executor the KeyProvider calls are run on
+     * @return AsyncKeyProvider
+     */
+    static AsyncKeyProvider of(KeyProvider keyProvider, Executor executor) {
+        Objects.requireNonNull(keyProvider, "keyProvider must not be null");
+        Objects.requireNonNull(executor, "executor must not be null");
+        return new AsyncKeyProvider() {
+            @Override
+            public CompletableFuture<String> signAsync(String content) {
+                return CompletableFuture.supplyAsync(() -> keyProvider.sign(content), executor);
+            }
+
+            @Override
+            public CompletableFuture<String> signPSSAsync(String content) {
+                return CompletableFuture.supplyAsync(() -> keyProvider.signPSS(content), executor);
+            }
+
+            @Override
+            public CompletableFuture<byte[]> decryptAsync(String content, RSATypeEnum rsaType) {
+                return CompletableFuture.supplyAsync(() -> keyProvider.decrypt(content, rsaType), executor);
+            }
+        };
+    }
+
+    /**
+     * Call the single-item method for every input and collect the results in input order
+     *
+     * @param inputs inputs
+     * @param call   single-item call
+     * @param <I>    input type
+     * @param <O>    result type
+     * @return future of all results
+     */
+    static <I, O> CompletableFuture<List<O>> all(List<I> inputs, Function<I, CompletableFuture<O>> call) {
+        List<CompletableFuture<O>> futures = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            futures.add(call.apply(input));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<O> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<O> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+}
@@ -0,0 +1,247 @@
+package com.safeheron.client;
+
+import com.safeheron.client.config.RSATypeEnum;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * KeyProvider that coalesces concurrent calls into batch calls on an {@link AsyncKeyProvider}.
+ * <p>
+ * The first call of a batch opens a window of {@code windowMillis}; every call of the same kind
+ * arriving within the window joins the batch, which is sent as one {@code signBatch},
+ * {@code signPSSBatch} or {@code decryptBatch} call when the window closes or
+ * {@code maxBatchSize} is reached. Use it as SafeheronConfig's keyProvider to route the
+ * request signatures and response key decryption through a remote HSM or KMS.
+ *
+ * <pre>
+ * SafeheronConfig config = SafeheronConfig.builder()
+ *         ...
+ *         .keyProvider(new BatchingKeyProvider(myKmsKeyProvider, 5, 64))
+ *         .build();
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class BatchingKeyProvider implements KeyProvider, AsyncKeyProvider, Closeable {
+
+    private final AsyncKeyProvider delegate;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final Batcher<String, String> signBatcher;
+    private final Batcher<String, String> signPSSBatcher;
+    private final Map<RSATypeEnum, Batcher<String, byte[]>> decryptBatchers = new EnumMap<>(RSATypeEnum.class);
+    private volatile boolean closed;
+
+    /**
+     * BatchingKeyProvider
+     *
+     * @param delegate     the AsyncKeyProvider batches are sent to
+     * @param windowMillis how long the first call of a batch waits for others to join
+     * @param maxBatchSize maximum number of calls in one batch
+     */
+    public BatchingKeyProvider(AsyncKeyProvider delegate, long windowMillis, int maxBatchSize) {
+        if (windowMillis < 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("windowMillis must not be negative and maxBatchSize must be positive");
+        }
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "safeheron-key-provider-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.signBatcher = new Batcher<>(delegate::signBatch);
+        this.signPSSBatcher = new Batcher<>(delegate::signPSSBatch);
+        for (RSATypeEnum rsaType : RSATypeEnum.values()) {
+            decryptBatchers.put(rsaType, new Batcher<>(contents -> delegate.decryptBatch(contents, rsaType)));
+        }
+    }
+
+    @Override
+    public String sign(String content) {
+        return await(signAsync(content), "Failed to sign content with RSA");
+    }
+
+    @Override
+    public String signPSS(String content) {
+        return await(signPSSAsync(content), "Failed to sign content with RSA-PSS");
+    }
+
+    @Override
+    public byte[] decrypt(String content, RSATypeEnum rsaType) {
+        return await(decryptAsync(content, rsaType), "Failed to decrypt content with RSA");
+    }
+
+    @Override
+    public CompletableFuture<String> signAsync(String content) {
+        return signBatcher.submit(content);
+    }
+
+    @Override
+    public CompletableFuture<String> signPSSAsync(String content) {
+        return signPSSBatcher.submit(content);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> decryptAsync(String content, RSATypeEnum rsaType) {
+        return decryptBatchers.get(rsaType).submit(content);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> signBatch(List<String> contents) {
+        return delegate.signBatch(contents);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> signPSSBatch(List<String> contents) {
+        return delegate.signPSSBatch(contents);
+    }
+
+    @Override
+    public CompletableFuture<List<byte[]>> decryptBatch(List<String> contents, RSATypeEnum rsaType) {
+        return delegate.decryptBatch(contents, rsaType);
+    }
+
+    /**
+     * Stop the window timer. Calls already waiting in a window are sent immediately; calls made
+     * afterwards fail with an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        // set before the flushes take the batchers' locks, so no call can join a batch after them
+        closed = true;
+        signBatcher.flush(-1);
+        signPSSBatcher.flush(-1);
+        for (Batcher<String, byte[]> batcher : decryptBatchers.values()) {
+            batcher.flush(-1);
+        }
+        scheduler.shutdown();
+    }
+
+    private static <T> T await(CompletableFuture<T> future, String message) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(message, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(message, e.getCause());
+        }
+    }
+
+    private static final class Call<I, O> {
+        private final I input;
+        private final CompletableFuture<O> result = new CompletableFuture<>();
+
+        private Call(I input) {
+            this.input = input;
+        }
+    }
+
+    private final class Batcher<I, O> {
+        private final Function<List<I>, CompletableFuture<List<O>>> batchCall;
+        private final ReentrantLock lock = new ReentrantLock();
+        private List<Call<I, O>> pending = new ArrayList<>();
+        private long generation;
+
+        private Batcher(Function<List<I>, CompletableFuture<List<O>>> batchCall) {
+            this.batchCall = batchCall;
+        }
+
+        CompletableFuture<O> submit(I input) {
+            Call<I, O> call = new Call<>(input);
+            List<Call<I, O>> full = null;
+            lock.lock();
+            try {
+                if (closed) {
+                    call.result.completeExceptionally(new IllegalStateException("BatchingKeyProvider is closed"));
+                    return call.result;
+                }
+                pending.add(call);
+                if (pending.size() >= maxBatchSize) {
+                    full = pending;
+                    pending = new ArrayList<>();
+                    generation++;
+                } else if (pending.size() == 1) {
+                    // under the lock: close() shuts the scheduler down only after flushing, which takes it
+                    long windowGeneration = generation;
+                    scheduler.schedule(() -> flush(windowGeneration), windowMillis, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (full != null) {
+                dispatch(full);
+            }
+            return call.result;
+        }
+
+        /**
+         * Send the pending batch if it is still the one whose window expired, or any batch when expected is -1
+         */
+        void flush(long expectedGeneration) {
+            List<Call<I, O>> batch;
+            lock.lock();
+            try {
+                if (pending.isEmpty() || (expectedGeneration >= 0 && expectedGeneration != generation)) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                generation++;
+            } finally {
+                lock.unlock();
+            }
+            dispatch(batch);
+        }
+
+        private void dispatch(List<Call<I, O>> batch) {
+            List<I> inputs = new ArrayList<>(batch.size());
+            for (Call<I, O> call : batch) {
+                inputs.add(call.input);
+            }
+            CompletableFuture<List<O>> future;
+            try {
+                future = batchCall.apply(inputs);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((results, throwable) -> {
+                if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                    throwable = throwable.getCause();
+                }
+                if (throwable == null && (results == null || results.size() != batch.size())) {
+                    throwable = new IllegalStateException("batch returned " + (results == null ? 0 : results.size())
+                            + " results for " + batch.size() + " calls");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    if (throwable != null) {
+                        batch.get(i).result.completeExceptionally(throwable);
+                    } else {
+                        batch.get(i).result.complete(results.get(i));
+                    }
+                }
+            });
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.safeheron.client;
 import com.safeheron.client.config.RSATypeEnum;
 import com.safeheron.client.utils.RsaUtil;
 
+import java.security.PrivateKey;
 import java.util.Objects;
 
 /**
@@ -12,9 +13,18 @@ import java.util.Objects;
  */
 public final class DefaultPrivateKeyProvider implements KeyProvider {
 
-    private final String privateKey;
+    private final PrivateKey privateKey;
 
     public DefaultPrivateKeyProvider(String privateKey) {
+        Objects.requireNonNull(privateKey, "privateKey must not be null");
+        try {
+            this.privateKey = RsaUtil.getPrivateKey(privateKey);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse RSA private key", e);
+        }
+    }
+
+    public DefaultPrivateKeyProvider(PrivateKey privateKey) {
         this.privateKey = Objects.requireNonNull(privateKey, "privateKey must not be null");
     }
 
@@ -27,6 +37,15 @@ public final class DefaultPrivateKeyProvider implements KeyProvider {
         }
     }
 
+    @Override
+    public String sign(byte[] content, int offset, int length) {
+        try {
+            return RsaUtil.sign(content, offset, length, privateKey);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to sign content with RSA", e);
+        }
+    }
+
     @Override
     public String signPSS(String content) {
         try {
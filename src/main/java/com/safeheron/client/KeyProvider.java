@@ -2,6 +2,8 @@ package com.safeheron.client;
 
 import com.safeheron.client.config.RSATypeEnum;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * KeyProvider interface for signing and decryption capabilities.
  * This is the single extension point for self-managed key solutions.
@@ -17,6 +19,20 @@ public interface KeyProvider {
      */
     String sign(String content);
 
+    /**
+     * Sign UTF-8 encoded content using RSA (PKCS#1 v1.5).
+     * <p>Used on the request path so the signed content never has to be built as a String;
+     * the default implementation decodes it and delegates to {@link #sign(String)}.</p>
+     *
+     * @param content buffer holding the UTF-8 encoded content to sign
+     * @param offset  offset of the content in the buffer
+     * @param length  length of the content
+     * @return the Base64-encoded signature
+     */
+    default String sign(byte[] content, int offset, int length) {
+        return sign(new String(content, offset, length, StandardCharsets.UTF_8));
+    }
+
     /**
      * Sign content using RSA-PSS
      *
@@ -0,0 +1,43 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Sharding and parallelism of a {@link com.safeheron.client.sync.TransactionBackfill}
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class BackfillConfig {
+    /**
+     * Shards scanned at once; keep within the transport's maxRequestsPerHost and connection pool
+     */
+    @Builder.Default
+    private Integer parallelism = 8;
+
+    /**
+     * Equal time windows the range is split into before any density is known
+     */
+    @Builder.Default
+    private Integer initialShards = 16;
+
+    /**
+     * Transactions a shard should hold; a shard estimated to hold more is split further
+     */
+    @Builder.Default
+    private Integer targetShardSize = 10000;
+
+    /**
+     * Shards are not split below this time span, in milliseconds
+     */
+    @Builder.Default
+    private Long minShardMillis = 60000L;
+
+    /**
+     * Transactions per page, at most 500
+     */
+    @Builder.Default
+    private Long pageSize = 500L;
+}
@@ -0,0 +1,56 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Settings of the circuit breakers guarding the API endpoints, see
+ * {@link com.safeheron.client.resilience.CircuitBreakerRegistry}
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class CircuitBreakerConfig {
+    /**
+     * Number of most recent calls the failure and slow-call rates are computed over
+     */
+    @Builder.Default
+    private Integer slidingWindowSize = 20;
+
+    /**
+     * Calls that must be recorded before the rates can open the circuit
+     */
+    @Builder.Default
+    private Integer minimumCalls = 10;
+
+    /**
+     * Percentage of failed calls, connection errors, timeouts and HTTP 5xx, that opens the circuit
+     */
+    @Builder.Default
+    private Double failureRateThreshold = 50.0;
+
+    /**
+     * A call taking at least this long to return its response headers counts as slow, in milliseconds
+     */
+    @Builder.Default
+    private Long slowCallDurationMillis = 5000L;
+
+    /**
+     * Percentage of slow calls that opens the circuit
+     */
+    @Builder.Default
+    private Double slowCallRateThreshold = 80.0;
+
+    /**
+     * How long an open circuit refuses calls before letting trial calls through, in milliseconds
+     */
+    @Builder.Default
+    private Long openDurationMillis = 30000L;
+
+    /**
+     * Number of trial calls let through by a half-open circuit; their outcome closes or reopens it
+     */
+    @Builder.Default
+    private Integer halfOpenCalls = 3;
+}
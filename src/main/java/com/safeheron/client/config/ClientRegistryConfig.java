@@ -0,0 +1,31 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Bounds of a {@link com.safeheron.client.utils.ClientRegistry}
+ * <p>
+ * API keys with equal {@link TransportConfig}s share one OkHttp dispatcher and connection pool.
+ * Their limits still apply per API key: the shared dispatcher admits maxRequestsPerHost, 5 by
+ * default, times the number of API keys on it, and the pool keeps maxIdleConnections times
+ * maxClients idle connections.
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class ClientRegistryConfig {
+    /**
+     * API keys kept at most; beyond it the least recently used one is evicted. Unbounded if not set
+     */
+    @Builder.Default
+    private Integer maxClients = 1000;
+
+    /**
+     * Time after which an API key that has not been used is evicted, in milliseconds; API keys do
+     * not expire if not set
+     */
+    @Builder.Default
+    private Long idleTimeoutMillis = 1800000L;
+}
@@ -0,0 +1,23 @@
+package com.safeheron.client.config;
+
+/**
+ * JCA provider used for the AES envelope encryption
+ */
+public enum CryptoProviderEnum {
+
+    /**
+     * Use the JDK provider for every algorithm it supports and produces identical output for,
+     * falling back to BouncyCastle otherwise
+     */
+    AUTO,
+
+    /**
+     * Always use the JDK provider (SunJCE), which uses AES-NI/GHASH intrinsics where available
+     */
+    JDK,
+
+    /**
+     * Always use BouncyCastle
+     */
+    BOUNCY_CASTLE
+}
@@ -0,0 +1,22 @@
+package com.safeheron.client.config;
+
+/**
+ * What the crypto executor does with a task when all workers are busy and its queue is full
+ */
+public enum CryptoRejectionPolicyEnum {
+
+    /**
+     * Run the task on the submitting thread, which slows the submitter down to the pool's pace
+     */
+    CALLER_RUNS,
+
+    /**
+     * Block the submitting thread until the queue has room
+     */
+    BLOCK,
+
+    /**
+     * Fail the task with a RejectedExecutionException
+     */
+    ABORT
+}
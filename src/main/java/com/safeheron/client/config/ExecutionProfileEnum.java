@@ -0,0 +1,18 @@
+package com.safeheron.client.config;
+
+/**
+ * Threads that run the API client's enqueued calls
+ */
+public enum ExecutionProfileEnum {
+
+    /**
+     * OkHttp's default dispatcher pool of platform threads
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * A new virtual thread per call on Java 21 and later, so that a call blocked on the network
+     * does not hold a platform thread. On older runtimes this falls back to platform threads.
+     */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,24 @@
+package com.safeheron.client.config;
+
+/**
+ * HTTP protocol used by the API client
+ */
+public enum HttpProtocolEnum {
+
+    /**
+     * HTTP/1.1 only; concurrent calls each need their own connection
+     */
+    HTTP_1_1,
+
+    /**
+     * HTTP/2 over TLS, negotiated through ALPN, multiplexing concurrent calls over one connection.
+     * Falls back to HTTP/1.1 when the server or the JVM does not negotiate h2.
+     */
+    HTTP_2,
+
+    /**
+     * Cleartext HTTP/2 with prior knowledge (h2c), for local stand-ins and proxies that speak
+     * HTTP/2 without TLS. There is no fallback: the server must accept HTTP/2.
+     */
+    H2_PRIOR_KNOWLEDGE
+}
@@ -0,0 +1,46 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client-side rate limits of one API key, see {@link com.safeheron.client.resilience.RateLimiter}
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class RateLimitConfig {
+    /**
+     * Calls per second allowed for the API key across all endpoints, unlimited if not set
+     */
+    private Double permitsPerSecond;
+
+    /**
+     * Calls that may go out at once after an idle period, one second's worth by default
+     */
+    private Integer burst;
+
+    /**
+     * Calls per second allowed per endpoint path, e.g. "/v2/transactions/create", on top of the
+     * API key limit. Each endpoint may burst one second's worth.
+     */
+    @Builder.Default
+    private Map<String, Double> endpointPermitsPerSecond = new HashMap<>();
+
+    /**
+     * What the interceptor does when no permit is available, BLOCK by default
+     */
+    @Builder.Default
+    private RateLimitModeEnum mode = RateLimitModeEnum.BLOCK;
+
+    /**
+     * Longest a call waits for a permit, in milliseconds; calls that would wait longer fail with a
+     * RateLimitExceededException instead
+     */
+    @Builder.Default
+    private Long maxWaitMillis = 10000L;
+}
@@ -0,0 +1,17 @@
+package com.safeheron.client.config;
+
+/**
+ * What a call does when the client-side rate limit has no permit for it
+ */
+public enum RateLimitModeEnum {
+
+    /**
+     * Wait for a permit, up to the configured maximum wait
+     */
+    BLOCK,
+
+    /**
+     * Fail at once with a RateLimitExceededException, before the request envelope is built
+     */
+    FAIL_FAST
+}
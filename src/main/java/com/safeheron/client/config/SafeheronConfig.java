@@ -2,9 +2,15 @@ package com.safeheron.client.config;
 
 import com.safeheron.client.DefaultPrivateKeyProvider;
 import com.safeheron.client.KeyProvider;
+import com.safeheron.client.converter.EnvelopeKeyPool;
+import com.safeheron.client.resilience.CircuitBreakerRegistry;
+import com.safeheron.client.resilience.RateLimiter;
+import com.safeheron.client.utils.CryptoStageTimings;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.concurrent.Executor;
+
 /**
  * @author safeheron
  */
@@ -50,6 +56,62 @@ public class SafeheronConfig {
     @Builder.Default
     private Long requestTimeout = 20000L;
 
+    /**
+     * Connection pool, dispatcher and socket settings of the HTTP client
+     */
+    @Builder.Default
+    private TransportConfig transport = TransportConfig.builder().build();
+
+    /**
+     * JCA provider used for the AES envelope encryption, AUTO by default
+     */
+    @Builder.Default
+    private CryptoProviderEnum cryptoProvider = CryptoProviderEnum.AUTO;
+
+    /**
+     * Optional pool of pre-generated request envelope keys, built for the same safeheronRsaPublicKey.
+     * Without it every request generates its envelope key on the calling thread.
+     */
+    private EnvelopeKeyPool envelopeKeyPool;
+
+    /**
+     * Decrypt and parse responses as a stream (Base64 decode, AES decrypt and JSON parsing chained),
+     * which keeps peak memory per response near one copy of the payload. Off by default.
+     */
+    @Builder.Default
+    private Boolean streamingResponse = false;
+
+    /**
+     * Verify the response signature and decrypt the response key concurrently on the crypto executor
+     * instead of one after the other. Off by default.
+     */
+    @Builder.Default
+    private Boolean overlapVerifyAndDecrypt = false;
+
+    /**
+     * Executor for RSA private-key operations (request signing and response key decryption), typically a
+     * {@link com.safeheron.client.utils.CryptoExecutor}. If not set they run on the OkHttp thread, unless
+     * overlapVerifyAndDecrypt is on, in which case a shared CryptoExecutor sized to the available processors is used.
+     */
+    private Executor cryptoExecutor;
+
+    /**
+     * Circuit breakers guarding the API endpoints; calls are not guarded if not set
+     */
+    private CircuitBreakerRegistry circuitBreakers;
+
+    /**
+     * Client-side rate limiter of this API key, built from a {@link RateLimitConfig}; calls are not
+     * limited if not set
+     */
+    private RateLimiter rateLimiter;
+
+    /**
+     * Per-stage timings of response processing, shared by all converters of the client
+     */
+    @Builder.Default
+    private CryptoStageTimings cryptoStageTimings = new CryptoStageTimings();
+
     public KeyProvider getKeyProvider() {
         if (keyProvider != null) {
             return keyProvider;
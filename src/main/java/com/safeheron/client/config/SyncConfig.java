@@ -0,0 +1,61 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checkpoint, polling and re-check settings of a {@link com.safeheron.client.sync.TransactionSync}
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class SyncConfig {
+    /**
+     * File the checkpoint is kept in; it is replaced by atomic rename, so its directory must allow
+     * creating a temporary file next to it
+     */
+    private String checkpointFile;
+
+    /**
+     * completedTime, UNIX timestamp (ms), to sync from when there is no checkpoint yet; the whole
+     * history if not set
+     */
+    private Long startCompletedTime;
+
+    /**
+     * Time between sync passes of {@link com.safeheron.client.sync.TransactionSync#start()}, in milliseconds
+     */
+    @Builder.Default
+    private Long pollIntervalMillis = 10000L;
+
+    /**
+     * Each completedTime scan starts this far before the watermark, to pick up transactions that
+     * became visible late, in milliseconds
+     */
+    @Builder.Default
+    private Long watermarkOverlapMillis = 60000L;
+
+    /**
+     * Transactions created within this window are re-checked every pass for status changes, in
+     * milliseconds
+     */
+    @Builder.Default
+    private Long recheckWindowMillis = 86400000L;
+
+    /**
+     * Transactions per page, at most 500
+     */
+    @Builder.Default
+    private Long pageSize = 500L;
+
+    /**
+     * Transaction statuses after which a transaction no longer changes
+     */
+    @Builder.Default
+    private Set<String> terminalStatuses = new HashSet<>(Arrays.asList("COMPLETED", "FAILED", "REJECTED", "CANCELLED"));
+}
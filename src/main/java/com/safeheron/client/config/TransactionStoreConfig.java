@@ -0,0 +1,54 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Location and layout of a {@link com.safeheron.client.store.TransactionStore}
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class TransactionStoreConfig {
+    /**
+     * Directory of the store's segment files, created if missing; one store per directory
+     */
+    private String directory;
+
+    /**
+     * Size of a segment file, which is memory-mapped whole, in bytes
+     */
+    @Builder.Default
+    private Integer segmentSizeBytes = 64 * 1024 * 1024;
+
+    /**
+     * Initial slots of each index; an index doubles when it is 70% full
+     */
+    @Builder.Default
+    private Integer initialIndexCapacity = 1 << 16;
+
+    /**
+     * {@link com.safeheron.client.store.TransactionStore#compact()} rewrites segments whose share
+     * of current records has fallen below this fraction
+     */
+    @Builder.Default
+    private Double compactionThreshold = 0.5;
+
+    /**
+     * Force every write to disk before put returns; otherwise writes reach disk with
+     * {@link com.safeheron.client.store.TransactionStore#flush()} or when the OS writes them back
+     */
+    @Builder.Default
+    private Boolean forceOnWrite = false;
+
+    /**
+     * Transaction statuses served from the store without asking the API
+     */
+    @Builder.Default
+    private Set<String> terminalStatuses = new HashSet<>(Arrays.asList("COMPLETED", "FAILED", "REJECTED", "CANCELLED"));
+}
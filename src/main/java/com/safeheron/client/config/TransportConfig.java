@@ -0,0 +1,78 @@
+package com.safeheron.client.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * HTTP transport settings of the API client.
+ * <p>
+ * OkHttp only runs {@code maxRequestsPerHost} enqueued calls to the Safeheron API at a time and
+ * queues the rest inside its dispatcher, so this is the setting that bounds a client's
+ * asynchronous concurrency; calls made with {@code execute} run on the calling thread.
+ * The connection pool should keep at least as many idle connections, otherwise connections
+ * are closed and re-established between bursts. With HTTP/2 concurrent calls share a few
+ * multiplexed connections instead.
+ * <p>
+ * With the VIRTUAL_THREADS execution profile every enqueued call runs on its own virtual thread;
+ * raise maxRequests and maxRequestsPerHost along with it, as they still bound how many calls are
+ * in flight.
+ *
+ * @author safeheron
+ */
+@Data
+@Builder(toBuilder = true)
+public class TransportConfig {
+    /**
+     * HTTP protocol, HTTP/1.1 by default
+     */
+    @Builder.Default
+    private HttpProtocolEnum protocol = HttpProtocolEnum.HTTP_1_1;
+
+    /**
+     * Threads running enqueued calls, PLATFORM_THREADS by default
+     */
+    @Builder.Default
+    private ExecutionProfileEnum executionProfile = ExecutionProfileEnum.PLATFORM_THREADS;
+
+    /**
+     * Maximum number of calls running at once, across all hosts
+     */
+    @Builder.Default
+    private Integer maxRequests = 64;
+
+    /**
+     * Maximum number of calls running at once to one host
+     */
+    @Builder.Default
+    private Integer maxRequestsPerHost = 5;
+
+    /**
+     * Maximum number of idle connections kept in the connection pool
+     */
+    @Builder.Default
+    private Integer maxIdleConnections = 5;
+
+    /**
+     * How long an idle connection is kept alive in the pool, in milliseconds
+     */
+    @Builder.Default
+    private Long keepAliveDuration = 300000L;
+
+    /**
+     * Let OkHttp silently repeat a request when a pooled connection turns out to be broken, true by
+     * default. This also repeats writes, whether they carry a customerRefId or not; turn it off when
+     * retries are left to {@link com.safeheron.client.resilience.RetryExecutor}.
+     */
+    @Builder.Default
+    private Boolean retryOnConnectionFailure = true;
+
+    /**
+     * Socket send buffer size (SO_SNDBUF) in bytes, the operating system default if not set
+     */
+    private Integer sendBufferSize;
+
+    /**
+     * Socket receive buffer size (SO_RCVBUF) in bytes, the operating system default if not set
+     */
+    private Integer receiveBufferSize;
+}
@@ -3,8 +3,13 @@ package com.safeheron.client.converter;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.safeheron.client.KeyProvider;
+import com.safeheron.client.config.CryptoProviderEnum;
 import com.safeheron.client.config.SafeheronConfig;
+import com.safeheron.client.utils.CryptoStageTimings;
+import com.safeheron.client.utils.CryptoStages;
 import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.RsaUtil;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Converter;
@@ -12,6 +17,8 @@ import retrofit2.Retrofit;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.security.PublicKey;
+import java.util.concurrent.Executor;
 
 /**
  * @author safeheron
@@ -19,14 +26,34 @@ import java.lang.reflect.Type;
 public class ConverterFactory extends Converter.Factory {
 
     private static ObjectMapper mapper = JsonUtil.getObjectMapper();
-    private SafeheronConfig config;
+    private final PublicKey safeheronRsaPublicKey;
+    private final KeyProvider keyProvider;
+    private final CryptoProviderEnum cryptoProvider;
+    private final boolean streamingResponse;
+    private final Executor cryptoExecutor;
+    private final boolean overlapVerifyAndDecrypt;
+    private final CryptoStageTimings timings;
 
     public static ConverterFactory create(SafeheronConfig config) {
         return new ConverterFactory(config);
     }
 
     private ConverterFactory(SafeheronConfig config) {
-        this.config = config;
+        try {
+            this.safeheronRsaPublicKey = RsaUtil.getPublicKey(config.getSafeheronRsaPublicKey());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Safeheron RSA public key", e);
+        }
+        this.keyProvider = config.getKeyProvider();
+        this.cryptoProvider = config.getCryptoProvider();
+        this.streamingResponse = Boolean.TRUE.equals(config.getStreamingResponse());
+        this.overlapVerifyAndDecrypt = Boolean.TRUE.equals(config.getOverlapVerifyAndDecrypt());
+        if (config.getCryptoExecutor() != null) {
+            this.cryptoExecutor = config.getCryptoExecutor();
+        } else {
+            this.cryptoExecutor = overlapVerifyAndDecrypt ? CryptoStages.defaultExecutor() : null;
+        }
+        this.timings = config.getCryptoStageTimings() != null ? config.getCryptoStageTimings() : new CryptoStageTimings();
     }
 
     @Override
@@ -34,8 +61,8 @@ public class ConverterFactory extends Converter.Factory {
                                                             Retrofit retrofit) {
         JavaType javaType = mapper.getTypeFactory().constructType(type);
         ObjectReader reader = mapper.readerFor(javaType);
-        return new ResponseBodyConverter<>(reader,
-                config.getSafeheronRsaPublicKey(), config.getKeyProvider());
+        return new ResponseBodyConverter<>(reader, safeheronRsaPublicKey, keyProvider, cryptoProvider,
+                streamingResponse, cryptoExecutor, overlapVerifyAndDecrypt, timings);
     }
 
     @Override
@@ -0,0 +1,50 @@
+package com.safeheron.client.converter;
+
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.RsaUtil;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * Single-use AES key and IV of a request envelope, together with their RSA-OAEP encryption
+ * under the Safeheron public key
+ *
+ * @author safeheron
+ */
+final class EnvelopeKey {
+
+    private final byte[] aesKey;
+    private final byte[] iv;
+    private final String encryptedKey;
+
+    private EnvelopeKey(byte[] aesKey, byte[] iv, String encryptedKey) {
+        this.aesKey = aesKey;
+        this.iv = iv;
+        this.encryptedKey = encryptedKey;
+    }
+
+    static EnvelopeKey generate(PublicKey safeheronRsaPublicKey) throws Exception {
+        byte[] aesKey = AesUtil.generateAESKey();
+        byte[] ivKey = AesUtil.generateIvKey();
+
+        // Use Safeheron RSA public key to encrypt request's aesKey and aesIv
+        byte[] sourceKey = Arrays.copyOf(aesKey, aesKey.length + ivKey.length);
+        System.arraycopy(ivKey, 0, sourceKey, aesKey.length, ivKey.length);
+        String rsaEncryptResult = RsaUtil.encrypt(sourceKey, safeheronRsaPublicKey, RSATypeEnum.ECB_OAEP);
+        return new EnvelopeKey(aesKey, ivKey, rsaEncryptResult);
+    }
+
+    byte[] getAesKey() {
+        return aesKey;
+    }
+
+    byte[] getIv() {
+        return iv;
+    }
+
+    String getEncryptedKey() {
+        return encryptedKey;
+    }
+}
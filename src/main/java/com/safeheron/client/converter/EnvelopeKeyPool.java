@@ -0,0 +1,143 @@
+package com.safeheron.client.converter;
+
+import com.safeheron.client.utils.RsaUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.security.PublicKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of pre-generated request envelope keys.
+ * <p>
+ * A background thread keeps the pool topped up with fresh AES keys, IVs and their RSA-OAEP
+ * encryption, so a request thread only has to run the AES encryption and the signature.
+ * Every envelope key is handed out exactly once. When the pool is empty the request thread
+ * generates a key itself and the miss is counted.
+ *
+ * <pre>
+ * EnvelopeKeyPool pool = new EnvelopeKeyPool(safeheronRsaPublicKey, 64);
+ * SafeheronConfig config = SafeheronConfig.builder()
+ *         ...
+ *         .envelopeKeyPool(pool)
+ *         .build();
+ * </pre>
+ *
+ * @author safeheron
+ */
+@Slf4j
+public class EnvelopeKeyPool implements Closeable {
+
+    private final PublicKey safeheronRsaPublicKey;
+    private final int capacity;
+    private final BlockingQueue<EnvelopeKey> pool;
+    private final Thread refillThread;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * EnvelopeKeyPool
+     *
+     * @param safeheronRsaPublicKey Safeheron API public key, the same one set on SafeheronConfig
+     * @param capacity              maximum number of pre-generated envelope keys
+     */
+    public EnvelopeKeyPool(String safeheronRsaPublicKey, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (safeheronRsaPublicKey.contains("-----BEGIN PUBLIC KEY-----")) {
+            safeheronRsaPublicKey = safeheronRsaPublicKey.replace("-----BEGIN PUBLIC KEY-----", "").replace("-----END PUBLIC KEY-----", "").replaceAll("\n", "");
+        }
+        try {
+            this.safeheronRsaPublicKey = RsaUtil.getPublicKey(safeheronRsaPublicKey);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Safeheron RSA public key", e);
+        }
+        this.capacity = capacity;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        this.refillThread = new Thread(this::refill, "safeheron-envelope-key-pool");
+        this.refillThread.setDaemon(true);
+        this.refillThread.start();
+    }
+
+    /**
+     * Take an unused envelope key, generating one on the calling thread if the pool is empty
+     */
+    EnvelopeKey take() throws Exception {
+        EnvelopeKey envelopeKey = pool.poll();
+        if (envelopeKey != null) {
+            hits.increment();
+            return envelopeKey;
+        }
+        misses.increment();
+        return EnvelopeKey.generate(safeheronRsaPublicKey);
+    }
+
+    PublicKey getSafeheronRsaPublicKey() {
+        return safeheronRsaPublicKey;
+    }
+
+    /**
+     * @return number of envelope keys ready to be taken
+     */
+    public int getDepth() {
+        return pool.size();
+    }
+
+    /**
+     * @return maximum number of pre-generated envelope keys
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of requests served from the pool
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of requests that found the pool empty and generated their own key
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Stop the refill thread and discard the pre-generated keys
+     */
+    @Override
+    public void close() {
+        closed = true;
+        refillThread.interrupt();
+        pool.clear();
+    }
+
+    private void refill() {
+        try {
+            while (!closed) {
+                try {
+                    pool.put(EnvelopeKey.generate(safeheronRsaPublicKey));
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    log.warn("Failed to pre-generate envelope key", e);
+                    try {
+                        TimeUnit.SECONDS.sleep(1);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            // a key generated while close() ran may have been put after it cleared the pool
+            pool.clear();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.safeheron.client.converter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.RsaUtil;
+import com.safeheron.client.utils.SignContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * Streaming reader of a response envelope.
+ * <p>
+ * Parses the envelope fields out of the raw response bytes but leaves bizContent where it is:
+ * the signature is verified by feeding the bizContent slice straight to
+ * {@link Signature#update}, and the payload is decoded through a Base64 stream, so the
+ * Base64 text and the ciphertext never exist as separate copies.
+ *
+ * @author safeheron
+ */
+final class EnvelopeReader {
+
+    private static final JsonFactory JSON_FACTORY = JsonUtil.getObjectMapper().getFactory();
+
+    private final byte[] raw;
+    private Integer code;
+    private String message;
+    private String data;
+    private String timestamp;
+    private String sig;
+    private String key;
+    private String rsaType;
+    private String aesType;
+    private int bizContentOffset = -1;
+    private int bizContentLength;
+
+    private EnvelopeReader(byte[] raw) {
+        this.raw = raw;
+    }
+
+    /**
+     * Parse the envelope fields
+     *
+     * @param raw raw response body
+     * @return the reader, or null if bizContent is missing or escaped and can not be streamed
+     * @throws IOException if the body is not a JSON object
+     */
+    static EnvelopeReader parse(byte[] raw) throws IOException {
+        EnvelopeReader reader = new EnvelopeReader(raw);
+        boolean streamable = true;
+        try (JsonParser parser = JSON_FACTORY.createParser(raw)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("response body is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String text = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                switch (name) {
+                    case "code":
+                        reader.code = text == null ? null : Integer.valueOf(text);
+                        break;
+                    case "message":
+                        reader.message = text;
+                        break;
+                    case "data":
+                        reader.data = text;
+                        break;
+                    case "timestamp":
+                        reader.timestamp = text;
+                        break;
+                    case "sig":
+                        reader.sig = text;
+                        break;
+                    case "key":
+                        reader.key = text;
+                        break;
+                    case "rsaType":
+                        reader.rsaType = text;
+                        break;
+                    case "aesType":
+                        reader.aesType = text;
+                        break;
+                    case "bizContent":
+                        streamable = token == JsonToken.VALUE_STRING && reader.locateBizContent(parser);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return streamable && reader.bizContentOffset >= 0 ? reader : null;
+    }
+
+    /**
+     * Find the bizContent value in the raw bytes; Base64 never needs escaping, so anything
+     * escaped is left to the regular parser
+     */
+    private boolean locateBizContent(JsonParser parser) {
+        int quote = (int) parser.getTokenLocation().getByteOffset();
+        if (quote < 0 || quote >= raw.length || raw[quote] != '"') {
+            return false;
+        }
+        for (int i = quote + 1; i < raw.length; i++) {
+            if (raw[i] == '\\') {
+                return false;
+            }
+            if (raw[i] == '"') {
+                bizContentOffset = quote + 1;
+                bizContentLength = i - bizContentOffset;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verify the envelope signature over bizContent, code, key, message and timestamp
+     */
+    boolean verifySign(PublicKey safeheronRsaPublicKey) throws Exception {
+        Signature signature = SignContent.begin(RsaUtil.initVerify(safeheronRsaPublicKey))
+                .add("bizContent", raw, bizContentOffset, bizContentLength)
+                .add("code", String.valueOf(code))
+                .add("key", key)
+                .add("message", message)
+                .add("timestamp", timestamp)
+                .finish();
+        return sig != null && signature.verify(Base64.getDecoder().decode(sig));
+    }
+
+    /**
+     * @return the Base64-decoded bizContent, still encrypted
+     */
+    InputStream bizContent() {
+        return Base64.getDecoder().wrap(new ByteArrayInputStream(raw, bizContentOffset, bizContentLength));
+    }
+
+    /**
+     * Wrap a decrypting stream so that closing it first reads it to the end, which makes the
+     * cipher check the authentication tag or padding even if the JSON parser stopped early
+     */
+    static InputStream verifyOnClose(InputStream decrypted) {
+        return new FilterInputStream(decrypted) {
+            @Override
+            public void close() throws IOException {
+                byte[] skip = new byte[512];
+                try {
+                    while (in.read(skip) != -1) {
+                        // drain
+                    }
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    Integer getCode() {
+        return code;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    String getData() {
+        return data;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getRsaType() {
+        return rsaType;
+    }
+
+    String getAesType() {
+        return aesType;
+    }
+}
@@ -0,0 +1,170 @@
+package com.safeheron.client.converter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.safeheron.client.KeyProvider;
+import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.CryptoStages;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.SignContent;
+import com.safeheron.client.utils.VirtualThreads;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.Executor;
+
+/**
+ * Fused request envelope stage: encrypts the serialized request bytes, Base64-encodes the
+ * ciphertext into a reusable buffer, signs the canonical content and writes the envelope JSON,
+ * without copying the plaintext or ciphertext through {@link String}.
+ * <p>
+ * Each thread owns one writer; its scratch buffers are reused across requests and dropped
+ * again after an unusually large payload. Virtual threads get a new writer per request.
+ *
+ * @author safeheron
+ */
+final class EnvelopeWriter {
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final JsonFactory JSON_FACTORY = JsonUtil.getObjectMapper().getFactory();
+    private static final ThreadLocal<EnvelopeWriter> WRITERS = ThreadLocal.withInitial(EnvelopeWriter::new);
+
+    private byte[] bizContent = new byte[INITIAL_CAPACITY];
+    private final ScratchOutputStream body = new ScratchOutputStream();
+
+    private EnvelopeWriter() {
+    }
+
+    static EnvelopeWriter get() {
+        return VirtualThreads.isCurrentThreadVirtual() ? new EnvelopeWriter() : WRITERS.get();
+    }
+
+    /**
+     * Build the encrypted and signed request envelope
+     *
+     * @param requestJson    serialized request, UTF-8
+     * @param envelopeKey    single-use AES key and IV with their RSA encryption
+     * @param apiKey         api key
+     * @param keyProvider    KeyProvider signing the envelope
+     * @param cryptoProvider JCA provider strategy for AES
+     * @param cryptoExecutor executor for the signing, or null to sign on the calling thread
+     * @return envelope JSON, UTF-8
+     * @throws Exception if encryption or signing fails
+     */
+    byte[] write(byte[] requestJson, EnvelopeKey envelopeKey, String apiKey,
+                 KeyProvider keyProvider, CryptoProviderEnum cryptoProvider, Executor cryptoExecutor) throws Exception {
+        try {
+            // Use AES to encrypt request data
+            boolean hasBizContent = !isBlank(requestJson);
+            int bizContentLength = 0;
+            if (hasBizContent) {
+                byte[] encrypted = AesUtil.encrypt(requestJson, 0, requestJson.length,
+                        envelopeKey.getAesKey(), envelopeKey.getIv(), AESTypeEnum.GCM, cryptoProvider);
+                bizContentLength = 4 * ((encrypted.length + 2) / 3);
+                if (bizContent.length < bizContentLength) {
+                    bizContent = new byte[bizContentLength];
+                }
+                Base64.getEncoder().encode(encrypted, bizContent);
+            }
+            String timestamp = Long.toString(System.currentTimeMillis());
+
+            // Sign the request data with your KeyProvider, keys in lexicographic order
+            SignContent signContent = SignContent.begin().add("apiKey", apiKey);
+            if (hasBizContent) {
+                signContent.add("bizContent", bizContent, 0, bizContentLength);
+            }
+            signContent.add("key", envelopeKey.getEncryptedKey()).add("timestamp", timestamp);
+            String rsaSig = CryptoStages.call(cryptoExecutor, () -> keyProvider.sign(signContent.buffer(), 0, signContent.length()));
+
+            // Write the envelope, fields in the same order as the previous TreeMap
+            body.reset();
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+                generator.writeStartObject();
+                generator.writeStringField("aesType", AESTypeEnum.GCM.getCode());
+                generator.writeStringField("apiKey", apiKey);
+                if (hasBizContent) {
+                    generator.writeFieldName("bizContent");
+                    generator.writeRawUTF8String(bizContent, 0, bizContentLength);
+                }
+                generator.writeStringField("key", envelopeKey.getEncryptedKey());
+                generator.writeStringField("rsaType", RSATypeEnum.ECB_OAEP.getCode());
+                generator.writeStringField("sig", rsaSig);
+                generator.writeStringField("timestamp", timestamp);
+                generator.writeEndObject();
+            }
+            return body.toByteArray();
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        if (bizContent.length > MAX_RETAINED_CAPACITY) {
+            bizContent = new byte[INITIAL_CAPACITY];
+        }
+        body.release();
+    }
+
+    private static boolean isBlank(byte[] content) {
+        for (byte b : content) {
+            if (!Character.isWhitespace(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unsynchronized, reusable replacement for ByteArrayOutputStream
+     */
+    private static final class ScratchOutputStream extends OutputStream {
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // keep the buffer, the writer reads it after the generator closes the stream
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+
+        void release() {
+            if (buffer.length > MAX_RETAINED_CAPACITY) {
+                buffer = new byte[INITIAL_CAPACITY];
+            }
+            count = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (buffer.length < capacity) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, capacity));
+            }
+        }
+    }
+}
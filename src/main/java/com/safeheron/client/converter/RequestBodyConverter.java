@@ -18,6 +18,6 @@ public class RequestBodyConverter<T> implements Converter<T, RequestBody> {
 
     @Override
     public RequestBody convert(T value) throws IOException {
-        return RequestBody.create(JsonUtil.toJson(value), MEDIA_TYPE);
+        return RequestBody.create(JsonUtil.getObjectMapper().writeValueAsBytes(value), MEDIA_TYPE);
     }
 }
\ No newline at end of file
@@ -1,34 +1,27 @@
 package com.safeheron.client.converter;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.safeheron.client.KeyProvider;
-import com.safeheron.client.config.AESTypeEnum;
-import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
 import com.safeheron.client.config.SafeheronConfig;
-import com.safeheron.client.utils.AesUtil;
-import com.safeheron.client.utils.JsonUtil;
 import com.safeheron.client.utils.RsaUtil;
 import okhttp3.*;
 import okio.Buffer;
-import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.security.PublicKey;
+import java.util.concurrent.Executor;
 
 public class RequestInterceptor implements Interceptor {
 
     private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
-    private static final ObjectMapper mapper = JsonUtil.getObjectMapper();
 
-    private final ObjectWriter objectWriter;
     private final String apiKey;
-    private final String safeheronRsaPublicKey;
+    private final PublicKey safeheronRsaPublicKey;
     private final KeyProvider keyProvider;
+    private final CryptoProviderEnum cryptoProvider;
+    private final EnvelopeKeyPool envelopeKeyPool;
+    private final Executor cryptoExecutor;
 
 
     public static RequestInterceptor create(SafeheronConfig config) {
@@ -36,10 +29,19 @@ public class RequestInterceptor implements Interceptor {
     }
 
     private RequestInterceptor(SafeheronConfig config) {
-        this.objectWriter = mapper.writerFor(Map.class);
         this.apiKey = config.getApiKey();
-        this.safeheronRsaPublicKey = config.getSafeheronRsaPublicKey();
+        try {
+            this.safeheronRsaPublicKey = RsaUtil.getPublicKey(config.getSafeheronRsaPublicKey());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse Safeheron RSA public key", e);
+        }
         this.keyProvider = config.getKeyProvider();
+        this.cryptoProvider = config.getCryptoProvider();
+        this.envelopeKeyPool = config.getEnvelopeKeyPool();
+        this.cryptoExecutor = config.getCryptoExecutor();
+        if (envelopeKeyPool != null && !envelopeKeyPool.getSafeheronRsaPublicKey().equals(safeheronRsaPublicKey)) {
+            throw new IllegalArgumentException("envelopeKeyPool was built for a different Safeheron RSA public key");
+        }
     }
 
     @NotNull
@@ -47,47 +49,23 @@ public class RequestInterceptor implements Interceptor {
     public Response intercept(@NotNull Chain chain) throws IOException {
         Request request = chain.request();
         if ("POST".equals(request.method())) {
+            byte[] bytes;
             try {
-                // Use AES to encrypt request data
+                // Encrypt and sign the serialized request bytes into the envelope
                 Buffer buffer = new Buffer();
                 request.body().writeTo(buffer);
-                final String requestJson = buffer.readUtf8();
-                byte[] aesKey = AesUtil.generateAESKey();
-                byte[] ivKey = AesUtil.generateIvKey();
-                String aesEncryptResult = "";
-                if (StringUtils.isNotBlank(requestJson)) {
-                    aesEncryptResult = AesUtil.encrypt(requestJson, aesKey, ivKey, AESTypeEnum.GCM);
-                }
-
-                // Use Safeheron RSA public key to encrypt request's aesKey and aesIv
-                byte[] sourceKey = Arrays.copyOf(aesKey, aesKey.length + ivKey.length);
-                System.arraycopy(ivKey, 0, sourceKey, aesKey.length, ivKey.length);
-                String rsaEncryptResult = RsaUtil.encrypt(sourceKey, safeheronRsaPublicKey,RSATypeEnum.ECB_OAEP);
-
-                // Create params map
-                long timestamp = System.currentTimeMillis();
-                Map<String, String> requestData = new TreeMap<>();
-                requestData.put("apiKey", apiKey);
-                requestData.put("timestamp", timestamp + "");
-                if (StringUtils.isNotBlank(requestJson)) {
-                    requestData.put("bizContent", aesEncryptResult);
-                }
-                requestData.put("key", rsaEncryptResult);
-
-                // Sign the request data with your KeyProvider
-                String signContent = requestData.entrySet().stream()
-                        .map(entry -> entry.getKey() + "=" + entry.getValue())
-                        .collect(Collectors.joining("&"));
-                String rsaSig = keyProvider.sign(signContent);
-                requestData.put("sig", rsaSig);
-                requestData.put("rsaType", RSATypeEnum.ECB_OAEP.getCode());
-                requestData.put("aesType", AESTypeEnum.GCM.getCode());
+                byte[] requestJson = buffer.readByteArray();
 
-                byte[] bytes = this.objectWriter.writeValueAsBytes(requestData);
-                return chain.proceed(request.newBuilder().post(RequestBody.create(bytes, MEDIA_TYPE)).build());
+                // Take a single-use aesKey and aesIv, already encrypted with Safeheron RSA public key
+                EnvelopeKey envelopeKey = envelopeKeyPool != null ? envelopeKeyPool.take() : EnvelopeKey.generate(safeheronRsaPublicKey);
+                bytes = EnvelopeWriter.get().write(requestJson, envelopeKey, apiKey, keyProvider, cryptoProvider, cryptoExecutor);
+            } catch (IOException e) {
+                throw e;
             } catch (Exception e) {
-                throw new RuntimeException(e);
+                // OkHttp expects IOException from interceptors; anything else escapes enqueued calls
+                throw new IOException(e);
             }
+            return chain.proceed(request.newBuilder().post(RequestBody.create(bytes, MEDIA_TYPE)).build());
         }
         return chain.proceed(request);
     }
@@ -4,21 +4,26 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.safeheron.client.KeyProvider;
 import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
 import com.safeheron.client.config.RSATypeEnum;
 import com.safeheron.client.exception.SafeheronException;
 import com.safeheron.client.response.ApiResult;
 import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.CryptoStageTimings;
+import com.safeheron.client.utils.CryptoStageTimings.Stage;
+import com.safeheron.client.utils.CryptoStages;
 import com.safeheron.client.utils.JsonUtil;
 import com.safeheron.client.utils.RsaUtil;
+import com.safeheron.client.utils.SignContent;
 import okhttp3.ResponseBody;
 import org.apache.commons.lang3.StringUtils;
 import retrofit2.Converter;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.PublicKey;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
 
 /**
  * Response Body Converter
@@ -28,22 +33,78 @@ import java.util.stream.Collectors;
 public class ResponseBodyConverter<T> implements Converter<ResponseBody, T> {
     private final ObjectReader reader ;
 
-    private final String safeheronRsaPublicKey;
+    private final PublicKey safeheronRsaPublicKey;
     private final KeyProvider keyProvider;
+    private final CryptoProviderEnum cryptoProvider;
+    private final boolean streaming;
+    private final Executor cryptoExecutor;
+    private final boolean overlapVerifyAndDecrypt;
+    private final CryptoStageTimings timings;
 
-    ResponseBodyConverter(ObjectReader reader,
-                          String safeheronRsaPublicKey, KeyProvider keyProvider) {
+    ResponseBodyConverter(ObjectReader reader, PublicKey safeheronRsaPublicKey,
+                          KeyProvider keyProvider, CryptoProviderEnum cryptoProvider, boolean streaming,
+                          Executor cryptoExecutor, boolean overlapVerifyAndDecrypt, CryptoStageTimings timings) {
         this.reader = reader;
         this.safeheronRsaPublicKey = safeheronRsaPublicKey;
         this.keyProvider = keyProvider;
+        this.cryptoProvider = cryptoProvider;
+        this.streaming = streaming;
+        this.cryptoExecutor = cryptoExecutor;
+        this.overlapVerifyAndDecrypt = overlapVerifyAndDecrypt;
+        this.timings = timings;
     }
 
     @Override
     public T convert(ResponseBody value) throws IOException {
-        // Decode json data into ApiResult Object
         ObjectMapper mapper = JsonUtil.getObjectMapper();
-        ApiResult apiResult = mapper.readValue(value.charStream(), ApiResult.class);
+        if (streaming) {
+            byte[] raw = value.bytes();
+            EnvelopeReader envelope = EnvelopeReader.parse(raw);
+            if (envelope != null) {
+                return convert(envelope);
+            }
+            return convert(mapper.readValue(raw, ApiResult.class));
+        }
+        // Decode json data into ApiResult Object
+        return convert(mapper.readValue(value.charStream(), ApiResult.class));
+    }
+
+    /**
+     * Streaming mode: Base64 decode, AES decrypt and JSON parsing are chained over one
+     * InputStream, so only the raw response stays in memory next to the result
+     */
+    private T convert(EnvelopeReader envelope) {
+        Integer code = envelope.getCode();
+        if (!Integer.valueOf(200).equals(code)) {
+            throw new SafeheronException(code, envelope.getMessage(), envelope.getData());
+        }
+
+        try {
+            // Verify sign and use your KeyProvider to decrypt response's aesKey and aesIv
+            RSATypeEnum rsaType = StringUtils.isNotEmpty(envelope.getRsaType()) && RSATypeEnum.valueByCode(envelope.getRsaType()) != null ? RSATypeEnum.valueByCode(envelope.getRsaType()) : RSATypeEnum.RSA;
+            byte[] aesSaltDecrypt = CryptoStages.verifyAndDecryptKey(
+                    () -> envelope.verifySign(safeheronRsaPublicKey),
+                    () -> keyProvider.decrypt(envelope.getKey(), rsaType),
+                    cryptoExecutor, overlapVerifyAndDecrypt, timings);
+            if (aesSaltDecrypt == null) {
+                throw new SafeheronException("response signature verification failed");
+            }
+            byte[] aesKey = Arrays.copyOfRange(aesSaltDecrypt, 0, 32);
+            byte[] iv = Arrays.copyOfRange(aesSaltDecrypt, 32, aesSaltDecrypt.length);
+
+            // Use AES to decrypt bizContent while parsing it; the parser closes the stream, which checks the tag
+            AESTypeEnum aesType = StringUtils.isNotEmpty(envelope.getAesType()) && AESTypeEnum.valueByCode(envelope.getAesType()) != null ? AESTypeEnum.valueByCode(envelope.getAesType()) : AESTypeEnum.CBC;
+            long start = System.nanoTime();
+            InputStream decrypted = AesUtil.decrypt(envelope.bizContent(), aesKey, iv, aesType, cryptoProvider);
+            T result = reader.readValue(EnvelopeReader.verifyOnClose(decrypted));
+            timings.record(Stage.PAYLOAD_DECRYPT, System.nanoTime() - start);
+            return result;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    private T convert(ApiResult apiResult) {
         Integer code = apiResult.getCode();
         String message = apiResult.getMessage();
         String date = apiResult.getData();
@@ -52,31 +113,30 @@ public class ResponseBodyConverter<T> implements Converter<ResponseBody, T> {
         }
 
         try{
-            // Verify sign
-            Map<String, String> sigMap = new TreeMap<>();
-            sigMap.put("key", apiResult.getKey());
-            sigMap.put("timestamp", apiResult.getTimestamp().toString());
-            sigMap.put("bizContent", apiResult.getBizContent());
-            sigMap.put("code", code.toString());
-            sigMap.put("message", message);
-            String signContent = sigMap.entrySet().stream()
-                    .map(entry -> entry.getKey() + "=" + entry.getValue())
-                    .collect(Collectors.joining("&"));
-            boolean checkResult = RsaUtil.verifySign(signContent, apiResult.getSig(), safeheronRsaPublicKey);
-            if (!checkResult) {
+            // Verify sign and use your KeyProvider to decrypt response's aesKey and aesIv
+            RSATypeEnum rsaType = StringUtils.isNotEmpty(apiResult.getRsaType()) && RSATypeEnum.valueByCode(apiResult.getRsaType()) != null ? RSATypeEnum.valueByCode(apiResult.getRsaType()) : RSATypeEnum.RSA;
+            byte[] aesSaltDecrypt = CryptoStages.verifyAndDecryptKey(() -> {
+                SignContent signContent = SignContent.begin()
+                        .add("bizContent", apiResult.getBizContent())
+                        .add("code", code.toString())
+                        .add("key", apiResult.getKey())
+                        .add("message", message)
+                        .add("timestamp", apiResult.getTimestamp().toString());
+                return RsaUtil.verifySign(signContent, apiResult.getSig(), safeheronRsaPublicKey);
+            }, () -> keyProvider.decrypt(apiResult.getKey(), rsaType), cryptoExecutor, overlapVerifyAndDecrypt, timings);
+            if (aesSaltDecrypt == null) {
                 throw new SafeheronException("response signature verification failed");
             }
-
-            // Use your KeyProvider to decrypt response's aesKey and aesIv
-            RSATypeEnum rsaType = StringUtils.isNotEmpty(apiResult.getRsaType()) && RSATypeEnum.valueByCode(apiResult.getRsaType()) != null ? RSATypeEnum.valueByCode(apiResult.getRsaType()) : RSATypeEnum.RSA;
-            byte[] aesSaltDecrypt = keyProvider.decrypt(apiResult.getKey(), rsaType);
             byte[] aesKey = Arrays.copyOfRange(aesSaltDecrypt, 0, 32);
             byte[] iv = Arrays.copyOfRange(aesSaltDecrypt, 32, aesSaltDecrypt.length);
 
             // Use AES to decrypt bizContent
             AESTypeEnum aesType = StringUtils.isNotEmpty(apiResult.getAesType()) && AESTypeEnum.valueByCode(apiResult.getAesType()) != null ? AESTypeEnum.valueByCode(apiResult.getAesType()) : AESTypeEnum.CBC;
-            String dataDecrypt = AesUtil.decrypt(apiResult.getBizContent(), aesKey, iv, aesType);
-            return reader.readValue(dataDecrypt);
+            long start = System.nanoTime();
+            String dataDecrypt = AesUtil.decrypt(apiResult.getBizContent(), aesKey, iv, aesType, cryptoProvider);
+            T result = reader.readValue(dataDecrypt);
+            timings.record(Stage.PAYLOAD_DECRYPT, System.nanoTime() - start);
+            return result;
         }catch(Exception e){
             throw new RuntimeException(e);
         }
@@ -0,0 +1,276 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.api.MPCSignApiService;
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.api.Web3ApiService;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.LimitSearch;
+import com.safeheron.client.request.ListMPCSignTransactionsRequest;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.request.ListWeb3SignRequest;
+import com.safeheron.client.response.MPCSignTransactionsResponse;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.response.Web3SignResponse;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.ServiceExecutor;
+import retrofit2.Call;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator over a list endpoint that pages with the {@link LimitSearch} cursor, fetching pages
+ * ahead of the consumer.
+ * <p>
+ * The fromId of each page is taken from the last element of the page before, so pages are
+ * still fetched one after the other; but up to {@code prefetch} pages are fetched in the
+ * background while the consumer works through the current one, and the round trip and
+ * envelope crypto of the next page overlap with the consumer's work. With a prefetch of zero a
+ * page is only fetched once the consumer needs it. At most prefetch pages are buffered, so
+ * memory stays bounded when the consumer is slower than the API.
+ * <p>
+ * The iteration ends at the first page that is empty or shorter than the request's limit.
+ * Close the iterator, or the stream, when stopping early to cancel the page in flight.
+ * <pre>
+ * try (Stream&lt;TransactionsResponse&gt; transactions = LimitSearchIterator.transactions(api, request, 2).stream()) {
+ *     transactions.forEach(this::process);
+ * }
+ * </pre>
+ *
+ * @param <R> request type
+ * @param <T> element type
+ * @author safeheron
+ */
+public class LimitSearchIterator<R extends LimitSearch, T> implements Iterator<T>, Closeable {
+
+    private final R request;
+    private final Function<R, Call<List<T>>> fetch;
+    private final Function<T, String> cursor;
+    private final int prefetch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pageArrived = lock.newCondition();
+
+    // guarded by lock
+    private final ArrayDeque<List<T>> pages = new ArrayDeque<>();
+    private CompletableFuture<List<T>> inFlight;
+    private boolean lastPage;
+    private boolean closed;
+    private Throwable failure;
+
+    // only touched by the consuming thread
+    private List<T> page = Collections.emptyList();
+    private int index;
+
+    /**
+     * @param request  first page request, e.g. with filters, limit and the starting fromId; it is copied
+     * @param fetch    creates the call for a page, e.g. {@code api::listTransactionsV2}
+     * @param cursor   the fromId of the page after an element, e.g. {@code TransactionsResponse::getTxKey}
+     * @param prefetch pages fetched ahead of the consumer
+     */
+    @SuppressWarnings("unchecked")
+    public LimitSearchIterator(R request, Function<R, Call<List<T>>> fetch, Function<T, String> cursor, int prefetch) {
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must not be negative, was " + prefetch);
+        }
+        this.request = (R) JsonUtil.getObjectMapper().convertValue(request, request.getClass());
+        this.fetch = fetch;
+        this.cursor = cursor;
+        this.prefetch = prefetch;
+        lock.lock();
+        try {
+            fetchIfNeeded(prefetch > 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param api      transaction api
+     * @param request  first page request
+     * @param prefetch pages fetched ahead of the consumer
+     * @return transactions, as listed by listTransactionsV2
+     */
+    public static LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> transactions(
+            TransactionApiService api, ListTransactionsV2Request request, int prefetch) {
+        return new LimitSearchIterator<>(request, api::listTransactionsV2, TransactionsResponse::getTxKey, prefetch);
+    }
+
+    /**
+     * @param api      MPC sign api
+     * @param request  first page request
+     * @param prefetch pages fetched ahead of the consumer
+     * @return MPC sign transactions, as listed by listMPCSignTransactions
+     */
+    public static LimitSearchIterator<ListMPCSignTransactionsRequest, MPCSignTransactionsResponse> mpcSignTransactions(
+            MPCSignApiService api, ListMPCSignTransactionsRequest request, int prefetch) {
+        return new LimitSearchIterator<>(request, api::listMPCSignTransactions, MPCSignTransactionsResponse::getTxKey, prefetch);
+    }
+
+    /**
+     * @param api      web3 api
+     * @param request  first page request
+     * @param prefetch pages fetched ahead of the consumer
+     * @return web3 sign transactions, as listed by listWeb3Sign
+     */
+    public static LimitSearchIterator<ListWeb3SignRequest, Web3SignResponse> web3Signs(
+            Web3ApiService api, ListWeb3SignRequest request, int prefetch) {
+        return new LimitSearchIterator<>(request, api::listWeb3Sign, Web3SignResponse::getTxKey, prefetch);
+    }
+
+    /**
+     * @return sequential stream of the remaining elements; closing it closes the iterator
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Wait, if necessary, for the next page
+     *
+     * @throws SafeheronException if a page could not be fetched
+     */
+    @Override
+    public boolean hasNext() {
+        if (index < page.size()) {
+            return true;
+        }
+        lock.lock();
+        try {
+            for (;;) {
+                List<T> next = pages.poll();
+                if (next != null) {
+                    page = next;
+                    index = 0;
+                    fetchIfNeeded(false);
+                    if (!next.isEmpty()) {
+                        return true;
+                    }
+                    continue;
+                }
+                // pages fetched before the failure are still handed out
+                if (failure != null) {
+                    throw toSafeheronException(failure);
+                }
+                if (closed || (lastPage && inFlight == null)) {
+                    return false;
+                }
+                fetchIfNeeded(true);
+                // the page may have completed, or failed, on this thread already
+                if (failure != null || !pages.isEmpty() || inFlight == null) {
+                    continue;
+                }
+                pageArrived.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SafeheronException(500, "interrupted while waiting for a page");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    /**
+     * Stop the iteration and cancel the page in flight
+     */
+    @Override
+    public void close() {
+        CompletableFuture<List<T>> call;
+        lock.lock();
+        try {
+            closed = true;
+            pages.clear();
+            call = inFlight;
+            inFlight = null;
+            pageArrived.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        page = Collections.emptyList();
+        if (call != null) {
+            call.cancel(true);
+        }
+    }
+
+    /**
+     * Start fetching the next page if none is in flight and fewer than prefetch pages are
+     * buffered, or the consumer waits for one. Called with the lock held.
+     */
+    private void fetchIfNeeded(boolean demand) {
+        if (inFlight != null || lastPage || closed || failure != null) {
+            return;
+        }
+        if (pages.size() >= prefetch && !(demand && pages.isEmpty())) {
+            return;
+        }
+        CompletableFuture<List<T>> call;
+        try {
+            call = ServiceExecutor.executeAsync(fetch.apply(request));
+        } catch (RuntimeException e) {
+            failure = e;
+            pageArrived.signalAll();
+            return;
+        }
+        inFlight = call;
+        // may complete at once, on this thread, which holds the lock already
+        call.whenComplete((elements, t) -> onPage(call, elements, t));
+    }
+
+    private void onPage(CompletableFuture<List<T>> call, List<T> elements, Throwable t) {
+        lock.lock();
+        try {
+            if (inFlight != call) {
+                return;
+            }
+            inFlight = null;
+            if (t != null) {
+                failure = t;
+            } else {
+                List<T> received = elements != null ? elements : Collections.<T>emptyList();
+                Long limit = request.getLimit();
+                if (received.isEmpty() || (limit != null && received.size() < limit)) {
+                    lastPage = true;
+                } else {
+                    request.setFromId(cursor.apply(received.get(received.size() - 1)));
+                }
+                pages.add(received);
+                fetchIfNeeded(false);
+            }
+            pageArrived.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static SafeheronException toSafeheronException(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof SafeheronException) {
+            return (SafeheronException) cause;
+        }
+        SafeheronException exception = new SafeheronException(500, cause.getMessage());
+        exception.initCause(cause);
+        return exception;
+    }
+}
@@ -0,0 +1,262 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.api.MPCSignApiService;
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.api.Web3ApiService;
+import com.safeheron.client.request.LimitSearch;
+import com.safeheron.client.request.ListMPCSignTransactionsRequest;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.request.ListWeb3SignRequest;
+import com.safeheron.client.response.MPCSignTransactionsResponse;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.response.Web3SignResponse;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.ServiceExecutor;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import retrofit2.Call;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reactive Streams publisher over a list endpoint that pages with the {@link LimitSearch} cursor.
+ * <p>
+ * Elements are emitted page by page as the subscriber requests them. The next page is only
+ * fetched once the current one has been emitted and the subscriber still has outstanding
+ * demand, so at most one page is held per subscription and a slow subscriber slows the scan
+ * down instead of filling memory. Pages are fetched with {@link ServiceExecutor#executeAsync},
+ * so no thread waits for a response; the scan ends at the first page that is empty or shorter
+ * than the request's limit.
+ * <p>
+ * Every subscription scans from the request's own cursor with a copy of the request, so the
+ * publisher can be subscribed to more than once. On Java 9 and later
+ * {@code org.reactivestreams.FlowAdapters.toFlowPublisher} turns it into a
+ * {@code java.util.concurrent.Flow.Publisher}, and Reactor takes it as is with {@code Flux.from}.
+ * <pre>
+ * Flux&lt;TransactionsResponse&gt; transactions = Flux.from(LimitSearchPublisher.transactions(api, request));
+ * </pre>
+ *
+ * @param <R> request type
+ * @param <T> element type
+ * @author safeheron
+ */
+public class LimitSearchPublisher<R extends LimitSearch, T> implements Publisher<T> {
+
+    private final R request;
+    private final Function<R, Call<List<T>>> fetch;
+    private final Function<T, String> cursor;
+
+    /**
+     * @param request first page request, e.g. with filters, limit and the starting fromId
+     * @param fetch   creates the call for a page, e.g. {@code api::listTransactionsV2}
+     * @param cursor  the fromId of the page after an element, e.g. {@code TransactionsResponse::getTxKey}
+     */
+    public LimitSearchPublisher(R request, Function<R, Call<List<T>>> fetch, Function<T, String> cursor) {
+        this.request = request;
+        this.fetch = fetch;
+        this.cursor = cursor;
+    }
+
+    /**
+     * @param api     transaction api
+     * @param request first page request
+     * @return transactions, as listed by listTransactionsV2
+     */
+    public static LimitSearchPublisher<ListTransactionsV2Request, TransactionsResponse> transactions(
+            TransactionApiService api, ListTransactionsV2Request request) {
+        return new LimitSearchPublisher<>(request, api::listTransactionsV2, TransactionsResponse::getTxKey);
+    }
+
+    /**
+     * @param api     MPC sign api
+     * @param request first page request
+     * @return MPC sign transactions, as listed by listMPCSignTransactions
+     */
+    public static LimitSearchPublisher<ListMPCSignTransactionsRequest, MPCSignTransactionsResponse> mpcSignTransactions(
+            MPCSignApiService api, ListMPCSignTransactionsRequest request) {
+        return new LimitSearchPublisher<>(request, api::listMPCSignTransactions, MPCSignTransactionsResponse::getTxKey);
+    }
+
+    /**
+     * @param api     web3 api
+     * @param request first page request
+     * @return web3 sign transactions, as listed by listWeb3Sign
+     */
+    public static LimitSearchPublisher<ListWeb3SignRequest, Web3SignResponse> web3Signs(
+            Web3ApiService api, ListWeb3SignRequest request) {
+        return new LimitSearchPublisher<>(request, api::listWeb3Sign, Web3SignResponse::getTxKey);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        @SuppressWarnings("unchecked")
+        R copy = (R) JsonUtil.getObjectMapper().convertValue(request, request.getClass());
+        PageSubscription subscription = new PageSubscription(subscriber, copy);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * Emission is serialized by a work-in-progress counter: whichever thread calls drain first
+     * emits, later callers only make it loop once more. Fields without volatile are only
+     * touched inside the drain loop.
+     */
+    private final class PageSubscription implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+        private final R request;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile List<T> received;
+        private volatile Throwable failure;
+        private volatile CompletableFuture<List<T>> inFlight;
+
+        private List<T> page;
+        private int index;
+        private boolean fetching;
+        private boolean lastPage;
+
+        PageSubscription(Subscriber<? super T> subscriber, R request) {
+            this.subscriber = subscriber;
+            this.request = request;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                requested.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            CompletableFuture<List<T>> call = inFlight;
+            if (call != null) {
+                call.cancel(true);
+            }
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                if (cancelled) {
+                    page = null;
+                    return;
+                }
+                Throwable error = failure;
+                if (error != null) {
+                    terminate();
+                    subscriber.onError(error);
+                    return;
+                }
+                List<T> next = received;
+                if (next != null) {
+                    received = null;
+                    fetching = false;
+                    accept(next);
+                }
+
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand && page != null && index < page.size()) {
+                    if (cancelled) {
+                        page = null;
+                        return;
+                    }
+                    T element = page.get(index++);
+                    try {
+                        subscriber.onNext(element);
+                    } catch (Throwable t) {
+                        terminate();
+                        subscriber.onError(t);
+                        return;
+                    }
+                    emitted++;
+                }
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                if (page != null && index >= page.size()) {
+                    page = null;
+                }
+                if (page == null && !fetching) {
+                    if (lastPage) {
+                        terminate();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (requested.get() > 0) {
+                        fetching = true;
+                        fetchNextPage();
+                        if (failure != null) {
+                            continue;
+                        }
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void accept(List<T> next) {
+            page = next;
+            index = 0;
+            Long limit = request.getLimit();
+            if (next.isEmpty() || (limit != null && next.size() < limit)) {
+                lastPage = true;
+            } else {
+                request.setFromId(cursor.apply(next.get(next.size() - 1)));
+            }
+        }
+
+        private void fetchNextPage() {
+            CompletableFuture<List<T>> call;
+            try {
+                call = ServiceExecutor.executeAsync(fetch.apply(request));
+            } catch (Throwable t) {
+                failure = t;
+                return;
+            }
+            inFlight = call;
+            call.whenComplete((elements, t) -> {
+                inFlight = null;
+                if (t != null) {
+                    failure = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                } else {
+                    received = elements != null ? elements : Collections.emptyList();
+                }
+                drain();
+            });
+            if (cancelled) {
+                call.cancel(true);
+            }
+        }
+
+        private void terminate() {
+            cancel();
+            page = null;
+        }
+    }
+}
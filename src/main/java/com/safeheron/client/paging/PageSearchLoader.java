@@ -0,0 +1,208 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.api.AccountApiService;
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.ListAccountCoinAddressRequest;
+import com.safeheron.client.request.ListAccountRequest;
+import com.safeheron.client.request.ListTransactionsV1Request;
+import com.safeheron.client.request.PageSearch;
+import com.safeheron.client.response.AccountCoinAddressResponse;
+import com.safeheron.client.response.AccountResponse;
+import com.safeheron.client.response.PageResult;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.ServiceExecutor;
+import retrofit2.Call;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads every page of a list endpoint that pages with {@link PageSearch} page numbers, fetching
+ * pages concurrently.
+ * <p>
+ * The first page tells totalElements, so the numbers of all remaining pages are known and they
+ * are fetched at the same time, at most {@code concurrency} pages at once. {@link #loadAll()}
+ * merges them in page order; {@link #forEachPage} hands each page to a consumer as it arrives,
+ * on the calling thread, and only keeps concurrency pages in flight or waiting for the consumer.
+ * <p>
+ * Pages are fetched with {@link ServiceExecutor#executeAsync}, so OkHttp's
+ * {@link com.safeheron.client.config.TransportConfig#getMaxRequestsPerHost() maxRequestsPerHost}
+ * bounds the concurrency too; raise it along with concurrency. Records created or deleted while
+ * the pages are loaded shift the pages after them, so such records may be missed or seen twice.
+ * <pre>
+ * List&lt;AccountResponse&gt; accounts = PageSearchLoader.accounts(accountApi, listAccountRequest, 8).loadAll();
+ * </pre>
+ *
+ * @param <R> request type
+ * @param <T> element type
+ * @author safeheron
+ */
+public class PageSearchLoader<R extends PageSearch, T> {
+
+    private final R request;
+    private final Function<R, Call<PageResult<T>>> fetch;
+    private final int concurrency;
+
+    /**
+     * @param request     request of the first page to load, e.g. with filters and pageSize; it is copied
+     * @param fetch       creates the call for a page, e.g. {@code api::listAccounts}
+     * @param concurrency pages fetched at once
+     */
+    public PageSearchLoader(R request, Function<R, Call<PageResult<T>>> fetch, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive, was " + concurrency);
+        }
+        this.request = request;
+        this.fetch = fetch;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param api         account api
+     * @param request     first page request
+     * @param concurrency pages fetched at once
+     * @return accounts, as listed by listAccounts
+     */
+    public static PageSearchLoader<ListAccountRequest, AccountResponse> accounts(
+            AccountApiService api, ListAccountRequest request, int concurrency) {
+        return new PageSearchLoader<>(request, api::listAccounts, concurrency);
+    }
+
+    /**
+     * @param api         account api
+     * @param request     first page request
+     * @param concurrency pages fetched at once
+     * @return coin addresses, as listed by listAccountCoinAddress
+     */
+    public static PageSearchLoader<ListAccountCoinAddressRequest, AccountCoinAddressResponse> accountCoinAddresses(
+            AccountApiService api, ListAccountCoinAddressRequest request, int concurrency) {
+        return new PageSearchLoader<>(request, api::listAccountCoinAddress, concurrency);
+    }
+
+    /**
+     * @param api         transaction api
+     * @param request     first page request
+     * @param concurrency pages fetched at once
+     * @return transactions, as listed by listTransactionsV1
+     */
+    public static PageSearchLoader<ListTransactionsV1Request, TransactionsResponse> transactionsV1(
+            TransactionApiService api, ListTransactionsV1Request request, int concurrency) {
+        return new PageSearchLoader<>(request, api::listTransactionsV1, concurrency);
+    }
+
+    /**
+     * Load all pages and merge them in page order
+     *
+     * @return elements of all pages
+     * @throws SafeheronException if a page could not be loaded
+     */
+    public List<T> loadAll() {
+        List<List<T>> pages = new ArrayList<>();
+        long[] first = new long[1];
+        forEachPage(page -> {
+            if (pages.isEmpty()) {
+                first[0] = page.getPageNumber();
+            }
+            int index = (int) (page.getPageNumber() - first[0]);
+            while (pages.size() <= index) {
+                pages.add(null);
+            }
+            pages.set(index, page.getContent());
+        });
+        List<T> elements = new ArrayList<>();
+        for (List<T> content : pages) {
+            if (content != null) {
+                elements.addAll(content);
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Load all pages, handing each to the consumer as it arrives. The first page comes first,
+     * the rest in no particular order; the consumer is called on the calling thread, one page
+     * at a time.
+     *
+     * @param consumer receives each page, with its pageNumber set
+     * @throws SafeheronException if a page could not be loaded, or the consumer threw it
+     */
+    public void forEachPage(Consumer<? super PageResult<T>> consumer) {
+        long firstPage = request.getPageNumber() != null ? request.getPageNumber() : 1;
+        PageResult<T> first = ServiceExecutor.execute(fetch.apply(page(firstPage)));
+        first.setPageNumber(firstPage);
+        consumer.accept(first);
+
+        long pageSize = first.getPageSize() != null && first.getPageSize() > 0 ? first.getPageSize()
+                : request.getPageSize() != null ? request.getPageSize() : 10;
+        long total = first.getTotalElements() != null ? first.getTotalElements() : 0;
+        long lastPage = (total + pageSize - 1) / pageSize;
+
+        LinkedBlockingQueue<Object> completed = new LinkedBlockingQueue<>();
+        List<CompletableFuture<PageResult<T>>> inFlight = new ArrayList<>();
+        long next = firstPage + 1;
+        int outstanding = 0;
+        try {
+            while (next <= lastPage || outstanding > 0) {
+                while (next <= lastPage && outstanding < concurrency) {
+                    long pageNumber = next++;
+                    CompletableFuture<PageResult<T>> call = ServiceExecutor.executeAsync(fetch.apply(page(pageNumber)));
+                    inFlight.add(call);
+                    outstanding++;
+                    call.whenComplete((result, t) -> {
+                        if (t != null) {
+                            completed.add(t);
+                        } else {
+                            PageResult<T> page = result != null ? result : new PageResult<>();
+                            page.setPageNumber(pageNumber);
+                            if (page.getContent() == null) {
+                                page.setContent(Collections.emptyList());
+                            }
+                            completed.add(page);
+                        }
+                    });
+                }
+                Object done = completed.take();
+                outstanding--;
+                if (done instanceof Throwable) {
+                    throw toSafeheronException((Throwable) done);
+                }
+                @SuppressWarnings("unchecked")
+                PageResult<T> page = (PageResult<T>) done;
+                consumer.accept(page);
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SafeheronException(500, "interrupted while loading pages");
+        } finally {
+            for (CompletableFuture<PageResult<T>> call : inFlight) {
+                call.cancel(true);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private R page(long pageNumber) {
+        R page = (R) JsonUtil.getObjectMapper().convertValue(request, request.getClass());
+        page.setPageNumber(pageNumber);
+        return page;
+    }
+
+    private static SafeheronException toSafeheronException(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        if (cause instanceof SafeheronException) {
+            return (SafeheronException) cause;
+        }
+        SafeheronException exception = new SafeheronException(500, cause.getMessage());
+        exception.initCause(cause);
+        return exception;
+    }
+}
@@ -0,0 +1,245 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.CircuitBreakerConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of one API endpoint.
+ * <p>
+ * While CLOSED the outcomes of the last slidingWindowSize calls are recorded; once at least
+ * minimumCalls are recorded and the failure rate or the slow-call rate reaches its threshold
+ * the circuit opens. An OPEN circuit refuses calls at once for openDurationMillis, then turns
+ * HALF_OPEN and lets halfOpenCalls trial calls through: if their rates stay below the
+ * thresholds it closes again, otherwise it reopens.
+ * <p>
+ * A closed circuit admits calls with a single volatile read; outcomes are recorded under a
+ * short lock that never blocks on I/O.
+ *
+ * @author safeheron
+ */
+public class CircuitBreaker {
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String path;
+    private final CircuitBreakerConfig config;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final Consumer<CircuitBreaker> listener;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile CircuitStateEnum state = CircuitStateEnum.CLOSED;
+    private long openedAt;
+
+    // sliding window of the closed state, guarded by lock
+    private final byte[] window;
+    private int next;
+    private int recorded;
+    private int failed;
+    private int slow;
+
+    // trial calls of the half-open state, guarded by lock
+    private int trialsPermitted;
+    private int trialsRecorded;
+    private int trialsFailed;
+    private int trialsSlow;
+
+    private final LongAdder notPermitted = new LongAdder();
+
+    CircuitBreaker(String path, CircuitBreakerConfig config, Consumer<CircuitBreaker> listener) {
+        this(path, config, listener, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond clock of the open duration, System::nanoTime but in tests
+     */
+    CircuitBreaker(String path, CircuitBreakerConfig config, Consumer<CircuitBreaker> listener, LongSupplier clock) {
+        this.path = path;
+        this.config = config;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMillis());
+        this.listener = listener;
+        this.clock = clock;
+        this.window = new byte[config.getSlidingWindowSize()];
+    }
+
+    /**
+     * Ask to make a call
+     *
+     * @return whether the call may go ahead; if so its outcome must be reported with
+     * {@link #onResult} or {@link #onIgnored}
+     */
+    public boolean tryAcquirePermission() {
+        if (state == CircuitStateEnum.CLOSED) {
+            return true;
+        }
+        CircuitStateEnum changed = null;
+        lock.lock();
+        try {
+            if (state == CircuitStateEnum.OPEN) {
+                if (clock.getAsLong() - openedAt < openNanos) {
+                    notPermitted.increment();
+                    return false;
+                }
+                changed = transition(CircuitStateEnum.HALF_OPEN);
+            }
+            if (state == CircuitStateEnum.HALF_OPEN) {
+                if (trialsPermitted >= config.getHalfOpenCalls()) {
+                    notPermitted.increment();
+                    return false;
+                }
+                trialsPermitted++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+            notify(changed);
+        }
+    }
+
+    /**
+     * Record the outcome of a permitted call
+     *
+     * @param durationNanos time from sending the request until the response headers arrived, or
+     *                      until the call failed
+     * @param failure       whether the call failed with a connection error, a timeout or HTTP 5xx
+     */
+    public void onResult(long durationNanos, boolean failure) {
+        byte outcome = (byte) ((failure ? FAILED : 0) | (durationNanos >= slowCallNanos ? SLOW : 0));
+        CircuitStateEnum changed = null;
+        lock.lock();
+        try {
+            if (state == CircuitStateEnum.CLOSED) {
+                if (recorded == window.length) {
+                    byte evicted = window[next];
+                    failed -= evicted & FAILED;
+                    slow -= (evicted & SLOW) >> 1;
+                } else {
+                    recorded++;
+                }
+                window[next] = outcome;
+                next = (next + 1) % window.length;
+                failed += outcome & FAILED;
+                slow += (outcome & SLOW) >> 1;
+                if (recorded >= config.getMinimumCalls() && exceeds(failed, slow, recorded)) {
+                    changed = transition(CircuitStateEnum.OPEN);
+                }
+            } else if (state == CircuitStateEnum.HALF_OPEN) {
+                trialsRecorded++;
+                trialsFailed += outcome & FAILED;
+                trialsSlow += (outcome & SLOW) >> 1;
+                if (trialsRecorded >= config.getHalfOpenCalls()) {
+                    changed = transition(exceeds(trialsFailed, trialsSlow, trialsRecorded)
+                            ? CircuitStateEnum.OPEN : CircuitStateEnum.CLOSED);
+                }
+            }
+        } finally {
+            lock.unlock();
+            notify(changed);
+        }
+    }
+
+    /**
+     * Give back the permission of a call that ended without an outcome, e.g. was cancelled
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            if (state == CircuitStateEnum.HALF_OPEN && trialsPermitted > trialsRecorded) {
+                trialsPermitted--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean exceeds(int failures, int slowCalls, int calls) {
+        return failures * 100.0 / calls >= config.getFailureRateThreshold()
+                || slowCalls * 100.0 / calls >= config.getSlowCallRateThreshold();
+    }
+
+    private CircuitStateEnum transition(CircuitStateEnum to) {
+        state = to;
+        if (to == CircuitStateEnum.OPEN) {
+            openedAt = clock.getAsLong();
+        }
+        if (to != CircuitStateEnum.OPEN) {
+            trialsPermitted = 0;
+            trialsRecorded = 0;
+            trialsFailed = 0;
+            trialsSlow = 0;
+        }
+        if (to == CircuitStateEnum.CLOSED) {
+            next = 0;
+            recorded = 0;
+            failed = 0;
+            slow = 0;
+        }
+        return to;
+    }
+
+    private void notify(CircuitStateEnum changed) {
+        if (changed != null && listener != null) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * @return endpoint path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public CircuitBreakerConfig getConfig() {
+        return config;
+    }
+
+    public CircuitStateEnum getState() {
+        return state;
+    }
+
+    /**
+     * @return percentage of failed calls in the window, or -1 while fewer than minimumCalls are recorded
+     */
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return recorded < config.getMinimumCalls() ? -1 : failed * 100.0 / recorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return percentage of slow calls in the window, or -1 while fewer than minimumCalls are recorded
+     */
+    public double getSlowCallRate() {
+        lock.lock();
+        try {
+            return recorded < config.getMinimumCalls() ? -1 : slow * 100.0 / recorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return calls refused since the breaker was created
+     */
+    public long getNotPermittedCalls() {
+        return notPermitted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitBreaker{path=%s, state=%s, failureRate=%.1f, slowCallRate=%.1f, notPermitted=%d}",
+                path, state, getFailureRate(), getSlowCallRate(), getNotPermittedCalls());
+    }
+}
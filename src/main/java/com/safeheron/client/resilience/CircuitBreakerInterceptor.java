@@ -0,0 +1,102 @@
+package com.safeheron.client.resilience;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+
+/**
+ * Guards calls with the circuit breaker of their endpoint. Installed by ClientRegistry ahead of
+ * the rate limiter and the RequestInterceptor, so refused calls take no rate limit permit and
+ * are not encrypted and signed.
+ * <p>
+ * Only the exchange with the server counts towards the breaker: the {@link #timer()} installed
+ * after the RequestInterceptor times the call from there and reports its outcome. Waiting for the
+ * rate limiter, signing and encrypting the envelope, and failures on the way, e.g. a rate limit
+ * rejection or a crypto error, are not the server's doing; such calls are reported as ignored.
+ *
+ * @author safeheron
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+
+    private final CircuitBreakerRegistry registry;
+
+    public static CircuitBreakerInterceptor create(CircuitBreakerRegistry registry) {
+        return new CircuitBreakerInterceptor(registry);
+    }
+
+    private CircuitBreakerInterceptor(CircuitBreakerRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @return interceptor that times the exchange of the calls this one permitted and reports
+     * their outcome; install it after the interceptors whose work should not count
+     */
+    public Interceptor timer() {
+        return CircuitBreakerInterceptor::timeExchange;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String path = request.url().encodedPath();
+        // Retrofit tags every request with the service method it was made through
+        Invocation invocation = request.tag(Invocation.class);
+        CircuitBreaker circuitBreaker = registry.circuitBreaker(path,
+                invocation != null ? invocation.method().getDeclaringClass() : null);
+        if (!circuitBreaker.tryAcquirePermission()) {
+            // OkHttp expects IOException from interceptors; ServiceExecutor unwraps the cause
+            CircuitBreakerOpenException exception = new CircuitBreakerOpenException(path);
+            throw new IOException(exception.getMessage(), exception);
+        }
+        Permit permit = new Permit(circuitBreaker);
+        try {
+            return chain.proceed(request.newBuilder().tag(Permit.class, permit).build());
+        } finally {
+            if (!permit.reported) {
+                // ended before reaching the server, e.g. refused by the rate limiter
+                circuitBreaker.onIgnored();
+            }
+        }
+    }
+
+    private static Response timeExchange(Chain chain) throws IOException {
+        Request request = chain.request();
+        Permit permit = request.tag(Permit.class);
+        if (permit == null || permit.reported) {
+            return chain.proceed(request);
+        }
+        permit.reported = true;
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            if (chain.call().isCanceled()) {
+                permit.circuitBreaker.onIgnored();
+            } else {
+                permit.circuitBreaker.onResult(System.nanoTime() - start, true);
+            }
+            throw e;
+        }
+        permit.circuitBreaker.onResult(System.nanoTime() - start, response.code() >= 500);
+        return response;
+    }
+
+    /**
+     * Permission of one call, passed from the guard to the timer as a request tag
+     */
+    private static final class Permit {
+        final CircuitBreaker circuitBreaker;
+        volatile boolean reported;
+
+        Permit(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+    }
+}
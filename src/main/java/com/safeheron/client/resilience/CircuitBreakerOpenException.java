@@ -0,0 +1,25 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.exception.SafeheronException;
+
+/**
+ * A call was refused, without being sent, because the circuit of its endpoint is open
+ *
+ * @author safeheron
+ */
+public class CircuitBreakerOpenException extends SafeheronException {
+
+    private final String path;
+
+    public CircuitBreakerOpenException(String path) {
+        super(503, "circuit breaker open for " + path);
+        this.path = path;
+    }
+
+    /**
+     * @return endpoint path whose circuit is open
+     */
+    public String getPath() {
+        return path;
+    }
+}
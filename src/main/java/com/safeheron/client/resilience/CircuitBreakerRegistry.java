@@ -0,0 +1,93 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.CircuitBreakerConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Circuit breakers of one API client, one per endpoint path.
+ * <p>
+ * Set on {@link com.safeheron.client.config.SafeheronConfig}; ServiceCreator then guards every
+ * call with the breaker of its path, created on first use with the configuration of the service
+ * interface the call was made through, e.g. {@code TransactionApiService}, or the default one.
+ * <pre>
+ * CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry(CircuitBreakerConfig.builder().build())
+ *         .configure(TransactionApiService.class, CircuitBreakerConfig.builder().slowCallDurationMillis(2000L).build());
+ * </pre>
+ *
+ * @author safeheron
+ */
+@Slf4j
+public class CircuitBreakerRegistry {
+
+    private final CircuitBreakerConfig defaultConfig;
+    private final Map<Class<?>, CircuitBreakerConfig> serviceConfigs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private volatile Consumer<CircuitBreaker> stateListener;
+
+    public CircuitBreakerRegistry() {
+        this(CircuitBreakerConfig.builder().build());
+    }
+
+    /**
+     * @param defaultConfig configuration of the endpoints of services without a configuration of their own
+     */
+    public CircuitBreakerRegistry(CircuitBreakerConfig defaultConfig) {
+        this.defaultConfig = defaultConfig;
+    }
+
+    /**
+     * Configure the breakers of one service interface's endpoints; affects breakers created afterwards
+     *
+     * @param service service interface, e.g. AccountApiService.class
+     * @param config  configuration
+     * @return this
+     */
+    public CircuitBreakerRegistry configure(Class<?> service, CircuitBreakerConfig config) {
+        serviceConfigs.put(service, config);
+        return this;
+    }
+
+    /**
+     * @param stateListener called after any breaker changed state, on the thread that changed it
+     * @return this
+     */
+    public CircuitBreakerRegistry onStateChange(Consumer<CircuitBreaker> stateListener) {
+        this.stateListener = stateListener;
+        return this;
+    }
+
+    /**
+     * @param path    endpoint path
+     * @param service service interface the call was made through, or null
+     * @return the endpoint's breaker
+     */
+    public CircuitBreaker circuitBreaker(String path, Class<?> service) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(path);
+        if (circuitBreaker != null) {
+            return circuitBreaker;
+        }
+        CircuitBreakerConfig config = service != null ? serviceConfigs.getOrDefault(service, defaultConfig) : defaultConfig;
+        return circuitBreakers.computeIfAbsent(path, key -> new CircuitBreaker(key, config, this::stateChanged));
+    }
+
+    /**
+     * @return breakers created so far, by endpoint path
+     */
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(circuitBreakers);
+    }
+
+    private void stateChanged(CircuitBreaker circuitBreaker) {
+        log.warn("Circuit breaker of {} is now {}", circuitBreaker.getPath(), circuitBreaker.getState());
+        Consumer<CircuitBreaker> listener = stateListener;
+        if (listener != null) {
+            listener.accept(circuitBreaker);
+        }
+    }
+}
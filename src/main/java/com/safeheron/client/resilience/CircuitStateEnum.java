@@ -0,0 +1,22 @@
+package com.safeheron.client.resilience;
+
+/**
+ * State of a circuit breaker
+ */
+public enum CircuitStateEnum {
+
+    /**
+     * Calls go through and their outcomes are recorded
+     */
+    CLOSED,
+
+    /**
+     * Calls are refused with a CircuitBreakerOpenException until the open duration has passed
+     */
+    OPEN,
+
+    /**
+     * A few trial calls go through; the rest are refused until their outcome is known
+     */
+    HALF_OPEN
+}
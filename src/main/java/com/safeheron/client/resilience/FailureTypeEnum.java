@@ -0,0 +1,34 @@
+package com.safeheron.client.resilience;
+
+/**
+ * Classification of a failed API call, which decides whether it may be retried
+ */
+public enum FailureTypeEnum {
+
+    /**
+     * The connection could not be established, or broke before a response arrived,
+     * e.g. a refused connection or a connection reset
+     */
+    CONNECT,
+
+    /**
+     * Connecting, writing the request or reading the response timed out
+     */
+    TIMEOUT,
+
+    /**
+     * The server answered with an HTTP 5xx status
+     */
+    HTTP_5XX,
+
+    /**
+     * The server answered with a business error code in the response envelope
+     */
+    BUSINESS,
+
+    /**
+     * Anything else, e.g. an HTTP 4xx status or a response that failed signature verification;
+     * never retried
+     */
+    OTHER
+}
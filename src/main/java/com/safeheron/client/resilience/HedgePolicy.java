@@ -0,0 +1,62 @@
+package com.safeheron.client.resilience;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * When {@link HedgedExecutor} sends a second copy of a slow read
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class HedgePolicy {
+    /**
+     * Latency percentile of an endpoint after which a hedge is sent
+     */
+    @Builder.Default
+    private Double percentile = 95.0;
+
+    /**
+     * Hedge delay used until an endpoint has minSamples latencies recorded, in milliseconds
+     */
+    @Builder.Default
+    private Long initialDelayMillis = 1000L;
+
+    /**
+     * Lower bound of the hedge delay, in milliseconds
+     */
+    @Builder.Default
+    private Long minDelayMillis = 20L;
+
+    /**
+     * Latencies an endpoint needs before its percentile is used
+     */
+    @Builder.Default
+    private Integer minSamples = 20;
+
+    /**
+     * Read-only endpoint paths that may be hedged; calls to any other path are sent once
+     */
+    @Builder.Default
+    private Set<String> readPaths = new HashSet<>(Arrays.asList(
+            "/v1/transactions/one",
+            "/v1/transactions/mpcsign/one",
+            "/v1/web3/sign/one",
+            "/v1/web3/account/one",
+            "/v1/account/one",
+            "/v1/account/coin/balance",
+            "/v1/account/coin/address/info",
+            "/v1/whitelist/one"));
+
+    /**
+     * Budget capping the extra load: each call deposits, each hedge withdraws a token.
+     * Hedges of up to 5% of the calls by default.
+     */
+    @Builder.Default
+    private RetryBudget budget = new RetryBudget(0.05, 10);
+}
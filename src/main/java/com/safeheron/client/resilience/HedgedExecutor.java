@@ -0,0 +1,286 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.utils.ServiceExecutor;
+import retrofit2.Call;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executes read calls with hedging: if a read has not been answered after the endpoint's
+ * usual latency, a second identical request is sent and whichever response arrives first is
+ * used, the other call is cancelled.
+ * <p>
+ * The hedge delay is the {@link HedgePolicy#getPercentile() percentile} of the endpoint's recent
+ * latencies, so only the slowest few percent of calls are hedged. The hedge is a
+ * {@link Call#clone() clone} of the call, which builds a new, freshly signed envelope. Every
+ * hedge withdraws a token from the policy's budget, which caps the extra load when the API is
+ * slow as a whole rather than for a few calls.
+ * <p>
+ * Only paths listed in {@link HedgePolicy#getReadPaths()} are hedged; other calls are sent once.
+ * A failure is not hedged: a call that fails before its hedge is due fails, otherwise the
+ * hedged call fails only when both requests do. Combine with {@link RetryExecutor} to retry.
+ * <pre>
+ * HedgedExecutor hedgedExecutor = new HedgedExecutor();
+ * OneTransactionsResponse tx = hedgedExecutor.execute(transactionApi.oneTransactions(oneTransactionsRequest));
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class HedgedExecutor {
+
+    private static final int WINDOW_SIZE = 256;
+
+    private final HedgePolicy policy;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public HedgedExecutor() {
+        this(HedgePolicy.builder().build());
+    }
+
+    public HedgedExecutor(HedgePolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Execute a read and block until the first response is received
+     *
+     * @param <T> return param type
+     * @param call call
+     * @return return
+     */
+    public <T> T execute(Call<T> call) {
+        CompletableFuture<T> future = executeAsync(call);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SafeheronException) {
+                throw (SafeheronException) e.getCause();
+            }
+            SafeheronException exception = new SafeheronException(500, String.valueOf(e.getCause()));
+            exception.initCause(e.getCause());
+            throw exception;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new SafeheronException(500, "interrupted while waiting for " + path(call));
+        }
+    }
+
+    /**
+     * Execute a read without blocking, as {@link ServiceExecutor#executeAsync} does.
+     * Cancelling the future cancels both requests.
+     *
+     * @param <T> return param type
+     * @param call call
+     * @return future of the first response body
+     */
+    public <T> CompletableFuture<T> executeAsync(Call<T> call) {
+        String path = path(call);
+        if (!policy.getReadPaths().contains(path)) {
+            return ServiceExecutor.executeAsync(call);
+        }
+        calls.increment();
+        policy.getBudget().deposit();
+        LatencyWindow window = latencies.computeIfAbsent(path,
+                p -> new LatencyWindow(WINDOW_SIZE, policy.getPercentile()));
+        Hedged<T> hedged = new Hedged<>(call, window);
+        hedged.start(delayNanos(window));
+        return hedged.result;
+    }
+
+    private long delayNanos(LatencyWindow window) {
+        long percentile = window.percentileNanos(policy.getMinSamples());
+        long delay = percentile >= 0 ? percentile : TimeUnit.MILLISECONDS.toNanos(policy.getInitialDelayMillis());
+        return Math.max(delay, TimeUnit.MILLISECONDS.toNanos(policy.getMinDelayMillis()));
+    }
+
+    private static String path(Call<?> call) {
+        return call.request().url().encodedPath();
+    }
+
+    /**
+     * A read with its primary request and, once due, its hedge. The state is guarded by the
+     * instance lock, which is never held while a request is sent or a future completed.
+     */
+    private final class Hedged<T> {
+
+        private final Call<T> call;
+        private final LatencyWindow window;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<T> result = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                cancelAll();
+                return cancelled;
+            }
+        };
+
+        private CompletableFuture<T> primary;
+        private CompletableFuture<T> hedge;
+        private ScheduledFuture<?> timer;
+        private int failures;
+
+        Hedged(Call<T> call, LatencyWindow window) {
+            this.call = call;
+            this.window = window;
+        }
+
+        void start(long delayNanos) {
+            CompletableFuture<T> sent = ServiceExecutor.executeAsync(call);
+            synchronized (this) {
+                primary = sent;
+                if (!sent.isDone()) {
+                    timer = Scheduler.INSTANCE.schedule(this::sendHedge, delayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            sent.whenComplete((body, t) -> onComplete(sent, body, t));
+        }
+
+        private void sendHedge() {
+            synchronized (this) {
+                if (result.isDone() || failures > 0) {
+                    return;
+                }
+            }
+            if (!policy.getBudget().tryWithdraw()) {
+                budgetExhausted.increment();
+                return;
+            }
+            hedges.increment();
+            CompletableFuture<T> sent = ServiceExecutor.executeAsync(call.clone());
+            boolean late;
+            synchronized (this) {
+                late = result.isDone();
+                hedge = sent;
+            }
+            if (late) {
+                sent.cancel(true);
+                return;
+            }
+            sent.whenComplete((body, t) -> onComplete(sent, body, t));
+        }
+
+        private void onComplete(CompletableFuture<T> attempt, T body, Throwable t) {
+            if (attempt.isCancelled()) {
+                return;
+            }
+            boolean fromPrimary = attempt == primary;
+            if (t == null) {
+                // Record the primary's latency even when the hedge answers first; its real
+                // latency is at least the time waited so far. Recording only the winners
+                // would drag the percentile, and with it the hedge delay, down. It is recorded
+                // after the result is completed, so refreshing the percentile never delays the caller.
+                long latency = System.nanoTime() - startNanos;
+                if (result.complete(body)) {
+                    if (!fromPrimary) {
+                        hedgesWon.increment();
+                    }
+                    cancelAll();
+                }
+                window.record(latency);
+                return;
+            }
+            boolean last;
+            synchronized (this) {
+                failures++;
+                last = hedge == null || failures == 2;
+            }
+            if (last) {
+                result.completeExceptionally(t);
+                cancelAll();
+            }
+        }
+
+        private void cancelAll() {
+            CompletableFuture<T> p;
+            CompletableFuture<T> h;
+            synchronized (this) {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+                p = primary;
+                h = hedge;
+            }
+            if (p != null && !p.isDone()) {
+                p.cancel(true);
+            }
+            if (h != null && !h.isDone()) {
+                h.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return hedgeable reads executed
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return hedge requests sent
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return reads answered by the hedge before the primary request
+     */
+    public long getHedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * @return hedges that were due but not sent because the budget was spent
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    /**
+     * @param path endpoint path
+     * @return current hedge delay of the endpoint, in milliseconds
+     */
+    public long getHedgeDelayMillis(String path) {
+        LatencyWindow window = latencies.get(path);
+        return window == null ? policy.getInitialDelayMillis() : TimeUnit.NANOSECONDS.toMillis(delayNanos(window));
+    }
+
+    public HedgePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HedgedExecutor{calls=%d, hedges=%d, hedgesWon=%d, budgetExhausted=%d}",
+                getCalls(), getHedges(), getHedgesWon(), getBudgetExhausted());
+    }
+
+    private static final class Scheduler {
+        static final ScheduledThreadPoolExecutor INSTANCE;
+
+        static {
+            INSTANCE = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "safeheron-hedge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.safeheron.client.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Most recent latencies of an endpoint, for percentile estimates.
+ * <p>
+ * Recording is one atomic increment and one array store. The percentile is recomputed, by
+ * sorting a copy of the window, only every {@code window / 8} recordings, so it trails the
+ * latest latencies slightly.
+ *
+ * @author safeheron
+ */
+final class LatencyWindow {
+
+    private final AtomicLongArray latencies;
+    private final AtomicLong count = new AtomicLong();
+    private final int refreshInterval;
+    private final double percentile;
+    private volatile long percentileNanos = -1;
+
+    LatencyWindow(int size, double percentile) {
+        this.latencies = new AtomicLongArray(size);
+        this.refreshInterval = Math.max(1, size / 8);
+        this.percentile = percentile;
+    }
+
+    void record(long nanos) {
+        long n = count.getAndIncrement();
+        latencies.set((int) (n % latencies.length()), nanos);
+        if (n % refreshInterval == 0) {
+            refresh(n + 1);
+        }
+    }
+
+    /**
+     * @param minSamples latencies needed for an estimate
+     * @return the percentile latency in nanoseconds, or -1 with fewer than minSamples recorded
+     */
+    long percentileNanos(int minSamples) {
+        long n = count.get();
+        if (n < minSamples) {
+            return -1;
+        }
+        if (percentileNanos < 0) {
+            refresh(n);
+        }
+        return percentileNanos;
+    }
+
+    private void refresh(long recorded) {
+        int size = (int) Math.min(recorded, latencies.length());
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        percentileNanos = sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+}
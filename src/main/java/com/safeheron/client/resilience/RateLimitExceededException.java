@@ -0,0 +1,15 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.exception.SafeheronException;
+
+/**
+ * A call was refused by the client-side rate limiter, without being sent
+ *
+ * @author safeheron
+ */
+public class RateLimitExceededException extends SafeheronException {
+
+    public RateLimitExceededException(String message) {
+        super(429, message);
+    }
+}
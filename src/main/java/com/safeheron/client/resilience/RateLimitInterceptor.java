@@ -0,0 +1,56 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.RateLimitModeEnum;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Takes a permit from the {@link RateLimiter} before a call is encrypted and sent.
+ * Installed by ServiceCreator ahead of the RequestInterceptor.
+ *
+ * @author safeheron
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    private final RateLimiter rateLimiter;
+    private final boolean failFast;
+
+    public static RateLimitInterceptor create(RateLimiter rateLimiter) {
+        return new RateLimitInterceptor(rateLimiter);
+    }
+
+    private RateLimitInterceptor(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        this.failFast = rateLimiter.getConfig().getMode() == RateLimitModeEnum.FAIL_FAST;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!rateLimiter.isAdmitted(request)) {
+            String path = request.url().encodedPath();
+            try {
+                if (failFast) {
+                    if (!rateLimiter.tryAcquire(path)) {
+                        throw new RateLimitExceededException("rate limit exceeded for " + path);
+                    }
+                } else {
+                    rateLimiter.acquire(path);
+                }
+            } catch (RateLimitExceededException e) {
+                // OkHttp expects IOException from interceptors; ServiceExecutor unwraps the cause
+                throw new IOException(e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for a rate limit permit");
+            }
+        }
+        return chain.proceed(request);
+    }
+}
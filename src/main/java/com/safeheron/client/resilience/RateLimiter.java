@@ -0,0 +1,262 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.RateLimitConfig;
+import com.safeheron.client.utils.ServiceExecutor;
+import okhttp3.Request;
+import retrofit2.Call;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side rate limiter of one API key.
+ * <p>
+ * A call needs a permit from the API key's bucket and, if its endpoint has a limit of its own,
+ * from the endpoint's bucket. Set on {@link com.safeheron.client.config.SafeheronConfig}, the
+ * limiter is applied by an interceptor ahead of the request envelope, so a call that would be
+ * refused for its rate costs no encryption or signing. Give every API key its own limiter.
+ * <p>
+ * Permits can be taken in three ways: {@link #acquire} waits for one, {@link #tryAcquire} only
+ * takes one that is available now, and {@link #acquireAsync} returns a future completed when
+ * the permit is due, without holding a thread. {@link #executeAsync} enqueues a call once its
+ * permit is due; the interceptor lets such a call through without taking a second permit.
+ *
+ * @author safeheron
+ */
+public class RateLimiter {
+
+    private final RateLimitConfig config;
+    private final TokenBucket apiKeyBucket;
+    private final Map<String, TokenBucket> endpointBuckets;
+    private final long maxWaitNanos;
+    private final Set<Request> admitted = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    public RateLimiter(RateLimitConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond clock of the buckets, System::nanoTime but in tests; waits are still
+     *              measured in real time
+     */
+    RateLimiter(RateLimitConfig config, LongSupplier clock) {
+        this.config = config;
+        this.apiKeyBucket = config.getPermitsPerSecond() == null ? null
+                : new TokenBucket(config.getPermitsPerSecond(), burst(config.getBurst(), config.getPermitsPerSecond()), clock);
+        Map<String, TokenBucket> buckets = new HashMap<>();
+        if (config.getEndpointPermitsPerSecond() != null) {
+            config.getEndpointPermitsPerSecond().forEach((path, permitsPerSecond) ->
+                    buckets.put(path, new TokenBucket(permitsPerSecond, burst(null, permitsPerSecond), clock)));
+        }
+        this.endpointBuckets = buckets;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis() != null ? config.getMaxWaitMillis() : 0);
+    }
+
+    /**
+     * Wait for a permit
+     *
+     * @param path endpoint path, e.g. /v2/transactions/create
+     * @throws RateLimitExceededException if the wait would exceed maxWaitMillis
+     * @throws InterruptedException       if interrupted while waiting; the permit is spent
+     */
+    public void acquire(String path) throws InterruptedException {
+        long wait = reserve(path, maxWaitNanos);
+        if (wait > 0) {
+            long deadline = System.nanoTime() + wait;
+            for (long remaining = wait; remaining > 0; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Take a permit if one is available now
+     *
+     * @param path endpoint path
+     * @return whether a permit was taken
+     */
+    public boolean tryAcquire(String path) {
+        TokenBucket endpointBucket = endpointBuckets.get(path);
+        if (endpointBucket != null && !endpointBucket.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        if (apiKeyBucket != null && !apiKeyBucket.tryAcquire()) {
+            if (endpointBucket != null) {
+                endpointBucket.release();
+            }
+            rejected.increment();
+            return false;
+        }
+        acquired.increment();
+        return true;
+    }
+
+    /**
+     * Reserve a permit without waiting for it
+     *
+     * @param path endpoint path
+     * @return future completed when the permit is due, or failed with a RateLimitExceededException
+     * if that is more than maxWaitMillis away
+     */
+    public CompletableFuture<Void> acquireAsync(String path) {
+        long wait;
+        try {
+            wait = reserve(path, maxWaitNanos);
+        } catch (RateLimitExceededException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        ScheduledFuture<?> timer = Scheduler.INSTANCE.schedule(() -> permit.complete(null), wait, TimeUnit.NANOSECONDS);
+        permit.whenComplete((v, t) -> timer.cancel(false));
+        return permit;
+    }
+
+    /**
+     * Enqueue a REST call as {@link ServiceExecutor#executeAsync} does, once a permit is due.
+     * Cancelling the future cancels the call, also while it waits for the permit.
+     *
+     * @param <T> return param type
+     * @param call call
+     * @return future of the response body
+     */
+    public <T> CompletableFuture<T> executeAsync(Call<T> call) {
+        Request request = call.request();
+        CompletableFuture<Void> permit = acquireAsync(request.url().encodedPath());
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                permit.cancel(false);
+                call.cancel();
+                return cancelled;
+            }
+        };
+        permit.whenComplete((v, t) -> {
+            if (t != null) {
+                future.completeExceptionally(t);
+                return;
+            }
+            if (future.isDone()) {
+                return;
+            }
+            admitted.add(request);
+            ServiceExecutor.executeAsync(call).whenComplete((body, e) -> {
+                admitted.remove(request);
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(body);
+                }
+            });
+        });
+        return future;
+    }
+
+    /**
+     * @param request request arriving at the interceptor
+     * @return whether the request was enqueued by {@link #executeAsync} and already holds its permit
+     */
+    boolean isAdmitted(Request request) {
+        return admitted.remove(request);
+    }
+
+    RateLimitConfig getConfig() {
+        return config;
+    }
+
+    private long reserve(String path, long maxWait) {
+        TokenBucket endpointBucket = endpointBuckets.get(path);
+        long endpointWait = endpointBucket != null ? endpointBucket.reserve(maxWait) : 0;
+        long apiKeyWait = endpointWait >= 0 && apiKeyBucket != null ? apiKeyBucket.reserve(maxWait) : 0;
+        if (endpointWait < 0 || apiKeyWait < 0) {
+            if (endpointWait >= 0 && endpointBucket != null) {
+                endpointBucket.release();
+            }
+            rejected.increment();
+            throw new RateLimitExceededException("rate limit exceeded for " + path);
+        }
+        long wait = Math.max(endpointWait, apiKeyWait);
+        acquired.increment();
+        if (wait > 0) {
+            delayed.increment();
+            totalWaitNanos.add(wait);
+        }
+        return wait;
+    }
+
+    private static int burst(Integer burst, double permitsPerSecond) {
+        return burst != null ? burst : (int) Math.max(1, Math.ceil(permitsPerSecond));
+    }
+
+    /**
+     * @return permits handed out, at once or after a wait
+     */
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return permits that had to be waited for
+     */
+    public long getDelayed() {
+        return delayed.sum();
+    }
+
+    /**
+     * @return calls refused
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return total time calls were made to wait for permits, in nanoseconds
+     */
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RateLimiter{acquired=%d, delayed=%d, rejected=%d, avgWaitMs=%.1f}",
+                getAcquired(), getDelayed(), getRejected(),
+                getDelayed() == 0 ? 0.0 : getTotalWaitNanos() / 1e6 / getDelayed());
+    }
+
+    private static final class Scheduler {
+        static final ScheduledThreadPoolExecutor INSTANCE;
+
+        static {
+            INSTANCE = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "safeheron-rate-limit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
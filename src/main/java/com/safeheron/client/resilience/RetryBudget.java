@@ -0,0 +1,73 @@
+package com.safeheron.client.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a fraction of the calls made.
+ * <p>
+ * Every call deposits {@code ratio} of a token, up to {@code maxTokens}, and every retry
+ * withdraws a whole token. While the Safeheron API or the network is healthy the budget stays
+ * full; during an outage retries stop after the balance is spent, so clients do not multiply
+ * the load on a struggling server by their retry count.
+ *
+ * @author safeheron
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerCall;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    /**
+     * Retries of up to 10% of the calls, with a balance of 10 retries to start with
+     */
+    public RetryBudget() {
+        this(0.1, 10);
+    }
+
+    /**
+     * @param ratio     retries allowed per call made
+     * @param maxTokens maximum balance of retries, which the budget starts with
+     */
+    public RetryBudget(double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens < 0) {
+            throw new IllegalArgumentException("ratio and maxTokens must not be negative");
+        }
+        this.depositPerCall = (long) (ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * Record a call, first attempts only
+     */
+    public void deposit() {
+        balance.accumulateAndGet(depositPerCall, (current, deposit) -> Math.min(maxBalance, current + deposit));
+    }
+
+    /**
+     * Withdraw a token for a retry
+     *
+     * @return whether the retry is within budget
+     */
+    public boolean tryWithdraw() {
+        for (;;) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return retries currently available
+     */
+    public double getBalance() {
+        return (double) balance.get() / SCALE;
+    }
+}
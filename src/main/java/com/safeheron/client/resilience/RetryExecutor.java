@@ -0,0 +1,288 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.api.MPCSignApiService;
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.CreateMPCSignTransactionRequest;
+import com.safeheron.client.request.CreateTransactionRequest;
+import com.safeheron.client.request.OneMPCSignTransactionsRequest;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.response.TxKeyResult;
+import com.safeheron.client.utils.ServiceExecutor;
+import lombok.extern.slf4j.Slf4j;
+import retrofit2.Call;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Executes REST calls like {@link ServiceExecutor#execute}, retrying transient failures.
+ * <p>
+ * Failures are classified by {@link #classify}; those the {@link RetryPolicy} allows are
+ * retried with exponential backoff and full jitter, as long as the policy's {@link RetryBudget}
+ * has a token left. Each retry sends a {@link Call#clone() clone} of the call, which builds a
+ * new, freshly signed envelope.
+ * <p>
+ * A read, a call to one of the policy's readPaths, can always be repeated. A write is only
+ * retried when it carries a customerRefId, which lets the server reject the second copy of a
+ * transaction whose first attempt went through although the response was lost. Such a
+ * rejection after a retry is treated as success: the existing transaction is looked up by its
+ * customerRefId and returned.
+ * <pre>
+ * RetryExecutor retryExecutor = new RetryExecutor();
+ * TxKeyResult result = retryExecutor.createTransaction(transactionApi, createTransactionRequest);
+ * OneTransactionsResponse tx = retryExecutor.execute(transactionApi.oneTransactions(oneTransactionsRequest));
+ * </pre>
+ *
+ * @author safeheron
+ */
+@Slf4j
+public class RetryExecutor {
+
+    private final RetryPolicy policy;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder duplicatesResolved = new LongAdder();
+
+    public RetryExecutor() {
+        this(RetryPolicy.builder().build());
+    }
+
+    public RetryExecutor(RetryPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Execute a read, retrying transient failures. Only calls to the policy's readPaths are
+     * retried; any other call is sent once, as a write must go through {@link #executeWrite}
+     * to be retried.
+     *
+     * @param <T> return param type
+     * @param call call of an endpoint without side effects
+     * @return return
+     */
+    public <T> T execute(Call<T> call) {
+        boolean read = policy.getReadPaths().contains(path(call));
+        if (!read) {
+            log.debug("Safeheron call {} is not a known read, sending it once", path(call));
+        }
+        return run(call, read, null, null);
+    }
+
+    /**
+     * Execute a write. It is retried only when it carries a customerRefId; a duplicate
+     * customerRefId error after a retry returns the existing record instead.
+     *
+     * @param <T> return param type
+     * @param call call of a create endpoint
+     * @param customerRefId customerRefId of the request, or null
+     * @param existing looks up the record created under a customerRefId
+     * @return return
+     */
+    public <T> T executeWrite(Call<T> call, String customerRefId, Function<String, T> existing) {
+        boolean idempotent = customerRefId != null && !customerRefId.isEmpty();
+        return run(call, idempotent, customerRefId, existing);
+    }
+
+    /**
+     * Create a transaction with retries, see {@link TransactionApiService#createTransactions}
+     *
+     * @param api transaction api
+     * @param request request, retried only if it has a customerRefId
+     * @return txKey of the created, or already existing, transaction
+     */
+    public TxKeyResult createTransaction(TransactionApiService api, CreateTransactionRequest request) {
+        return executeWrite(api.createTransactions(request), request.getCustomerRefId(), customerRefId -> {
+            OneTransactionsRequest oneTransactionsRequest = new OneTransactionsRequest();
+            oneTransactionsRequest.setCustomerRefId(customerRefId);
+            return txKeyResult(execute(api.oneTransactions(oneTransactionsRequest)).getTxKey());
+        });
+    }
+
+    /**
+     * Create an MPC sign transaction with retries, see {@link MPCSignApiService#createMPCSignTransactions}
+     *
+     * @param api MPC sign api
+     * @param request request, retried only if it has a customerRefId
+     * @return txKey of the created, or already existing, transaction
+     */
+    public TxKeyResult createMPCSignTransaction(MPCSignApiService api, CreateMPCSignTransactionRequest request) {
+        return executeWrite(api.createMPCSignTransactions(request), request.getCustomerRefId(), customerRefId -> {
+            OneMPCSignTransactionsRequest oneMPCSignTransactionsRequest = new OneMPCSignTransactionsRequest();
+            oneMPCSignTransactionsRequest.setCustomerRefId(customerRefId);
+            return txKeyResult(execute(api.oneMPCSignTransactions(oneMPCSignTransactionsRequest)).getTxKey());
+        });
+    }
+
+    /**
+     * Classify the failure of a call
+     *
+     * @param t exception thrown by {@link Call#execute()} or {@link ServiceExecutor#execute}
+     * @return failure type
+     */
+    public static FailureTypeEnum classify(Throwable t) {
+        if (t instanceof RateLimitExceededException || t instanceof CircuitBreakerOpenException) {
+            return FailureTypeEnum.OTHER;
+        }
+        if (t instanceof SafeheronException) {
+            // ServiceExecutor keeps the IOException a call failed with as the cause
+            if (t.getCause() instanceof IOException) {
+                return classify(t.getCause());
+            }
+            return ((SafeheronException) t).getCode() != null ? FailureTypeEnum.BUSINESS : FailureTypeEnum.OTHER;
+        }
+        if (t instanceof IOException) {
+            if (t.getCause() != null && !(t.getCause() instanceof IOException)) {
+                // the request envelope could not be built
+                return FailureTypeEnum.OTHER;
+            }
+            if ("Canceled".equals(t.getMessage())) {
+                return FailureTypeEnum.OTHER;
+            }
+            // SocketTimeoutException, or OkHttp's call timeout
+            return t instanceof InterruptedIOException ? FailureTypeEnum.TIMEOUT : FailureTypeEnum.CONNECT;
+        }
+        return FailureTypeEnum.OTHER;
+    }
+
+    private <T> T run(Call<T> call, boolean retryable, String customerRefId, Function<String, T> existing) {
+        calls.increment();
+        policy.getBudget().deposit();
+        List<SafeheronException> earlierFailures = new ArrayList<>();
+        for (int attempt = 1; ; attempt++) {
+            Call<T> current = attempt == 1 ? call : call.clone();
+            SafeheronException failure;
+            FailureTypeEnum type;
+            try {
+                Response<T> response = current.execute();
+                if (response.isSuccessful()) {
+                    return response.body();
+                }
+                failure = httpFailure(response);
+                type = response.code() >= 500 ? FailureTypeEnum.HTTP_5XX : FailureTypeEnum.OTHER;
+            } catch (SafeheronException e) {
+                failure = e;
+                type = classify(e);
+                if (attempt > 1 && existing != null && policy.getDuplicateCustomerRefIdCodes().contains(e.getCode())) {
+                    log.info("customerRefId {} already used after a retry, looking up the existing record", customerRefId);
+                    duplicatesResolved.increment();
+                    return existing.apply(customerRefId);
+                }
+            } catch (IOException e) {
+                if (e.getCause() instanceof SafeheronException) {
+                    failure = (SafeheronException) e.getCause();
+                } else {
+                    failure = new SafeheronException(500, e.getMessage());
+                    failure.initCause(e);
+                }
+                type = current.isCanceled() ? FailureTypeEnum.OTHER : classify(e);
+            } catch (RuntimeException e) {
+                failure = new SafeheronException(500, e.getMessage());
+                failure.initCause(e);
+                type = FailureTypeEnum.OTHER;
+            }
+
+            if (!retryable || attempt >= policy.getMaxAttempts() || !isRetryable(type, failure)) {
+                throw withEarlierFailures(failure, earlierFailures);
+            }
+            if (!policy.getBudget().tryWithdraw()) {
+                budgetExhausted.increment();
+                log.warn("Safeheron call {} failed ({}), retry budget exhausted", path(call), type);
+                throw withEarlierFailures(failure, earlierFailures);
+            }
+            long backoff = backoffMillis(attempt);
+            log.warn("Safeheron call {} failed ({}: {}), attempt {} of {}, retrying in {} ms",
+                    path(call), type, failure.getMessage(), attempt, policy.getMaxAttempts(), backoff);
+            retries.increment();
+            earlierFailures.add(failure);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw withEarlierFailures(failure, earlierFailures);
+            }
+        }
+    }
+
+    private boolean isRetryable(FailureTypeEnum type, SafeheronException failure) {
+        if (type == FailureTypeEnum.BUSINESS) {
+            return policy.getRetryableBusinessCodes().contains(failure.getCode());
+        }
+        return type != FailureTypeEnum.OTHER && policy.getRetryOn().contains(type);
+    }
+
+    /**
+     * Full jitter: uniformly random between zero and the exponential backoff for the attempt
+     */
+    long backoffMillis(int attempt) {
+        double exponential = policy.getInitialBackoffMillis() * Math.pow(policy.getBackoffMultiplier(), attempt - 1);
+        long bound = (long) Math.min(policy.getMaxBackoffMillis(), exponential);
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    private static SafeheronException httpFailure(Response<?> response) throws IOException {
+        StringBuilder errorMsgBuilder = new StringBuilder();
+        errorMsgBuilder.append("http request failed: ");
+        errorMsgBuilder.append(response.code());
+        errorMsgBuilder.append(null != response.errorBody() ? " " + response.errorBody().string() : "");
+        return new SafeheronException(500, errorMsgBuilder.toString());
+    }
+
+    private static SafeheronException withEarlierFailures(SafeheronException failure, List<SafeheronException> earlierFailures) {
+        for (SafeheronException earlier : earlierFailures) {
+            if (earlier != failure) {
+                failure.addSuppressed(earlier);
+            }
+        }
+        return failure;
+    }
+
+    private static String path(Call<?> call) {
+        return call.request().url().encodedPath();
+    }
+
+    private static TxKeyResult txKeyResult(String txKey) {
+        TxKeyResult txKeyResult = new TxKeyResult();
+        txKeyResult.setTxKey(txKey);
+        return txKeyResult;
+    }
+
+    /**
+     * @return calls executed, not counting retries
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * @return retries sent
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return failures that were not retried because the budget was spent
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    /**
+     * @return writes rejected as duplicates after a retry and resolved by looking up the existing record
+     */
+    public long getDuplicatesResolved() {
+        return duplicatesResolved.sum();
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+}
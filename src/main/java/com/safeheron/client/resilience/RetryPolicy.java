@@ -0,0 +1,106 @@
+package com.safeheron.client.resilience;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * When and how often {@link RetryExecutor} retries a failed call
+ *
+ * @author safeheron
+ */
+@Data
+@Builder
+public class RetryPolicy {
+    /**
+     * Maximum number of attempts, including the first one
+     */
+    @Builder.Default
+    private Integer maxAttempts = 3;
+
+    /**
+     * Backoff before the first retry, in milliseconds
+     */
+    @Builder.Default
+    private Long initialBackoffMillis = 200L;
+
+    /**
+     * Upper bound of the backoff, in milliseconds
+     */
+    @Builder.Default
+    private Long maxBackoffMillis = 5000L;
+
+    /**
+     * Factor the backoff grows by with every retry
+     */
+    @Builder.Default
+    private Double backoffMultiplier = 2.0;
+
+    /**
+     * Failure types that are retried: CONNECT, TIMEOUT and HTTP_5XX by default. BUSINESS failures
+     * are only retried for the codes in retryableBusinessCodes.
+     */
+    @Builder.Default
+    private Set<FailureTypeEnum> retryOn = EnumSet.of(FailureTypeEnum.CONNECT, FailureTypeEnum.TIMEOUT, FailureTypeEnum.HTTP_5XX);
+
+    /**
+     * Business codes of transient server-side errors that are retried, none by default
+     */
+    @Builder.Default
+    private Set<Integer> retryableBusinessCodes = Collections.emptySet();
+
+    /**
+     * Business codes with which a create endpoint rejects a customerRefId that is already in use.
+     * After a retry such a rejection means an earlier attempt went through, and the existing
+     * transaction is looked up instead.
+     */
+    @Builder.Default
+    private Set<Integer> duplicateCustomerRefIdCodes = new HashSet<>(Arrays.asList(9001));
+
+    /**
+     * Read-only endpoint paths, which {@link RetryExecutor#execute} may retry; a call to any
+     * other path is sent once. Writes are retried through {@link RetryExecutor#executeWrite}
+     * when they carry a customerRefId.
+     */
+    @Builder.Default
+    private Set<String> readPaths = new HashSet<>(Arrays.asList(
+            "/v1/account/coin/address/info",
+            "/v1/account/coin/address/list",
+            "/v1/account/coin/balance",
+            "/v1/account/coin/list",
+            "/v1/account/getByAddress",
+            "/v1/account/list",
+            "/v1/account/one",
+            "/v1/coin/address/check",
+            "/v1/coin/balance/snapshot",
+            "/v1/coin/block/height",
+            "/v1/coin/list",
+            "/v1/coin/maintain/list",
+            "/v1/gas/status",
+            "/v1/gas/transactions/getByTxKey",
+            "/v1/tools/aml-checker/retrieves",
+            "/v1/transactions/approvalDetail",
+            "/v1/transactions/list",
+            "/v1/transactions/mpcsign/list",
+            "/v1/transactions/mpcsign/one",
+            "/v1/transactions/one",
+            "/v1/web3/account/list",
+            "/v1/web3/account/one",
+            "/v1/web3/sign/list",
+            "/v1/web3/sign/one",
+            "/v1/whitelist/list",
+            "/v1/whitelist/one",
+            "/v2/transactions/getFeeRate",
+            "/v2/transactions/list"));
+
+    /**
+     * Budget limiting retries across all calls, shared by everything using this policy
+     */
+    @Builder.Default
+    private RetryBudget budget = new RetryBudget();
+}
@@ -0,0 +1,80 @@
+package com.safeheron.client.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket, implemented as the generic cell rate algorithm.
+ * <p>
+ * The whole state is one theoretical arrival time: the instant at which the bucket would be
+ * full again if no further permits were taken. Taking a permit moves it on by one interval
+ * with a single compare-and-set, so there is no lock to queue on and no refill thread.
+ *
+ * @author safeheron
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst            permits available at once after an idle period
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond clock, System::nanoTime but in tests
+     */
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive and burst at least 1");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.clock = clock;
+        this.theoreticalArrival = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Reserve a permit
+     *
+     * @param maxWaitNanos longest acceptable wait
+     * @return nanoseconds until the permit may be used, zero if at once, or -1 if the wait would
+     * exceed maxWaitNanos, in which case nothing is reserved
+     */
+    public long reserve(long maxWaitNanos) {
+        long now = clock.getAsLong();
+        for (;;) {
+            long current = theoreticalArrival.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * Take a permit if one is available now
+     *
+     * @return whether a permit was taken
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Give back a permit reserved but not used
+     */
+    void release() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+}
@@ -0,0 +1,148 @@
+package com.safeheron.client.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table from 64-bit key hashes to record locations, held in a direct
+ * buffer outside the Java heap.
+ * <p>
+ * A slot is 16 bytes: the key hash and the location, zero for an empty slot. Collisions are
+ * resolved by linear probing. The keys themselves stay in the log: a slot whose hash matches is
+ * confirmed by a predicate that compares the key of the record at its location, so two keys
+ * with the same hash are kept apart. Not thread-safe; the store guards it with its lock.
+ *
+ * @author safeheron
+ */
+final class OffHeapHashIndex {
+
+    static final int SLOT = 16;
+
+    /**
+     * Largest table whose byte offsets fit in an int: 2^26 slots of 16 bytes, a 1GB buffer
+     */
+    static final int MAX_CAPACITY = 1 << 26;
+    private static final double LOAD_FACTOR = 0.7;
+
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+
+    OffHeapHashIndex(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(MAX_CAPACITY, initialCapacity)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.table = ByteBuffer.allocateDirect(capacity * SLOT).order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param hash    key hash
+     * @param matches whether the record at a location has the key looked up
+     * @return location of the key, or 0 if it is not indexed
+     */
+    long get(long hash, LongPredicate matches) {
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long location = table.getLong(slot * SLOT + 8);
+            if (location == 0) {
+                return 0;
+            }
+            if (table.getLong(slot * SLOT) == hash && matches.test(location)) {
+                return location;
+            }
+        }
+    }
+
+    /**
+     * Point the key at a new location
+     *
+     * @param hash     key hash
+     * @param location new location, not 0
+     * @param sameKey  whether the record at an indexed location has the same key
+     * @return the location the key had, or 0 if it was not indexed
+     */
+    long put(long hash, long location, LongPredicate sameKey) {
+        if (size + 1 > capacity * LOAD_FACTOR) {
+            grow();
+        }
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long existing = table.getLong(slot * SLOT + 8);
+            if (existing == 0) {
+                table.putLong(slot * SLOT, hash);
+                table.putLong(slot * SLOT + 8, location);
+                size++;
+                return 0;
+            }
+            if (table.getLong(slot * SLOT) == hash && sameKey.test(existing)) {
+                table.putLong(slot * SLOT + 8, location);
+                return existing;
+            }
+        }
+    }
+
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            if (size + 1 >= capacity) {
+                throw new IllegalStateException("index is full at " + size + " keys");
+            }
+            return;
+        }
+        ByteBuffer old = table;
+        int oldCapacity = capacity;
+        allocate(capacity << 1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long location = old.getLong(i * SLOT + 8);
+            if (location == 0) {
+                continue;
+            }
+            long hash = old.getLong(i * SLOT);
+            int slot = (int) hash & mask;
+            while (table.getLong(slot * SLOT + 8) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.putLong(slot * SLOT, hash);
+            table.putLong(slot * SLOT + 8, location);
+        }
+        Segment.unmap(old);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return off-heap bytes held
+     */
+    long memoryBytes() {
+        return (long) capacity * SLOT;
+    }
+
+    void release() {
+        Segment.unmap(table);
+        table = null;
+    }
+
+    /**
+     * 64-bit FNV-1a over the key's chars, finished with the MurmurHash3 mixer so that the low
+     * bits used for the slot are well spread
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,254 @@
+package com.safeheron.client.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped segment file of a {@link TransactionStore} log.
+ * <p>
+ * After an 8 byte header of magic and version, records follow back to back:
+ * <pre>
+ * int length | int crc32 of body | body: short txKey length, txKey, short customerRefId length, customerRefId, JSON
+ * </pre>
+ * The file is created at its full size, so the rest of it reads as zeros. A record's length is
+ * written after its body and CRC, so a length of zero marks the end of the log, and a record
+ * that was only partly written when the machine stopped fails its CRC.
+ *
+ * @author safeheron
+ */
+final class Segment implements Closeable {
+
+    static final int MAGIC = 0x53484c47;
+    static final int VERSION = 1;
+    static final int HEADER = 8;
+    static final int RECORD_HEADER = 8;
+
+    final int id;
+    final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Offset of the next record; written under the store's write lock
+     */
+    int position = HEADER;
+
+    /**
+     * Records in the segment, and those still current for their txKey
+     */
+    int records;
+    int live;
+
+    private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static String fileName(int id) {
+        return String.format("segment-%08d.log", id);
+    }
+
+    static Segment create(Path directory, int id, int size) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+        }
+        Segment segment = map(id, path);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        return segment;
+    }
+
+    static Segment open(Path path, int id) throws IOException {
+        Segment segment = map(id, path);
+        if (segment.capacity() < HEADER || segment.buffer.getInt(0) != MAGIC) {
+            segment.close();
+            throw new IOException(path + " is not a transaction store segment");
+        }
+        if (segment.buffer.getInt(4) != VERSION) {
+            segment.close();
+            throw new IOException(path + " has unsupported version " + segment.buffer.getInt(4));
+        }
+        return segment;
+    }
+
+    private static Segment map(int id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            return new Segment(id, path, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @param body record body
+     * @return offset of the record, or -1 if it does not fit
+     */
+    int append(byte[] body) {
+        int offset = position;
+        if ((long) offset + RECORD_HEADER + body.length > capacity()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        ByteBuffer target = buffer.duplicate();
+        ((Buffer) target).position(offset + RECORD_HEADER);
+        target.put(body);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        buffer.putInt(offset, body.length);
+        position = offset + RECORD_HEADER + body.length;
+        records++;
+        live++;
+        return offset;
+    }
+
+    /**
+     * @return body length of the record at offset
+     */
+    int length(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    /**
+     * @return body of the record at offset
+     */
+    byte[] body(int offset) {
+        byte[] body = new byte[length(offset)];
+        ByteBuffer source = buffer.duplicate();
+        ((Buffer) source).position(offset + RECORD_HEADER);
+        source.get(body);
+        return body;
+    }
+
+    String txKey(int offset) {
+        int start = offset + RECORD_HEADER;
+        return string(start + 2, buffer.getShort(start));
+    }
+
+    String customerRefId(int offset) {
+        int start = offset + RECORD_HEADER;
+        int txKeyLength = buffer.getShort(start);
+        return string(start + 4 + txKeyLength, buffer.getShort(start + 2 + txKeyLength));
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        ((Buffer) source).position(offset);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Walk the records, stopping at the end of the log or the first damaged record, and place
+     * the write position after the last intact one
+     *
+     * @param visitor receives the offset of each intact record
+     * @return bytes cut off after a damaged record, 0 if the log ended cleanly
+     */
+    int recover(RecordVisitor visitor) {
+        int offset = HEADER;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER <= capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || (long) offset + RECORD_HEADER + length > capacity() || !intact(offset, length, crc)) {
+                int damaged = capacity() - offset;
+                for (int i = offset; i < capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                position = offset;
+                return damaged;
+            }
+            visitor.visit(offset);
+            offset += RECORD_HEADER + length;
+        }
+        position = offset;
+        return 0;
+    }
+
+    private boolean intact(int offset, int length, CRC32 crc) {
+        crc.reset();
+        ByteBuffer body = buffer.duplicate();
+        ((Buffer) body).position(offset + RECORD_HEADER);
+        ((Buffer) body).limit(offset + RECORD_HEADER + length);
+        byte[] chunk = new byte[Math.min(length, 8192)];
+        while (body.hasRemaining()) {
+            int n = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue() == buffer.getInt(offset + 4);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        unmap(buffer);
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Release a mapped or direct buffer now rather than when it is garbage collected; the buffer
+     * must not be used afterwards. Falls back to the garbage collector where this is not possible.
+     */
+    static void unmap(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            // Java 8
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (Exception ignored) {
+                // left to the garbage collector
+            }
+        } catch (Exception ignored) {
+            // left to the garbage collector
+        }
+    }
+
+    interface RecordVisitor {
+        void visit(int offset);
+    }
+}
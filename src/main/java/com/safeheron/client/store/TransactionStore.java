@@ -0,0 +1,569 @@
+package com.safeheron.client.store;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.config.TransactionStoreConfig;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.response.OneTransactionsResponse;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.sync.TransactionSink;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.ServiceExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local store of transactions, so that transactions already seen in a terminal status are read
+ * from disk instead of asking oneTransactions again.
+ * <p>
+ * Transactions are appended as JSON to a log of memory-mapped {@link Segment} files. Two hash
+ * indexes outside the Java heap map txKey and customerRefId to the latest record of a
+ * transaction; a lookup is an index probe and a read from the mapped file, and the heap holds
+ * nothing per transaction. Storing a transaction again appends a new record and leaves the old
+ * one as garbage, which {@link #compact()} reclaims.
+ * <p>
+ * The indexes are not persisted. Opening a store walks the segments and rebuilds them from the
+ * keys in the record headers, without parsing JSON. A record that was torn or damaged when the
+ * machine stopped fails its CRC; it and everything after it in its segment are cut off, so the
+ * store opens with every transaction stored before it. Records reach the disk when the OS
+ * writes the mapped pages back, after {@link #flush()}, or on every put with forceOnWrite.
+ * <p>
+ * Reads run concurrently; puts and compaction take a write lock.
+ * <pre>
+ * TransactionStore store = new TransactionStore(TransactionStoreConfig.builder().directory("tx-store").build());
+ * OneTransactionsResponse transaction = store.oneTransactions(transactionApi, oneTransactionsRequest);
+ * </pre>
+ *
+ * @author safeheron
+ */
+@Slf4j
+public class TransactionStore implements TransactionSink, Closeable {
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+    /**
+     * Most fields of a transaction are null; leaving them out makes records several times smaller
+     */
+    private static final ObjectWriter WRITER = JsonUtil.getObjectMapper().copy()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .writer();
+
+    private final TransactionStoreConfig config;
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapHashIndex txKeyIndex;
+    private final OffHeapHashIndex customerRefIdIndex;
+    private Segment active;
+    private boolean closed;
+
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder networkLookups = new LongAdder();
+    private final LongAdder compactedSegments = new LongAdder();
+    private long recoveredRecords;
+    private long truncatedBytes;
+
+    /**
+     * Open the store in config's directory, recovering the transactions stored before
+     *
+     * @param config store config
+     * @throws SafeheronException if the directory or a segment cannot be opened
+     */
+    public TransactionStore(TransactionStoreConfig config) {
+        if (config.getDirectory() == null) {
+            throw new IllegalArgumentException("directory is required");
+        }
+        this.config = config;
+        this.directory = Paths.get(config.getDirectory());
+        this.txKeyIndex = new OffHeapHashIndex(config.getInitialIndexCapacity());
+        this.customerRefIdIndex = new OffHeapHashIndex(config.getInitialIndexCapacity());
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            close();
+            throw failure("open", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path path : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Integer.parseInt(matcher.group(1)), path);
+                }
+            }
+        }
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            Segment segment = Segment.open(file.getValue(), file.getKey());
+            segments.put(segment.id, segment);
+            int cut = segment.recover(offset -> {
+                long location = location(segment.id, offset);
+                index(segment.txKey(offset), segment.customerRefId(offset), location);
+                segment.records++;
+                segment.live++;
+                recoveredRecords++;
+            });
+            if (cut > 0) {
+                truncatedBytes += cut;
+                log.warn("transaction store segment {} was damaged at offset {}; {} bytes after it were discarded",
+                        segment.path, segment.position, cut);
+            }
+        }
+        active = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+        if (recoveredRecords > 0) {
+            log.info("transaction store {} opened with {} transactions in {} segments",
+                    directory, txKeyIndex.size(), segments.size());
+        }
+    }
+
+    /**
+     * Store a transaction, replacing the one stored under its txKey
+     *
+     * @param transaction transaction with a txKey
+     */
+    public void put(TransactionsResponse transaction) {
+        write(transaction.getTxKey(), transaction.getCustomerRefId(), transaction);
+    }
+
+    /**
+     * Store a transaction, replacing the one stored under its txKey
+     *
+     * @param transaction transaction with a txKey
+     */
+    public void put(OneTransactionsResponse transaction) {
+        write(transaction.getTxKey(), transaction.getCustomerRefId(), transaction);
+    }
+
+    /**
+     * Store transactions, e.g. as the sink of a {@link com.safeheron.client.sync.TransactionSync}
+     *
+     * @param transactions transactions with a txKey
+     */
+    @Override
+    public void accept(List<TransactionsResponse> transactions) {
+        for (TransactionsResponse transaction : transactions) {
+            put(transaction);
+        }
+    }
+
+    /**
+     * @param txKey txKey
+     * @return the stored transaction, or null
+     */
+    public TransactionsResponse get(String txKey) {
+        return read(txKeyIndex, txKey, true, TransactionsResponse.class);
+    }
+
+    /**
+     * @param customerRefId customerRefId
+     * @return the transaction stored last with the customerRefId, or null
+     */
+    public TransactionsResponse getByCustomerRefId(String customerRefId) {
+        return read(customerRefIdIndex, customerRefId, false, TransactionsResponse.class);
+    }
+
+    /**
+     * Look up a transaction like {@link TransactionApiService#oneTransactions}, from the store if
+     * it is stored in a terminal status. Otherwise it is fetched from the API and stored.
+     *
+     * @param api     transaction api
+     * @param request txKey or customerRefId of the transaction
+     * @return the transaction
+     * @throws SafeheronException if it had to be fetched and the API call failed
+     */
+    public OneTransactionsResponse oneTransactions(TransactionApiService api, OneTransactionsRequest request) {
+        OneTransactionsResponse stored = request.getTxKey() != null
+                ? read(txKeyIndex, request.getTxKey(), true, OneTransactionsResponse.class)
+                : read(customerRefIdIndex, request.getCustomerRefId(), false, OneTransactionsResponse.class);
+        if (stored != null && config.getTerminalStatuses().contains(stored.getTransactionStatus())) {
+            localHits.increment();
+            return stored;
+        }
+        networkLookups.increment();
+        OneTransactionsResponse transaction = ServiceExecutor.execute(api.oneTransactions(request));
+        if (transaction != null && transaction.getTxKey() != null) {
+            put(transaction);
+        }
+        return transaction;
+    }
+
+    private <T> T read(OffHeapHashIndex index, String key, boolean byTxKey, Class<T> type) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        byte[] body;
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long location = index.get(OffHeapHashIndex.hash(key), byTxKey ? sameTxKey(key) : sameCustomerRefId(key));
+            if (location == 0) {
+                return null;
+            }
+            body = segments.get(segmentId(location)).body(offset(location));
+        } finally {
+            lock.readLock().unlock();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int json = 2 + buffer.getShort(0);
+        json += 2 + buffer.getShort(json);
+        try {
+            return JsonUtil.getObjectMapper().readValue(body, json, body.length - json, type);
+        } catch (IOException e) {
+            throw failure("read a transaction from", e);
+        }
+    }
+
+    private void write(String txKey, String customerRefId, Object transaction) {
+        if (txKey == null || txKey.isEmpty()) {
+            throw new IllegalArgumentException("transaction has no txKey");
+        }
+        byte[] key = txKey.getBytes(StandardCharsets.UTF_8);
+        byte[] refId = customerRefId != null ? customerRefId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (key.length > Short.MAX_VALUE || refId.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("txKey or customerRefId is too long");
+        }
+        byte[] json;
+        try {
+            json = WRITER.writeValueAsBytes(transaction);
+        } catch (IOException e) {
+            throw failure("serialize a transaction for", e);
+        }
+        byte[] body = ByteBuffer.allocate(4 + key.length + refId.length + json.length)
+                .putShort((short) key.length).put(key)
+                .putShort((short) refId.length).put(refId)
+                .put(json)
+                .array();
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long location = append(body);
+            index(txKey, customerRefId, location);
+            if (config.getForceOnWrite()) {
+                active.force();
+            }
+            puts.increment();
+        } catch (IOException e) {
+            throw failure("write to", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append a record body to the active segment, starting a new one when it is full
+     */
+    private long append(byte[] body) throws IOException {
+        int offset = active.append(body);
+        if (offset < 0) {
+            if (Segment.HEADER + Segment.RECORD_HEADER + body.length > config.getSegmentSizeBytes()) {
+                throw new IllegalArgumentException("transaction of " + body.length + " bytes does not fit in a segment");
+            }
+            active = roll();
+            offset = active.append(body);
+        }
+        return location(active.id, offset);
+    }
+
+    private Segment roll() throws IOException {
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Segment segment = Segment.create(directory, id, config.getSegmentSizeBytes());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Point the indexes at a new record, and count the record it replaces as garbage
+     */
+    private void index(String txKey, String customerRefId, long location) {
+        long replaced = txKeyIndex.put(OffHeapHashIndex.hash(txKey), location, sameTxKey(txKey));
+        if (replaced != 0) {
+            Segment segment = segments.get(segmentId(replaced));
+            if (segment != null) {
+                segment.live--;
+            }
+        }
+        if (customerRefId != null && !customerRefId.isEmpty()) {
+            customerRefIdIndex.put(OffHeapHashIndex.hash(customerRefId), location, sameCustomerRefId(customerRefId));
+        }
+    }
+
+    private LongPredicate sameTxKey(String txKey) {
+        return location -> {
+            Segment segment = segments.get(segmentId(location));
+            return segment != null && txKey.equals(segment.txKey(offset(location)));
+        };
+    }
+
+    private LongPredicate sameCustomerRefId(String customerRefId) {
+        return location -> {
+            Segment segment = segments.get(segmentId(location));
+            return segment != null && customerRefId.equals(segment.customerRefId(offset(location)));
+        };
+    }
+
+    /**
+     * Rewrite the segments whose share of current records is below compactionThreshold: their
+     * current records are appended to the log again and the segment files are deleted. The
+     * copies are forced to disk before a file is deleted. A crash in between leaves a record and
+     * its copy, and recovery keeps the copy, which is the same. A copy gives up a customerRefId a
+     * newer transaction has taken, so that replaying it does not take the customerRefId back.
+     *
+     * @return segments deleted
+     * @throws SafeheronException if a copy could not be written
+     */
+    public int compact() {
+        List<Integer> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.live < segment.records * config.getCompactionThreshold()) {
+                    candidates.add(segment.id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int compacted = 0;
+        for (Integer id : candidates) {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                Segment segment = segments.get(id);
+                if (segment != null && segment != active) {
+                    compact(segment);
+                    compacted++;
+                }
+            } catch (IOException e) {
+                throw failure("compact", e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        compactedSegments.add(compacted);
+        return compacted;
+    }
+
+    private void compact(Segment segment) throws IOException {
+        Set<Segment> written = new LinkedHashSet<>();
+        for (int offset = Segment.HEADER; offset < segment.position; offset += Segment.RECORD_HEADER + segment.length(offset)) {
+            long location = location(segment.id, offset);
+            String txKey = segment.txKey(offset);
+            if (txKeyIndex.get(OffHeapHashIndex.hash(txKey), sameTxKey(txKey)) != location) {
+                continue;
+            }
+            String customerRefId = segment.customerRefId(offset);
+            long hash = OffHeapHashIndex.hash(customerRefId);
+            boolean currentRefId = !customerRefId.isEmpty()
+                    && customerRefIdIndex.get(hash, sameCustomerRefId(customerRefId)) == location;
+            byte[] body = segment.body(offset);
+            long copy = append(customerRefId.isEmpty() || currentRefId ? body : withoutCustomerRefId(body));
+            written.add(active);
+            txKeyIndex.put(OffHeapHashIndex.hash(txKey), copy, sameTxKey(txKey));
+            if (currentRefId) {
+                customerRefIdIndex.put(hash, copy, sameCustomerRefId(customerRefId));
+            }
+        }
+        for (Segment target : written) {
+            target.force();
+        }
+        segments.remove(segment.id);
+        segment.delete();
+    }
+
+    /**
+     * Copy of a record body with an empty customerRefId in its header, for a record whose
+     * customerRefId has since been taken by a newer transaction: recovery replays records in log
+     * order, and the copy must not win the customerRefId back
+     */
+    private static byte[] withoutCustomerRefId(byte[] body) {
+        ByteBuffer source = ByteBuffer.wrap(body);
+        int txKeyLength = source.getShort();
+        int refIdStart = 2 + txKeyLength;
+        int jsonStart = refIdStart + 2 + source.getShort(refIdStart);
+        return ByteBuffer.allocate(body.length - (jsonStart - refIdStart - 2))
+                .put(body, 0, refIdStart)
+                .putShort((short) 0)
+                .put(body, jsonStart, body.length - jsonStart)
+                .array();
+    }
+
+    /**
+     * Force the records written so far to disk
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (Segment segment : segments.values()) {
+                segment.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flush and unmap the segments and release the indexes
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.force();
+                    segment.close();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("could not close transaction store segment {}", segment.path, e);
+                }
+            }
+            segments.clear();
+            txKeyIndex.release();
+            customerRefIdIndex.release();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("transaction store is closed");
+        }
+    }
+
+    private SafeheronException failure(String operation, IOException e) {
+        SafeheronException exception = new SafeheronException(500,
+                "could not " + operation + " transaction store " + directory + ": " + e.getMessage());
+        exception.initCause(e);
+        return exception;
+    }
+
+    private static long location(int segmentId, int offset) {
+        return (long) segmentId << 32 | offset;
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    /**
+     * @return transactions stored
+     */
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return txKeyIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return segment files
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return off-heap bytes held by the indexes
+     */
+    public long getIndexMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return closed ? 0 : txKeyIndex.memoryBytes() + customerRefIdIndex.memoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return transactions stored since the store was opened, including replaced ones
+     */
+    public long getPuts() {
+        return puts.sum();
+    }
+
+    /**
+     * @return oneTransactions lookups answered from the store
+     */
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    /**
+     * @return oneTransactions lookups that called the API
+     */
+    public long getNetworkLookups() {
+        return networkLookups.sum();
+    }
+
+    /**
+     * @return segments deleted by compaction
+     */
+    public long getCompactedSegments() {
+        return compactedSegments.sum();
+    }
+
+    /**
+     * @return records found when the store was opened, including replaced ones
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * @return bytes discarded after damaged records when the store was opened
+     */
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TransactionStore{size=%d, segments=%d, puts=%d, localHits=%d, networkLookups=%d, compactedSegments=%d}",
+                getSize(), getSegmentCount(), getPuts(), getLocalHits(), getNetworkLookups(), getCompactedSegments());
+    }
+}
@@ -0,0 +1,46 @@
+package com.safeheron.client.sync;
+
+import lombok.Data;
+
+/**
+ * Outcome of a {@link TransactionBackfill} run
+ *
+ * @author safeheron
+ */
+@Data
+public class BackfillResult {
+    /**
+     * Transactions handed to the sink
+     */
+    private long transactions;
+
+    /**
+     * Transactions seen in two adjacent shards and dropped the second time
+     */
+    private long duplicates;
+
+    /**
+     * Shards scanned, including those whose rest was split off
+     */
+    private long shards;
+
+    /**
+     * Shards whose rest was split off because it held more than targetShardSize
+     */
+    private long splits;
+
+    /**
+     * Pages fetched
+     */
+    private long pages;
+
+    /**
+     * Tasks taken over by idle workers from busy ones
+     */
+    private long steals;
+
+    /**
+     * Wall-clock time of the run, in milliseconds
+     */
+    private long elapsedMillis;
+}
@@ -0,0 +1,80 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.utils.JsonUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checkpoint kept as a JSON file.
+ * <p>
+ * A checkpoint is written to a temporary file in the same directory, forced to disk and then
+ * renamed over the previous one, so after a crash the file holds either the old or the new
+ * checkpoint, never a partly written one. The directory is forced to disk after the rename,
+ * so that a power loss does not undo it.
+ *
+ * @author safeheron
+ */
+public class CheckpointFile {
+
+    private final Path path;
+    private final Path temporary;
+
+    public CheckpointFile(Path path) {
+        this.path = path.toAbsolutePath();
+        this.temporary = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+    }
+
+    /**
+     * @return the checkpoint, or null if none was written yet
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public SyncCheckpoint read() throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        return JsonUtil.getObjectMapper().readValue(Files.readAllBytes(path), SyncCheckpoint.class);
+    }
+
+    /**
+     * Replace the checkpoint atomically
+     *
+     * @param checkpoint checkpoint
+     * @throws IOException if it cannot be written; the previous checkpoint is then left in place
+     */
+    public void write(SyncCheckpoint checkpoint) throws IOException {
+        byte[] json = JsonUtil.getObjectMapper().writeValueAsBytes(checkpoint);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(json);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    private void forceDirectory() throws IOException {
+        FileChannel directory;
+        try {
+            directory = FileChannel.open(path.getParent(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            // directories cannot be opened on some platforms, e.g. Windows; the rename is left to the file system there
+            return;
+        }
+        try (FileChannel channel = directory) {
+            channel.force(true);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
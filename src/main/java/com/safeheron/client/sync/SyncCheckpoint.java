@@ -0,0 +1,52 @@
+package com.safeheron.client.sync;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Position of a {@link TransactionSync}, persisted after every page the sink has accepted
+ *
+ * @author safeheron
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SyncCheckpoint {
+    /**
+     * completedTimeMin of the scan in progress, UNIX timestamp (ms)
+     */
+    private Long completedTimeMin;
+
+    /**
+     * Cursor of the scan in progress: txKey of the last transaction delivered, null at the start of a scan
+     */
+    private String fromId;
+
+    /**
+     * Wall-clock time the scan in progress started, UNIX timestamp (ms)
+     */
+    private Long scanStartTime;
+
+    /**
+     * Latest completedTime delivered, UNIX timestamp (ms)
+     */
+    private Long completedTimeWatermark;
+
+    /**
+     * Transactions delivered while not yet in a terminal status, txKey to the status last delivered
+     */
+    private Map<String, String> pending = new HashMap<>();
+
+    /**
+     * Terminal transactions delivered with a completedTime within the scan's overlap, txKey to
+     * completedTime, so the overlap does not deliver them again
+     */
+    private Map<String, Long> recent = new HashMap<>();
+
+    /**
+     * Time the checkpoint was written, UNIX timestamp (ms)
+     */
+    private Long updateTime;
+}
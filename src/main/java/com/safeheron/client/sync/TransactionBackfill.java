@@ -0,0 +1,273 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.config.BackfillConfig;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.ServiceExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports the transaction history of a time range by scanning time shards in parallel.
+ * <p>
+ * The range is split into initialShards equal windows of createTime. Each shard is scanned
+ * with its own createTimeMin/createTimeMax filter and its own fromId cursor. After every full
+ * page the transactions left in the shard are estimated from the density of that page; if
+ * more than targetShardSize are left, the rest of the shard is split into new shards. Dense
+ * periods thus end up in many small shards and quiet periods in a few large ones, and no page
+ * is fetched twice.
+ * <p>
+ * Shards run as tasks of a {@link ForkJoinPool} of parallelism workers. Split shards are forked too,
+ * so a worker whose shards are done takes them over from busy workers instead of idling. The windows of
+ * adjacent shards share their boundary millisecond; transactions created at a boundary are
+ * deduplicated on txKey, so each transaction reaches the sink once.
+ * <pre>
+ * TransactionBackfill backfill = new TransactionBackfill(transactionApi);
+ * BackfillResult result = backfill.run(new ListTransactionsV2Request(), from, to, transactions -&gt; store(transactions));
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class TransactionBackfill {
+
+    private static final int MAX_FAN_OUT = 16;
+
+    private final TransactionApiService api;
+    private final BackfillConfig config;
+
+    public TransactionBackfill(TransactionApiService api) {
+        this(api, BackfillConfig.builder().build());
+    }
+
+    public TransactionBackfill(TransactionApiService api, BackfillConfig config) {
+        this.api = api;
+        this.config = config;
+    }
+
+    /**
+     * Scan all transactions created in a time range and hand them to the sink
+     *
+     * @param filter         further filters, e.g. accountKey or coinKey; its time, cursor and limit
+     *                       fields are replaced per shard
+     * @param createTimeMin  start of the range, UNIX timestamp (ms), inclusive
+     * @param createTimeMax  end of the range, UNIX timestamp (ms), inclusive
+     * @param sink           receives the transactions, from several threads at once
+     * @return counts of the run
+     * @throws SafeheronException if a page could not be fetched or the sink failed; the other
+     *                            shards stop after their current page
+     */
+    public BackfillResult run(ListTransactionsV2Request filter, long createTimeMin, long createTimeMax, TransactionSink sink) {
+        if (createTimeMax < createTimeMin) {
+            throw new IllegalArgumentException("createTimeMax is before createTimeMin");
+        }
+        Run run = new Run(filter, sink);
+        ForkJoinPool pool = new ForkJoinPool(config.getParallelism());
+        long start = System.nanoTime();
+        try {
+            pool.invoke(run.split(createTimeMin, createTimeMax, config.getInitialShards()));
+        } finally {
+            run.result.setSteals(pool.getStealCount());
+            pool.shutdownNow();
+        }
+        BackfillResult result = run.result;
+        result.setTransactions(run.transactions.sum());
+        result.setDuplicates(run.duplicates.sum());
+        result.setShards(run.shards.sum());
+        result.setSplits(run.splits.sum());
+        result.setPages(run.pages.sum());
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private final class Run {
+        final ListTransactionsV2Request filter;
+        final TransactionSink sink;
+        final Set<String> boundaryTxKeys = ConcurrentHashMap.newKeySet();
+        final BackfillResult result = new BackfillResult();
+        final LongAdder transactions = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder shards = new LongAdder();
+        final LongAdder splits = new LongAdder();
+        final LongAdder pages = new LongAdder();
+        volatile boolean failed;
+
+        Run(ListTransactionsV2Request filter, TransactionSink sink) {
+            this.filter = filter;
+            this.sink = sink;
+        }
+
+        /**
+         * Split [from, to] into windows sharing their boundaries, at least minShardMillis long
+         */
+        RecursiveAction split(long from, long to, int parts) {
+            long span = to - from;
+            int n = (int) Math.max(1, Math.min(parts, span / Math.max(1, config.getMinShardMillis())));
+            List<Shard> shards = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                shards.add(new Shard(this, from + span * i / n, from + span * (i + 1) / n));
+            }
+            return new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(shards);
+                }
+            };
+        }
+
+        ListTransactionsV2Request request(long from, long to) {
+            ListTransactionsV2Request request = JsonUtil.getObjectMapper().convertValue(filter, ListTransactionsV2Request.class);
+            request.setCreateTimeMin(from);
+            request.setCreateTimeMax(to);
+            request.setLimit(config.getPageSize());
+            request.setFromId(null);
+            return request;
+        }
+
+        List<TransactionsResponse> fetch(ListTransactionsV2Request request) {
+            List<TransactionsResponse> page = ServiceExecutor.execute(api.listTransactionsV2(request));
+            pages.increment();
+            return page != null ? page : new ArrayList<>();
+        }
+
+        void emit(List<TransactionsResponse> page, long from, long to) {
+            List<TransactionsResponse> unique = new ArrayList<>(page.size());
+            for (TransactionsResponse transaction : page) {
+                Long createTime = transaction.getCreateTime();
+                boolean atBoundary = createTime == null || createTime == from || createTime == to;
+                if (atBoundary && !boundaryTxKeys.add(transaction.getTxKey())) {
+                    duplicates.increment();
+                } else {
+                    unique.add(transaction);
+                }
+            }
+            if (unique.isEmpty()) {
+                return;
+            }
+            try {
+                sink.accept(unique);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                SafeheronException exception = new SafeheronException(500, "transaction sink failed: " + e.getMessage());
+                exception.initCause(e);
+                throw exception;
+            }
+            transactions.add(unique.size());
+        }
+    }
+
+    private final class Shard extends RecursiveAction {
+        private final Run run;
+        private final long from;
+        private final long to;
+
+        // createTime direction of the pages, null until two createTimes differ
+        private Boolean ascending;
+        // txKeys emitted at the latest createTime, which may span several pages
+        private final List<String> tailTxKeys = new ArrayList<>();
+        private Long tailTime;
+
+        Shard(Run run, long from, long to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (run.failed) {
+                return;
+            }
+            try {
+                scan();
+            } catch (RuntimeException e) {
+                run.failed = true;
+                throw e;
+            }
+        }
+
+        private void scan() {
+            ListTransactionsV2Request request = run.request(from, to);
+            long pageSize = config.getPageSize();
+            for (;;) {
+                List<TransactionsResponse> page = run.fetch(request);
+                if (page.isEmpty()) {
+                    break;
+                }
+                run.emit(page, from, to);
+                follow(page);
+                if (page.size() < pageSize || run.failed || splitRest(page)) {
+                    break;
+                }
+                request.setFromId(page.get(page.size() - 1).getTxKey());
+            }
+            run.shards.increment();
+        }
+
+        /**
+         * Note the direction of the pages and the transactions emitted at the latest createTime
+         */
+        private void follow(List<TransactionsResponse> page) {
+            for (TransactionsResponse transaction : page) {
+                Long createTime = transaction.getCreateTime();
+                if (createTime == null) {
+                    continue;
+                }
+                if (tailTime != null && !tailTime.equals(createTime)) {
+                    if (ascending == null) {
+                        ascending = tailTime < createTime;
+                    }
+                    tailTxKeys.clear();
+                }
+                tailTime = createTime;
+                tailTxKeys.add(transaction.getTxKey());
+            }
+        }
+
+        /**
+         * Estimate the transactions left in the shard from the density of the page just emitted,
+         * and if there are more than targetShardSize, hand the rest of the shard to new shards.
+         * Pages come in createTime order, ascending or descending, so the rest of the shard is
+         * the window between the last transaction emitted and the far end of the shard. Until
+         * the pages have shown two createTimes the direction is not known, and nothing is split.
+         *
+         * @return whether the rest was split off
+         */
+        private boolean splitRest(List<TransactionsResponse> page) {
+            Long first = page.get(0).getCreateTime();
+            Long last = page.get(page.size() - 1).getCreateTime();
+            if (first == null || last == null || ascending == null) {
+                return false;
+            }
+            long restFrom = ascending ? last : from;
+            long restTo = ascending ? to : last;
+            if (restTo - restFrom < 2 * config.getMinShardMillis()) {
+                return false;
+            }
+            double covered = Math.max(1, Math.abs(last - first) + 1);
+            double estimate = page.size() * ((restTo - restFrom) / covered);
+            if (estimate <= config.getTargetShardSize()) {
+                return false;
+            }
+            // the transactions emitted at the new boundary, on this page or the ones before, will be
+            // seen again by the new shards
+            if (last.equals(tailTime)) {
+                run.boundaryTxKeys.addAll(tailTxKeys);
+            }
+            int parts = (int) Math.min(MAX_FAN_OUT, estimate / config.getTargetShardSize() + 1);
+            run.splits.increment();
+            run.split(restFrom, restTo, parts).invoke();
+            return true;
+        }
+    }
+}
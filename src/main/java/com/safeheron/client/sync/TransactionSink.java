@@ -0,0 +1,23 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.response.TransactionsResponse;
+
+import java.util.List;
+
+/**
+ * Receives the transactions of a backfill or sync, a page at a time
+ *
+ * @author safeheron
+ */
+@FunctionalInterface
+public interface TransactionSink {
+
+    /**
+     * Store a page of transactions. A {@link TransactionBackfill} calls it from several threads
+     * at once, so it must be thread-safe. An exception thrown here stops the run.
+     *
+     * @param transactions transactions, each delivered once per run
+     * @throws Exception if the transactions could not be stored
+     */
+    void accept(List<TransactionsResponse> transactions) throws Exception;
+}
@@ -0,0 +1,416 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.config.SyncConfig;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.ServiceExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mirrors new and changed transactions into a {@link TransactionSink}, resuming from a
+ * checkpoint file after a restart.
+ * <p>
+ * Every pass does two things:
+ * <ul>
+ * <li>It scans listTransactionsV2 for transactions completed since the completedTime watermark,
+ * with a fromId cursor. The cursor does not follow completedTime, so a transaction that completes
+ * behind it while the scan runs is only seen by the next scan: that scan starts at the
+ * watermark or at the time this one started, whichever is earlier, less watermarkOverlapMillis,
+ * which also catches transactions that became visible late. Those already delivered are skipped.</li>
+ * <li>It re-checks the transactions created within recheckWindowMillis, and the transactions
+ * delivered earlier in a non-terminal status. Those whose status changed are delivered again,
+ * and new non-terminal ones are delivered too. A pending transaction older than the window is
+ * looked up by its txKey.</li>
+ * </ul>
+ * The checkpoint holds the cursor, the watermark and the statuses delivered for non-terminal
+ * transactions. It is written with {@link CheckpointFile} after every page the sink has
+ * accepted, never before. Delivery is therefore at least once: after a crash between the sink
+ * and the checkpoint, the last page is delivered again. The sink should upsert on txKey.
+ * <pre>
+ * TransactionSync sync = new TransactionSync(transactionApi, SyncConfig.builder().checkpointFile("tx-sync.json").build(), ledger::upsert);
+ * sync.start();
+ * </pre>
+ *
+ * @author safeheron
+ */
+@Slf4j
+public class TransactionSync implements Closeable {
+
+    private final TransactionApiService api;
+    private final ListTransactionsV2Request filter;
+    private final SyncConfig config;
+    private final TransactionSink sink;
+    private final CheckpointFile checkpointFile;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private SyncCheckpoint checkpoint;
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder statusChanges = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public TransactionSync(TransactionApiService api, SyncConfig config, TransactionSink sink) {
+        this(api, new ListTransactionsV2Request(), config, sink);
+    }
+
+    /**
+     * @param api    transaction api
+     * @param filter further filters, e.g. accountKey or coinKey; its time, cursor and limit fields are replaced
+     * @param config sync config with the checkpoint file
+     * @param sink   receives the transactions, on one thread at a time
+     */
+    public TransactionSync(TransactionApiService api, ListTransactionsV2Request filter, SyncConfig config, TransactionSink sink) {
+        if (config.getCheckpointFile() == null) {
+            throw new IllegalArgumentException("checkpointFile is required");
+        }
+        this.api = api;
+        this.filter = filter;
+        this.config = config;
+        this.sink = sink;
+        this.checkpointFile = new CheckpointFile(Paths.get(config.getCheckpointFile()));
+    }
+
+    /**
+     * Run sync passes every pollIntervalMillis on a daemon thread, starting now. A failed pass is
+     * logged and the next pass resumes from the checkpoint.
+     */
+    public void start() {
+        ScheduledExecutorService started = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "safeheron-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lock.lock();
+        try {
+            if (scheduler != null) {
+                started.shutdown();
+                return;
+            }
+            scheduler = started;
+        } finally {
+            lock.unlock();
+        }
+        started.scheduleWithFixedDelay(() -> {
+            try {
+                syncOnce();
+            } catch (RuntimeException e) {
+                log.warn("Safeheron transaction sync pass failed, resuming from the checkpoint next time", e);
+            }
+        }, 0, config.getPollIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the passes started by {@link #start()}, waiting for the pass in progress
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        lock.lock();
+        try {
+            running = scheduler;
+            scheduler = null;
+        } finally {
+            lock.unlock();
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            running.awaitTermination(config.getPollIntervalMillis() + 60000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run one sync pass on the calling thread
+     *
+     * @return transactions delivered
+     * @throws SafeheronException if a page could not be fetched, the sink failed or the checkpoint
+     *                            could not be written; what was delivered before stays checkpointed
+     */
+    public int syncOnce() {
+        lock.lock();
+        try {
+            passes.increment();
+            if (checkpoint == null) {
+                checkpoint = load();
+            }
+            return scanCompleted() + recheck();
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Continue the completedTime scan from the checkpoint's cursor
+     */
+    private int scanCompleted() {
+        int count = 0;
+        if (checkpoint.getFromId() == null || checkpoint.getScanStartTime() == null) {
+            checkpoint.setScanStartTime(System.currentTimeMillis());
+        }
+        ListTransactionsV2Request request = request();
+        request.setCompletedTimeMin(checkpoint.getCompletedTimeMin());
+        request.setFromId(checkpoint.getFromId());
+        for (;;) {
+            List<TransactionsResponse> page = fetch(request);
+            List<TransactionsResponse> changes = new ArrayList<>(page.size());
+            for (TransactionsResponse transaction : page) {
+                // skip what the overlap, or a scan without completedTimeMin, shows again unchanged
+                boolean delivered = isTerminal(transaction) ? checkpoint.getRecent().containsKey(transaction.getTxKey())
+                        : !isChanged(transaction);
+                if (!delivered) {
+                    changes.add(transaction);
+                }
+            }
+            deliver(changes);
+            if (!page.isEmpty()) {
+                String last = page.get(page.size() - 1).getTxKey();
+                checkpoint.setFromId(last);
+                request.setFromId(last);
+            }
+            record(changes, true);
+            count += changes.size();
+
+            if (page.size() < config.getPageSize()) {
+                // scan done: the next one starts at the watermark, less the overlap, but no later
+                // than this one started, as transactions completed since may be behind the cursor
+                Long watermark = checkpoint.getCompletedTimeWatermark();
+                if (watermark != null) {
+                    long next = Math.min(watermark, checkpoint.getScanStartTime()) - config.getWatermarkOverlapMillis();
+                    checkpoint.setCompletedTimeMin(next);
+                    checkpoint.getRecent().values().removeIf(completedTime -> completedTime < next);
+                }
+                checkpoint.setFromId(null);
+                checkpoint.setScanStartTime(null);
+                save();
+                return count;
+            }
+            save();
+        }
+    }
+
+    /**
+     * Deliver status changes of recent and pending transactions
+     */
+    private int recheck() {
+        int count = 0;
+        Set<String> seen = new HashSet<>();
+        ListTransactionsV2Request request = request();
+        request.setCreateTimeMin(System.currentTimeMillis() - config.getRecheckWindowMillis());
+        for (;;) {
+            List<TransactionsResponse> page = fetch(request);
+            List<TransactionsResponse> changes = new ArrayList<>();
+            for (TransactionsResponse transaction : page) {
+                seen.add(transaction.getTxKey());
+                if (isChanged(transaction)) {
+                    changes.add(transaction);
+                }
+            }
+            count += deliverChanges(changes);
+            if (page.size() < config.getPageSize()) {
+                break;
+            }
+            request.setFromId(page.get(page.size() - 1).getTxKey());
+        }
+
+        List<TransactionsResponse> changes = new ArrayList<>();
+        for (String txKey : new ArrayList<>(checkpoint.getPending().keySet())) {
+            if (seen.contains(txKey)) {
+                continue;
+            }
+            OneTransactionsRequest oneTransactionsRequest = new OneTransactionsRequest();
+            oneTransactionsRequest.setTxKey(txKey);
+            TransactionsResponse transaction = JsonUtil.getObjectMapper().convertValue(
+                    ServiceExecutor.execute(api.oneTransactions(oneTransactionsRequest)), TransactionsResponse.class);
+            if (isChanged(transaction)) {
+                changes.add(transaction);
+            }
+        }
+        return count + deliverChanges(changes);
+    }
+
+    /**
+     * @return whether the transaction is new and non-terminal, or pending with a different status
+     * than delivered; terminal transactions that were never pending are left to the completedTime scan
+     */
+    private boolean isChanged(TransactionsResponse transaction) {
+        String delivered = checkpoint.getPending().get(transaction.getTxKey());
+        if (delivered == null) {
+            return !isTerminal(transaction);
+        }
+        return !delivered.equals(status(transaction));
+    }
+
+    private int deliverChanges(List<TransactionsResponse> changes) {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        deliver(changes);
+        statusChanges.add(changes.size());
+        // the scan has not reached these yet, so they must not move its watermark past the
+        // transactions completed before them
+        record(changes, false);
+        save();
+        return changes.size();
+    }
+
+    private void deliver(List<TransactionsResponse> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try {
+            sink.accept(transactions);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            SafeheronException exception = new SafeheronException(500, "transaction sink failed: " + e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+        delivered.add(transactions.size());
+    }
+
+    /**
+     * Note delivered transactions in the checkpoint, after the sink accepted them
+     *
+     * @param advanceWatermark whether they were found by the completedTime scan, whose watermark
+     *                         follows their completedTime
+     */
+    private void record(List<TransactionsResponse> transactions, boolean advanceWatermark) {
+        Map<String, String> pending = checkpoint.getPending();
+        for (TransactionsResponse transaction : transactions) {
+            Long completedTime = transaction.getCompletedTime();
+            if (isTerminal(transaction)) {
+                pending.remove(transaction.getTxKey());
+                if (completedTime != null) {
+                    checkpoint.getRecent().put(transaction.getTxKey(), completedTime);
+                }
+            } else {
+                pending.put(transaction.getTxKey(), status(transaction));
+            }
+            if (advanceWatermark && completedTime != null && (checkpoint.getCompletedTimeWatermark() == null
+                    || completedTime > checkpoint.getCompletedTimeWatermark())) {
+                checkpoint.setCompletedTimeWatermark(completedTime);
+            }
+        }
+    }
+
+    private boolean isTerminal(TransactionsResponse transaction) {
+        return config.getTerminalStatuses().contains(transaction.getTransactionStatus());
+    }
+
+    private static String status(TransactionsResponse transaction) {
+        return transaction.getTransactionStatus() + "/" + transaction.getTransactionSubStatus();
+    }
+
+    private ListTransactionsV2Request request() {
+        ListTransactionsV2Request request = JsonUtil.getObjectMapper().convertValue(filter, ListTransactionsV2Request.class);
+        request.setLimit(config.getPageSize());
+        request.setFromId(null);
+        return request;
+    }
+
+    private List<TransactionsResponse> fetch(ListTransactionsV2Request request) {
+        List<TransactionsResponse> page = ServiceExecutor.execute(api.listTransactionsV2(request));
+        return page != null ? page : new ArrayList<>();
+    }
+
+    private SyncCheckpoint load() {
+        try {
+            SyncCheckpoint loaded = checkpointFile.read();
+            if (loaded != null) {
+                log.info("Resuming Safeheron transaction sync from {}, completedTimeMin {}, fromId {}",
+                        checkpointFile.getPath(), loaded.getCompletedTimeMin(), loaded.getFromId());
+                return loaded;
+            }
+        } catch (IOException e) {
+            throw checkpointFailure("read", e);
+        }
+        SyncCheckpoint fresh = new SyncCheckpoint();
+        fresh.setCompletedTimeMin(config.getStartCompletedTime());
+        return fresh;
+    }
+
+    private void save() {
+        checkpoint.setUpdateTime(System.currentTimeMillis());
+        try {
+            checkpointFile.write(checkpoint);
+        } catch (IOException e) {
+            throw checkpointFailure("write", e);
+        }
+    }
+
+    private SafeheronException checkpointFailure(String operation, IOException e) {
+        SafeheronException exception = new SafeheronException(500,
+                "could not " + operation + " sync checkpoint " + checkpointFile.getPath() + ": " + e.getMessage());
+        exception.initCause(e);
+        return exception;
+    }
+
+    /**
+     * @return copy of the current checkpoint, null before the first pass
+     */
+    public SyncCheckpoint getCheckpoint() {
+        lock.lock();
+        try {
+            return checkpoint == null ? null : JsonUtil.getObjectMapper().convertValue(checkpoint, SyncCheckpoint.class);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return sync passes run
+     */
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    /**
+     * @return transactions delivered to the sink, counting redeliveries
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return deliveries of new non-terminal transactions and of status changes found by the re-check
+     */
+    public long getStatusChanges() {
+        return statusChanges.sum();
+    }
+
+    /**
+     * @return passes that failed
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+}
@@ -1,79 +1,174 @@
 package com.safeheron.client.utils;
 
 import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
+import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * @author safeheron
  */
+@Slf4j
 public class AesUtil {
 
     private static final int AES_KEY_SIZE_256 = 256;
     private static final String AES_ALG = "AES";
     private static final String AES_CBC_PKC_ALG = "AES/CBC/PKCS7Padding";
+    private static final String AES_CBC_PKC5_ALG = "AES/CBC/PKCS5Padding";
     private static final String AES_GCM_PKC_ALG = "AES/GCM/NoPadding";
+    private static final String BC_PROVIDER = "BC";
+    private static final String JDK_PROVIDER = "SunJCE";
+
+    /**
+     * Provider chosen for each AES type in {@link CryptoProviderEnum#AUTO} mode
+     */
+    private static final Map<AESTypeEnum, CryptoProviderEnum> AUTO_PROVIDERS = new EnumMap<>(AESTypeEnum.class);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     static {
         Security.addProvider(new BouncyCastleProvider());
+        for (AESTypeEnum aesType : AESTypeEnum.values()) {
+            CryptoProviderEnum provider = jdkMatchesBouncyCastle(aesType) ? CryptoProviderEnum.JDK : CryptoProviderEnum.BOUNCY_CASTLE;
+            AUTO_PROVIDERS.put(aesType, provider);
+            log.debug("AES {} uses the {} provider in AUTO mode", aesType, provider);
+        }
     }
 
     public static byte[] generateAESKey() throws NoSuchAlgorithmException {
         KeyGenerator kg = KeyGenerator.getInstance(AES_ALG);
-        kg.init(AES_KEY_SIZE_256);
+        kg.init(AES_KEY_SIZE_256, RANDOM);
         SecretKey secretKey = kg.generateKey();
         return secretKey.getEncoded();
     }
 
     public static byte[] generateIvKey() {
-        SecureRandom random = new SecureRandom();
         byte[] iv = new byte[16];
-        random.nextBytes(iv);
+        RANDOM.nextBytes(iv);
         return iv;
     }
 
 
     public static String encrypt(String content, byte[] aesKey, byte[] iv, AESTypeEnum AESType) throws Exception {
-        Cipher cipher;
-        SecretKeySpec secretKeySpec = new SecretKeySpec(aesKey, AES_ALG);
-        if (AESTypeEnum.GCM.equals(AESType)) {
-            cipher = Cipher.getInstance(AES_GCM_PKC_ALG, "BC");
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, parameterSpec);
-        } else {
-            cipher = Cipher.getInstance(AES_CBC_PKC_ALG, "BC");
-            IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, ivParameterSpec);
-        }
+        return encrypt(content, aesKey, iv, AESType, CryptoProviderEnum.AUTO);
+    }
 
+    public static String encrypt(String content, byte[] aesKey, byte[] iv, AESTypeEnum AESType, CryptoProviderEnum provider) throws Exception {
+        Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, aesKey, iv, AESType, provider);
         byte[] encryptBytes = cipher.doFinal(content.getBytes(StandardCharsets.UTF_8));
         return Base64.getEncoder().encodeToString(encryptBytes);
     }
 
+    /**
+     * Encrypt raw bytes without going through String or Base64
+     *
+     * @param content  plaintext
+     * @param offset   offset of the plaintext in content
+     * @param length   length of the plaintext
+     * @param aesKey   AES key
+     * @param iv       IV
+     * @param AESType  AES type
+     * @param provider JCA provider strategy
+     * @return raw ciphertext
+     * @throws Exception if encryption fails
+     */
+    public static byte[] encrypt(byte[] content, int offset, int length, byte[] aesKey, byte[] iv, AESTypeEnum AESType, CryptoProviderEnum provider) throws Exception {
+        Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, aesKey, iv, AESType, provider);
+        return cipher.doFinal(content, offset, length);
+    }
+
     public static String decrypt(String content, byte[] aesKey, byte[] iv, AESTypeEnum AESType) throws Exception {
-        Cipher cipher;
+        return decrypt(content, aesKey, iv, AESType, CryptoProviderEnum.AUTO);
+    }
+
+    public static String decrypt(String content, byte[] aesKey, byte[] iv, AESTypeEnum AESType, CryptoProviderEnum provider) throws Exception {
+        Cipher cipher = initCipher(Cipher.DECRYPT_MODE, aesKey, iv, AESType, provider);
+        byte[] decryptBytes = cipher.doFinal(Base64.getDecoder().decode(content));
+        return new String(decryptBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decrypt a stream of raw ciphertext.
+     * <p>
+     * The authentication tag (GCM) or padding (CBC) is only checked once the returned stream has
+     * been read to its end, which then fails with an IOException; callers must not act on the
+     * plaintext before that. The stream uses this thread's pooled cipher, so it has to be
+     * consumed on the calling thread.
+     *
+     * @param content  raw ciphertext
+     * @param aesKey   AES key
+     * @param iv       IV
+     * @param AESType  AES type
+     * @param provider JCA provider strategy
+     * @return plaintext stream
+     * @throws Exception if the cipher can not be initialised
+     */
+    public static InputStream decrypt(InputStream content, byte[] aesKey, byte[] iv, AESTypeEnum AESType, CryptoProviderEnum provider) throws Exception {
+        return new CipherInputStream(content, initCipher(Cipher.DECRYPT_MODE, aesKey, iv, AESType, provider));
+    }
+
+    /**
+     * Get this thread's cipher for the AES type and provider, initialised with the key and IV
+     */
+    private static Cipher initCipher(int mode, byte[] aesKey, byte[] iv, AESTypeEnum AESType, CryptoProviderEnum provider) throws Exception {
+        if (provider == null || CryptoProviderEnum.AUTO.equals(provider)) {
+            provider = AUTO_PROVIDERS.get(AESTypeEnum.GCM.equals(AESType) ? AESTypeEnum.GCM : AESTypeEnum.CBC);
+        }
+        boolean jdk = CryptoProviderEnum.JDK.equals(provider);
+        String providerName = jdk ? (Security.getProvider(JDK_PROVIDER) != null ? JDK_PROVIDER : null) : BC_PROVIDER;
         SecretKeySpec secretKeySpec = new SecretKeySpec(aesKey, AES_ALG);
+        Cipher cipher;
         if (AESTypeEnum.GCM.equals(AESType)) {
-            cipher = Cipher.getInstance(AES_GCM_PKC_ALG, "BC");
+            cipher = CryptoEngines.cipher(AES_GCM_PKC_ALG, providerName);
             GCMParameterSpec parameterSpec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, parameterSpec);
+            cipher.init(mode, secretKeySpec, parameterSpec);
         } else {
-            cipher = Cipher.getInstance(AES_CBC_PKC_ALG, "BC");
+            // PKCS#5 and PKCS#7 padding are the same for a 16 byte block; the JDK only knows the former name
+            cipher = CryptoEngines.cipher(jdk ? AES_CBC_PKC5_ALG : AES_CBC_PKC_ALG, providerName);
             IvParameterSpec ivParameterSpec = new IvParameterSpec(iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, ivParameterSpec);
+            cipher.init(mode, secretKeySpec, ivParameterSpec);
+        }
+        return cipher;
+    }
+
+    /**
+     * Start-up self test: the JDK provider may only be picked in AUTO mode when it produces
+     * exactly the ciphertext BouncyCastle does and can decrypt it again.
+     */
+    private static boolean jdkMatchesBouncyCastle(AESTypeEnum aesType) {
+        try {
+            byte[] aesKey = new byte[32];
+            byte[] iv = new byte[16];
+            for (int i = 0; i < aesKey.length; i++) {
+                aesKey[i] = (byte) i;
+            }
+            for (int i = 0; i < iv.length; i++) {
+                iv[i] = (byte) (0xA0 + i);
+            }
+            String content = "{\"safeheron\":\"self-test\",\"padding\":\"0123456789\"}";
+            String jdkResult = encrypt(content, aesKey, iv, aesType, CryptoProviderEnum.JDK);
+            String bcResult = encrypt(content, aesKey, iv, aesType, CryptoProviderEnum.BOUNCY_CASTLE);
+            return jdkResult.equals(bcResult)
+                    && content.equals(decrypt(bcResult, aesKey, iv, aesType, CryptoProviderEnum.JDK));
+        } catch (Exception e) {
+            log.debug("JDK provider is not usable for AES {}", aesType, e);
+            return false;
         }
-        byte[] decryptBytes = cipher.doFinal(Base64.getDecoder().decode(content));
-        return new String(decryptBytes, StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,105 @@
+package com.safeheron.client.utils;
+
+import retrofit2.Call;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs the SDK's blocking calls, one thread per call.
+ * <p>
+ * On Java 21 and later each call gets its own virtual thread, so tens of thousands of calls can
+ * wait on the network, or on a webhook or co-signer conversion, without holding as many platform
+ * threads. On older runtimes the threads are pooled platform threads, which suits far lower
+ * concurrency.
+ * <pre>
+ * BlockingCallExecutor executor = new BlockingCallExecutor();
+ * CompletableFuture&lt;OneTransactionsResponse&gt; tx = executor.submit(api.oneTransactions(request));
+ * CompletableFuture&lt;WebHookBizContent&gt; event = executor.submit(() -&gt; webhookConverter.convert(webHook));
+ * </pre>
+ * Code that already runs on a virtual thread, e.g. a request handler of a server configured for
+ * virtual threads, can call {@link ServiceExecutor#execute}, {@code WebhookConverter} and
+ * {@code CoSignerConverter} directly instead.
+ *
+ * @author safeheron
+ */
+public class BlockingCallExecutor implements Executor, Closeable {
+
+    private final ExecutorService executor;
+
+    /**
+     * Threads named safeheron-blocking-N
+     */
+    public BlockingCallExecutor() {
+        this(VirtualThreads.newThreadPerTaskExecutor("safeheron-blocking-"));
+    }
+
+    /**
+     * @param executor executor to run the calls on, shut down by {@link #close()}
+     */
+    public BlockingCallExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Execute a REST call as {@link ServiceExecutor#execute} does, on its own thread. Cancelling
+     * the future cancels the HTTP call.
+     *
+     * @param <T> return param type
+     * @param call call
+     * @return future of the response body, failing with a SafeheronException
+     */
+    public <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                call.cancel();
+                return cancelled;
+            }
+        };
+        executor.execute(() -> {
+            try {
+                future.complete(ServiceExecutor.execute(call));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Run a blocking task, e.g. a webhook or co-signer conversion, on its own thread
+     *
+     * @param <T> return type
+     * @param task task
+     * @return future of the task's result, failing with the exception the task threw
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    /**
+     * Stop accepting calls; calls already submitted run to completion
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package com.safeheron.client.utils;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Socket factory applying SO_SNDBUF and SO_RCVBUF before the socket connects, which OkHttp has
+ * no setting for. The buffer sizes have to be set before connecting for the TCP window scale
+ * to take them into account.
+ *
+ * @author safeheron
+ */
+final class BufferSizingSocketFactory extends SocketFactory {
+
+    private final SocketFactory delegate;
+    private final Integer sendBufferSize;
+    private final Integer receiveBufferSize;
+
+    BufferSizingSocketFactory(SocketFactory delegate, Integer sendBufferSize, Integer receiveBufferSize) {
+        this.delegate = delegate;
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        return configure(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return configure(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return configure(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return configure(delegate.createSocket(address, port, localAddress, localPort));
+    }
+
+    private Socket configure(Socket socket) throws SocketException {
+        if (sendBufferSize != null) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize != null) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+        return socket;
+    }
+}
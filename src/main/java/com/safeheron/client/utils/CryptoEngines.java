@@ -0,0 +1,72 @@
+package com.safeheron.client.utils;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread pool of {@link Cipher} and {@link Signature} engines.
+ * <p>
+ * Looking an engine up through the JCA provider list and instantiating it is far more
+ * expensive than re-initialising an existing one, so each thread keeps one engine per
+ * algorithm and the hot path only calls {@code init} with the new key and IV. Callers must
+ * always initialise the returned engine before use and must not hand it to another thread.
+ * <p>
+ * Virtual threads are not pooled, and most of them spend their life blocked on the network,
+ * so engines cached in their thread locals would be created once per call anyway and then kept
+ * for the whole call. A virtual thread therefore gets a new engine that is released after use.
+ *
+ * @author safeheron
+ */
+final class CryptoEngines {
+
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+
+    private CryptoEngines() {
+    }
+
+    /**
+     * Get this thread's cipher for the transformation
+     *
+     * @param transformation cipher transformation, e.g. AES/GCM/NoPadding
+     * @param provider       provider name, or null to use the highest-priority provider
+     * @return cipher, to be initialised by the caller
+     * @throws GeneralSecurityException if no provider supports the transformation
+     */
+    static Cipher cipher(String transformation, String provider) throws GeneralSecurityException {
+        if (VirtualThreads.isCurrentThreadVirtual()) {
+            return provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+        }
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        String cacheKey = provider == null ? transformation : transformation + "@" + provider;
+        Cipher cipher = ciphers.get(cacheKey);
+        if (cipher == null) {
+            cipher = provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+            ciphers.put(cacheKey, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * Get this thread's signature engine for the algorithm
+     *
+     * @param algorithm signature algorithm, e.g. SHA256WithRSA
+     * @return signature engine, to be initialised by the caller
+     * @throws GeneralSecurityException if no provider supports the algorithm
+     */
+    static Signature signature(String algorithm) throws GeneralSecurityException {
+        if (VirtualThreads.isCurrentThreadVirtual()) {
+            return Signature.getInstance(algorithm);
+        }
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            signatures.put(algorithm, signature);
+        }
+        return signature;
+    }
+}
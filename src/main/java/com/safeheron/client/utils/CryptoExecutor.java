@@ -0,0 +1,235 @@
+package com.safeheron.client.utils;
+
+import com.safeheron.client.config.CryptoRejectionPolicyEnum;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool for RSA operations.
+ * <p>
+ * RSA private-key operations cost milliseconds of CPU each. Running them on a fixed number of
+ * workers keeps a burst of requests, webhooks or co-signer callbacks from occupying every
+ * OkHttp dispatcher or servlet thread with crypto; once the workers are busy and the queue is
+ * full the rejection policy applies backpressure to the submitters.
+ * <p>
+ * Queue depth, time spent waiting in the queue and CPU time per operation are recorded so the
+ * pool can be sized per node.
+ *
+ * @author safeheron
+ */
+public class CryptoExecutor implements Executor, Closeable {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final ThreadPoolExecutor pool;
+    private final int queueCapacity;
+    private final boolean cpuTimeSupported;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder totalCpuNanos = new LongAdder();
+    private final LongAccumulator maxCpuNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * One worker per available processor, a queue of 1024 tasks and CALLER_RUNS
+     */
+    public CryptoExecutor() {
+        this(Runtime.getRuntime().availableProcessors(), 1024, CryptoRejectionPolicyEnum.CALLER_RUNS);
+    }
+
+    /**
+     * @param threads         number of workers
+     * @param queueCapacity   number of tasks that may wait for a worker
+     * @param rejectionPolicy what to do with a task when the queue is full
+     */
+    public CryptoExecutor(int threads, int queueCapacity, CryptoRejectionPolicyEnum rejectionPolicy) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "safeheron-crypto-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, rejectionHandler(rejectionPolicy));
+        boolean supported = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+        if (supported && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            try {
+                THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+            } catch (UnsupportedOperationException | SecurityException e) {
+                supported = false;
+            }
+        }
+        this.cpuTimeSupported = supported;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submitted.increment();
+        pool.execute(new TimedTask(command));
+    }
+
+    /**
+     * Stop accepting tasks; queued tasks still run
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    public int getPoolSize() {
+        return pool.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return tasks the CALLER_RUNS policy ran on the submitting thread
+     */
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    public long getAverageWaitNanos() {
+        long count = getCompleted();
+        return count == 0 ? 0 : getTotalWaitNanos() / count;
+    }
+
+    /**
+     * @return CPU time of all completed tasks, 0 if the JVM does not measure thread CPU time
+     */
+    public long getTotalCpuNanos() {
+        return totalCpuNanos.sum();
+    }
+
+    public long getMaxCpuNanos() {
+        return maxCpuNanos.get();
+    }
+
+    public long getAverageCpuNanos() {
+        long count = getCompleted();
+        return count == 0 ? 0 : getTotalCpuNanos() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoExecutor(poolSize=" + getPoolSize() + ", active=" + getActiveCount()
+                + ", queueDepth=" + getQueueDepth() + "/" + queueCapacity
+                + ", submitted=" + getSubmitted() + ", completed=" + getCompleted()
+                + ", rejected=" + getRejected() + ", callerRuns=" + getCallerRuns()
+                + ", avgWaitMicros=" + getAverageWaitNanos() / 1000 + ", maxWaitMicros=" + getMaxWaitNanos() / 1000
+                + ", avgCpuMicros=" + getAverageCpuNanos() / 1000 + ", maxCpuMicros=" + getMaxCpuNanos() / 1000 + ")";
+    }
+
+    private RejectedExecutionHandler rejectionHandler(CryptoRejectionPolicyEnum rejectionPolicy) {
+        switch (rejectionPolicy) {
+            case CALLER_RUNS:
+                return (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        reject(task);
+                    }
+                    callerRuns.increment();
+                    task.run();
+                };
+            case BLOCK:
+                return (task, executor) -> {
+                    BlockingQueue<Runnable> queue = executor.getQueue();
+                    try {
+                        while (!executor.isShutdown()) {
+                            if (queue.offer(task, 100, TimeUnit.MILLISECONDS)) {
+                                return;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    reject(task);
+                };
+            default:
+                return (task, executor) -> reject(task);
+        }
+    }
+
+    private void reject(Runnable task) {
+        rejected.increment();
+        throw new RejectedExecutionException("Safeheron crypto executor rejected the task: " + this);
+    }
+
+    /**
+     * Measures queue wait and CPU time of one task
+     */
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submittedAt = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long waitNanos = System.nanoTime() - submittedAt;
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+            long cpuStart = cpuTimeSupported ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+            try {
+                task.run();
+            } finally {
+                if (cpuTimeSupported) {
+                    long cpuNanos = THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart;
+                    totalCpuNanos.add(cpuNanos);
+                    maxCpuNanos.accumulate(cpuNanos);
+                }
+                completed.increment();
+            }
+        }
+    }
+}
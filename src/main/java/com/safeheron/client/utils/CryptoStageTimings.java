@@ -0,0 +1,99 @@
+package com.safeheron.client.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage timings of envelope processing: signature verification, envelope key decryption,
+ * the two of them together as seen by the caller, and payload decryption.
+ * <p>
+ * Recording is lock-free, so one instance can be shared by every converter of a client.
+ *
+ * @author safeheron
+ */
+public class CryptoStageTimings {
+
+    public enum Stage {
+        /**
+         * RSA signature verification
+         */
+        VERIFY,
+        /**
+         * RSA decryption of the envelope AES key and IV
+         */
+        KEY_DECRYPT,
+        /**
+         * Wall time of verification plus key decryption, less than their sum when overlapped
+         */
+        VERIFY_AND_KEY_DECRYPT,
+        /**
+         * AES decryption and parsing of bizContent
+         */
+        PAYLOAD_DECRYPT
+    }
+
+    private final Map<Stage, LongAdder> counts = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> totalNanos = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAccumulator> maxNanos = new EnumMap<>(Stage.class);
+
+    public CryptoStageTimings() {
+        for (Stage stage : Stage.values()) {
+            counts.put(stage, new LongAdder());
+            totalNanos.put(stage, new LongAdder());
+            maxNanos.put(stage, new LongAccumulator(Math::max, 0));
+        }
+    }
+
+    /**
+     * Record one run of a stage
+     *
+     * @param stage stage
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        counts.get(stage).increment();
+        totalNanos.get(stage).add(nanos);
+        maxNanos.get(stage).accumulate(nanos);
+    }
+
+    public long getCount(Stage stage) {
+        return counts.get(stage).sum();
+    }
+
+    public long getTotalNanos(Stage stage) {
+        return totalNanos.get(stage).sum();
+    }
+
+    public long getMaxNanos(Stage stage) {
+        return maxNanos.get(stage).get();
+    }
+
+    public long getAverageNanos(Stage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : getTotalNanos(stage) / count;
+    }
+
+    public void reset() {
+        for (Stage stage : Stage.values()) {
+            counts.get(stage).reset();
+            totalNanos.get(stage).reset();
+            maxNanos.get(stage).reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("CryptoStageTimings(");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) {
+                builder.append(", ");
+            }
+            builder.append(stage).append("=[count=").append(getCount(stage))
+                    .append(", avgMicros=").append(getAverageNanos(stage) / 1000)
+                    .append(", maxMicros=").append(getMaxNanos(stage) / 1000).append(']');
+        }
+        return builder.append(')').toString();
+    }
+}
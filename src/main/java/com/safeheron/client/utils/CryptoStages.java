@@ -0,0 +1,169 @@
+package com.safeheron.client.utils;
+
+import com.safeheron.client.utils.CryptoStageTimings.Stage;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs RSA stages on a crypto executor, typically a {@link CryptoExecutor}.
+ * <p>
+ * Opening an envelope takes two RSA stages, verifying the sender's signature and decrypting
+ * the envelope key with our private key. Neither needs the other's result, so when overlapped
+ * they run concurrently and the caller waits for the slower one instead of the sum. The
+ * decrypted key is only handed out once verification has passed; otherwise it is wiped as soon
+ * as it is available.
+ *
+ * @author safeheron
+ */
+public final class CryptoStages {
+
+    private CryptoStages() {
+    }
+
+    /**
+     * Signature verification stage
+     */
+    @FunctionalInterface
+    public interface Verification {
+        boolean verify() throws Exception;
+    }
+
+    /**
+     * Envelope key decryption stage
+     */
+    @FunctionalInterface
+    public interface KeyDecryption {
+        byte[] decrypt() throws Exception;
+    }
+
+    /**
+     * Run a task on the crypto executor and wait for its result
+     *
+     * @param executor crypto executor, or null to run the task on the calling thread
+     * @param task     task
+     * @param <T>      result type
+     * @return task result
+     * @throws Exception if the task fails or is rejected
+     */
+    public static <T> T call(Executor executor, Callable<T> task) throws Exception {
+        if (executor == null) {
+            return task.call();
+        }
+        return await(CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor));
+    }
+
+    /**
+     * Verify the signature and decrypt the envelope key
+     *
+     * @param verification  signature verification
+     * @param keyDecryption envelope key decryption
+     * @param executor      crypto executor for the private-key stage, or null to run both stages on the calling thread
+     * @param overlap       run verification concurrently with key decryption on the executor
+     * @param timings       stage timings to record into
+     * @return decrypted envelope key, or null if the signature is invalid
+     * @throws Exception if either stage fails
+     */
+    public static byte[] verifyAndDecryptKey(Verification verification, KeyDecryption keyDecryption,
+                                             Executor executor, boolean overlap, CryptoStageTimings timings) throws Exception {
+        long start = System.nanoTime();
+        try {
+            if (executor == null || !overlap) {
+                if (!timed(verification, timings)) {
+                    return null;
+                }
+                return call(executor, () -> timed(keyDecryption, timings));
+            }
+
+            CompletableFuture<Boolean> verified = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return timed(verification, timings);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+            CompletableFuture<byte[]> key = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return timed(keyDecryption, timings);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+
+            boolean valid = false;
+            try {
+                valid = await(verified);
+            } finally {
+                if (!valid) {
+                    key.thenAccept(CryptoStages::wipe);
+                }
+            }
+            return valid ? await(key) : null;
+        } finally {
+            timings.record(Stage.VERIFY_AND_KEY_DECRYPT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Shared executor for callers that enable overlapping without supplying one: one worker per
+     * available processor
+     *
+     * @return default crypto executor
+     */
+    public static CryptoExecutor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    private static boolean timed(Verification verification, CryptoStageTimings timings) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return verification.verify();
+        } finally {
+            timings.record(Stage.VERIFY, System.nanoTime() - start);
+        }
+    }
+
+    private static byte[] timed(KeyDecryption keyDecryption, CryptoStageTimings timings) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return keyDecryption.decrypt();
+        } finally {
+            timings.record(Stage.KEY_DECRYPT, System.nanoTime() - start);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void wipe(byte[] key) {
+        if (key != null) {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private static final class DefaultExecutorHolder {
+        private static final CryptoExecutor EXECUTOR = new CryptoExecutor();
+    }
+}
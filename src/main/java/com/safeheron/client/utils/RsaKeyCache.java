@@ -0,0 +1,152 @@
+package com.safeheron.client.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide cache of parsed RSA keys.
+ * <p>
+ * Keys are looked up by the SHA-256 fingerprint of their DER encoding, so the Base64 key text
+ * is only decoded and run through {@link KeyFactory} the first time it is seen. At most
+ * {@link #MAX_KEYS} public and as many private keys are kept; beyond that the least recently
+ * used one is dropped, so rotating keys do not pile up for the life of the process.
+ *
+ * @author safeheron
+ */
+public final class RsaKeyCache {
+
+    private static final String KEY_ALGORITHM = "RSA";
+
+    /**
+     * Keys of each kind kept at most, enough for a {@link ClientRegistry} at its default maxClients
+     */
+    public static final int MAX_KEYS = 1024;
+
+    private static final Lru<PublicKey> PUBLIC_KEYS = new Lru<>(MAX_KEYS);
+    private static final Lru<PrivateKey> PRIVATE_KEYS = new Lru<>(MAX_KEYS);
+
+    private RsaKeyCache() {
+    }
+
+    /**
+     * Get the parsed public key for a Base64-encoded X.509 key
+     *
+     * @param publicKey Base64-encoded public key, without PEM header
+     * @return parsed public key
+     * @throws Exception if the key can not be parsed
+     */
+    public static PublicKey getPublicKey(String publicKey) throws Exception {
+        byte[] encoded = Base64.getDecoder().decode(publicKey.getBytes(StandardCharsets.UTF_8));
+        String fingerprint = fingerprint(encoded);
+        PublicKey cached = PUBLIC_KEYS.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        PublicKey parsed = KeyFactory.getInstance(KEY_ALGORITHM).generatePublic(new X509EncodedKeySpec(encoded));
+        return PUBLIC_KEYS.putIfAbsent(fingerprint, parsed);
+    }
+
+    /**
+     * Get the parsed private key for a Base64-encoded PKCS#8 key
+     *
+     * @param privateKey Base64-encoded private key, without PEM header
+     * @return parsed private key
+     * @throws Exception if the key can not be parsed
+     */
+    public static PrivateKey getPrivateKey(String privateKey) throws Exception {
+        byte[] encoded = Base64.getDecoder().decode(privateKey.getBytes(StandardCharsets.UTF_8));
+        String fingerprint = fingerprint(encoded);
+        PrivateKey cached = PRIVATE_KEYS.get(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        PrivateKey parsed = KeyFactory.getInstance(KEY_ALGORITHM).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        return PRIVATE_KEYS.putIfAbsent(fingerprint, parsed);
+    }
+
+    /**
+     * Drop every cached key, e.g. after a key rotation
+     */
+    public static void clear() {
+        PUBLIC_KEYS.clear();
+        PRIVATE_KEYS.clear();
+    }
+
+    private static String fingerprint(byte[] encoded) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(encoded);
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Access-ordered map capped at maxSize entries. Keys are parsed outside its lock, so a slow
+     * parse does not hold up lookups of other keys. The lock is a ReentrantLock rather than a
+     * monitor, so a virtual thread waiting for it does not pin its carrier thread.
+     */
+    static final class Lru<V> {
+
+        private final Map<String, V> entries;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        Lru(int maxSize) {
+            this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        V get(String key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the value already cached for key, or value once it is cached
+         */
+        V putIfAbsent(String key, V value) {
+            lock.lock();
+            try {
+                V previous = entries.putIfAbsent(key, value);
+                return previous != null ? previous : value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -10,8 +10,6 @@ import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.MGF1ParameterSpec;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
 /**
@@ -32,16 +30,19 @@ public class RsaUtil {
     }
 
     public static String encrypt(byte[] plainText, String publicKey, RSATypeEnum RSAType) throws Exception {
+        return encrypt(plainText, getPublicKey(publicKey), RSAType);
+    }
+
+    public static String encrypt(byte[] plainText, PublicKey pubKey, RSATypeEnum RSAType) throws Exception {
         ByteArrayOutputStream out = null;
         try {
-            PublicKey pubKey = getPublicKey(SIGN_TYPE_RSA, publicKey);
             Cipher cipher;
             if (RSATypeEnum.ECB_OAEP.equals(RSAType)) {
-                cipher = Cipher.getInstance(SIGN_TYPE_RSA_OAEP);
+                cipher = CryptoEngines.cipher(SIGN_TYPE_RSA_OAEP, null);
                 OAEPParameterSpec oaepParams = new OAEPParameterSpec("SHA-256", "MGF1", new MGF1ParameterSpec("SHA-256"), PSource.PSpecified.DEFAULT);
                 cipher.init(Cipher.ENCRYPT_MODE, pubKey, oaepParams);
             } else {
-                cipher = Cipher.getInstance(SIGN_TYPE_RSA);
+                cipher = CryptoEngines.cipher(SIGN_TYPE_RSA, null);
                 cipher.init(Cipher.ENCRYPT_MODE, pubKey);
             }
             int inputLen = plainText.length;
@@ -68,16 +69,19 @@ public class RsaUtil {
     }
 
     public static byte[] decrypt(String content, String privateKey, RSATypeEnum RSAType) throws Exception {
+        return decrypt(content, getPrivateKey(privateKey), RSAType);
+    }
+
+    public static byte[] decrypt(String content, PrivateKey priKey, RSATypeEnum RSAType) throws Exception {
         ByteArrayOutputStream out = null;
         try {
-            PrivateKey priKey = getPrivateKey(SIGN_TYPE_RSA, privateKey);
             Cipher cipher;
             if (RSATypeEnum.ECB_OAEP.equals(RSAType)) {
-                cipher = Cipher.getInstance(SIGN_TYPE_RSA_OAEP);
+                cipher = CryptoEngines.cipher(SIGN_TYPE_RSA_OAEP, null);
                 OAEPParameterSpec oaepParams = new OAEPParameterSpec("SHA-256", "MGF1", new MGF1ParameterSpec("SHA-256"), PSource.PSpecified.DEFAULT);
                 cipher.init(Cipher.DECRYPT_MODE, priKey, oaepParams);
             } else {
-                cipher = Cipher.getInstance(SIGN_TYPE_RSA);
+                cipher = CryptoEngines.cipher(SIGN_TYPE_RSA, null);
                 cipher.init(Cipher.DECRYPT_MODE, priKey);
             }
             byte[] encryptedData = Base64.getDecoder().decode(content);
@@ -106,49 +110,163 @@ public class RsaUtil {
     }
 
     public static String sign(String content, String privateKey) throws Exception {
-        PrivateKey priKey = getPrivateKey(SIGN_TYPE_RSA, privateKey);
-        Signature privateSignature = Signature.getInstance(SIGN_ALGORITHMS_SHA256RSA);
+        return sign(content, getPrivateKey(privateKey));
+    }
+
+    public static String sign(String content, PrivateKey priKey) throws Exception {
+        Signature privateSignature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA);
         privateSignature.initSign(priKey);
         privateSignature.update(content.getBytes(StandardCharsets.UTF_8));
         byte[] signature = privateSignature.sign();
         return Base64.getEncoder().encodeToString(signature);
     }
 
+    /**
+     * Sign raw bytes with SHA256WithRSA, avoiding a String copy of the content
+     *
+     * @param content content buffer
+     * @param offset  offset of the content in the buffer
+     * @param length  length of the content
+     * @param priKey  private key
+     * @return Base64-encoded signature
+     * @throws Exception if signing fails
+     */
+    public static String sign(byte[] content, int offset, int length, PrivateKey priKey) throws Exception {
+        Signature privateSignature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA);
+        privateSignature.initSign(priKey);
+        privateSignature.update(content, offset, length);
+        byte[] signature = privateSignature.sign();
+        return Base64.getEncoder().encodeToString(signature);
+    }
+
+    /**
+     * Sign canonical content with SHA256WithRSA
+     *
+     * @param content canonical content
+     * @param priKey  private key
+     * @return Base64-encoded signature
+     * @throws Exception if signing fails
+     */
+    public static String sign(SignContent content, PrivateKey priKey) throws Exception {
+        return sign(content.buffer(), 0, content.length(), priKey);
+    }
+
     public static String signPSS(String content, String privateKey) throws Exception {
-        PrivateKey priKey = getPrivateKey(SIGN_TYPE_RSA, privateKey);
-        Signature privateSignature = Signature.getInstance(SIGN_ALGORITHMS_SHA256RSA_PSS);
+        return signPSS(content, getPrivateKey(privateKey));
+    }
+
+    public static String signPSS(String content, PrivateKey priKey) throws Exception {
+        Signature privateSignature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA_PSS);
         privateSignature.initSign(priKey);
         privateSignature.update(content.getBytes(StandardCharsets.UTF_8));
         byte[] signature = privateSignature.sign();
         return Base64.getEncoder().encodeToString(signature);
     }
 
+    /**
+     * Sign canonical content with SHA256withRSA/PSS
+     *
+     * @param content canonical content
+     * @param priKey  private key
+     * @return Base64-encoded signature
+     * @throws Exception if signing fails
+     */
+    public static String signPSS(SignContent content, PrivateKey priKey) throws Exception {
+        Signature privateSignature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA_PSS);
+        privateSignature.initSign(priKey);
+        privateSignature.update(content.buffer(), 0, content.length());
+        byte[] signature = privateSignature.sign();
+        return Base64.getEncoder().encodeToString(signature);
+    }
+
     public static boolean verifySign(String content, String sign, String publicKey) throws Exception {
-        PublicKey pubKey = getPublicKey(SIGN_TYPE_RSA, publicKey);
-        Signature signature = Signature.getInstance(SIGN_ALGORITHMS_SHA256RSA);
+        return verifySign(content, sign, getPublicKey(publicKey));
+    }
+
+    public static boolean verifySign(String content, String sign, PublicKey pubKey) throws Exception {
+        Signature signature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA);
         signature.initVerify(pubKey);
         signature.update(content.getBytes(StandardCharsets.UTF_8));
         return signature.verify(Base64.getDecoder().decode(sign.getBytes()));
     }
 
+    /**
+     * Verify a SHA256WithRSA signature over canonical content
+     *
+     * @param content canonical content
+     * @param sign    Base64-encoded signature
+     * @param pubKey  public key
+     * @return true if the signature is valid
+     * @throws Exception if verification can not be performed
+     */
+    public static boolean verifySign(SignContent content, String sign, PublicKey pubKey) throws Exception {
+        Signature signature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA);
+        signature.initVerify(pubKey);
+        signature.update(content.buffer(), 0, content.length());
+        return signature.verify(Base64.getDecoder().decode(sign.getBytes()));
+    }
+
+    /**
+     * Get this thread's SHA256WithRSA engine initialised for verification, so large content
+     * can be fed to {@link Signature#update} in pieces without assembling it first
+     *
+     * @param pubKey public key
+     * @return signature engine ready for update and verify
+     * @throws Exception if the engine can not be initialised
+     */
+    public static Signature initVerify(PublicKey pubKey) throws Exception {
+        Signature signature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA);
+        signature.initVerify(pubKey);
+        return signature;
+    }
+
     public static boolean verifySignPSS(String content, String sign, String publicKey) throws Exception {
-        PublicKey pubKey = getPublicKey(SIGN_TYPE_RSA, publicKey);
-        Signature signature = Signature.getInstance(SIGN_ALGORITHMS_SHA256RSA_PSS);
+        return verifySignPSS(content, sign, getPublicKey(publicKey));
+    }
+
+    public static boolean verifySignPSS(String content, String sign, PublicKey pubKey) throws Exception {
+        Signature signature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA_PSS);
         signature.initVerify(pubKey);
         signature.update(content.getBytes(StandardCharsets.UTF_8));
         return signature.verify(Base64.getDecoder().decode(sign.getBytes()));
     }
 
-    private static PublicKey getPublicKey(String algorithm, String publicKey) throws Exception {
-        KeyFactory keyFactory = KeyFactory.getInstance(algorithm);
-        byte[] publicKeyData = Base64.getDecoder().decode(publicKey.getBytes(StandardCharsets.UTF_8));
-        return keyFactory.generatePublic(new X509EncodedKeySpec(publicKeyData));
+    /**
+     * Verify a SHA256withRSA/PSS signature over canonical content
+     *
+     * @param content canonical content
+     * @param sign    Base64-encoded signature
+     * @param pubKey  public key
+     * @return true if the signature is valid
+     * @throws Exception if verification can not be performed
+     */
+    public static boolean verifySignPSS(SignContent content, String sign, PublicKey pubKey) throws Exception {
+        Signature signature = CryptoEngines.signature(SIGN_ALGORITHMS_SHA256RSA_PSS);
+        signature.initVerify(pubKey);
+        signature.update(content.buffer(), 0, content.length());
+        return signature.verify(Base64.getDecoder().decode(sign.getBytes()));
+    }
+
+    /**
+     * Parse a Base64-encoded X.509 public key, reusing the cached instance when the key was seen before
+     *
+     * @param publicKey Base64-encoded public key, without PEM header
+     * @return parsed public key
+     * @throws Exception if the key can not be parsed
+     */
+    public static PublicKey getPublicKey(String publicKey) throws Exception {
+        return RsaKeyCache.getPublicKey(publicKey);
     }
 
-    private static PrivateKey getPrivateKey(String algorithm, String privateKey) throws Exception {
-        KeyFactory keyFactory = KeyFactory.getInstance(algorithm);
-        byte[] privateKeyData = Base64.getDecoder().decode(privateKey.getBytes(StandardCharsets.UTF_8));
-        return keyFactory.generatePrivate(new PKCS8EncodedKeySpec(privateKeyData));
+    /**
+     * Parse a Base64-encoded PKCS#8 private key, reusing the cached instance when the key was seen before
+     *
+     * @param privateKey Base64-encoded private key, without PEM header
+     * @return parsed private key
+     * @throws Exception if the key can not be parsed
+     */
+    public static PrivateKey getPrivateKey(String privateKey) throws Exception {
+        return RsaKeyCache.getPrivateKey(privateKey);
     }
 
 }
@@ -3,9 +3,13 @@ package com.safeheron.client.utils;
 import com.safeheron.client.exception.SafeheronException;
 import lombok.extern.slf4j.Slf4j;
 import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author safeheron
@@ -21,23 +25,119 @@ public class ServiceExecutor {
     public static <T> T execute(Call<T> call) {
         try {
             Response<T> response = call.execute();
-            if (response.isSuccessful()) {
-                return response.body();
-            } else {
-                StringBuilder errorMsgBuilder = new StringBuilder();
-                errorMsgBuilder.append("http request failed: ");
-                errorMsgBuilder.append(null != response.body() ? response.body().toString() : "");
-                errorMsgBuilder.append(null != response.errorBody() ? response.errorBody().string() : "");
-                throw new SafeheronException(500, errorMsgBuilder.toString());
-            }
+            return body(response);
         } catch (SafeheronException se){
             throw se;
         } catch (IOException ioException) {
+            if (ioException.getCause() instanceof SafeheronException) {
+                // raised by an interceptor, e.g. the rate limiter
+                throw (SafeheronException) ioException.getCause();
+            }
             ioException.printStackTrace();
-            throw new SafeheronException(500, ioException.getMessage());
+            SafeheronException exception = new SafeheronException(500, ioException.getMessage());
+            exception.initCause(ioException);
+            throw exception;
         } catch (Exception e){
             e.printStackTrace();
             throw new SafeheronException(500, e.getMessage());
         }
     }
+
+    /**
+     * Execute a REST call without blocking; the future completes on an OkHttp dispatcher thread.
+     * Failures are mapped as in {@link #execute}: the future completes exceptionally with a
+     * {@link SafeheronException}. Cancelling the future cancels the HTTP call.
+     *
+     * @param <T> return param type
+     * @param call call
+     * @return future of the response body
+     */
+    public static <T> CompletableFuture<T> executeAsync(Call<T> call) {
+        return executeAsync(call, null);
+    }
+
+    /**
+     * Execute a REST call without blocking, completing the future on the given executor, so
+     * that dependent stages which are not *Async run there instead of on an OkHttp dispatcher
+     * thread. If the executor rejects the completion the future is completed on the dispatcher
+     * thread.
+     *
+     * @param <T> return param type
+     * @param call call
+     * @param executor executor completing the future, or null to complete it on the dispatcher thread
+     * @return future of the response body
+     */
+    public static <T> CompletableFuture<T> executeAsync(Call<T> call, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                call.cancel();
+                return cancelled;
+            }
+        };
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                T body;
+                try {
+                    body = body(response);
+                } catch (Exception e) {
+                    onFailure(call, e);
+                    return;
+                }
+                complete(future, executor, () -> future.complete(body));
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                SafeheronException exception = toSafeheronException(t);
+                complete(future, executor, () -> future.completeExceptionally(exception));
+            }
+        });
+        return future;
+    }
+
+    private static <T> T body(Response<T> response) throws IOException {
+        if (response.isSuccessful()) {
+            return response.body();
+        } else {
+            StringBuilder errorMsgBuilder = new StringBuilder();
+            errorMsgBuilder.append("http request failed: ");
+            errorMsgBuilder.append(null != response.body() ? response.body().toString() : "");
+            errorMsgBuilder.append(null != response.errorBody() ? response.errorBody().string() : "");
+            throw new SafeheronException(500, errorMsgBuilder.toString());
+        }
+    }
+
+    private static SafeheronException toSafeheronException(Throwable t) {
+        // OkHttp reports an exception thrown by an interceptor of an enqueued call as
+        // IOException("canceled due to ...") with the original exception suppressed
+        if (t instanceof IOException && t.getSuppressed().length > 0
+                && String.valueOf(t.getMessage()).startsWith("canceled due to")) {
+            t = t.getSuppressed()[0];
+        }
+        if (t instanceof IOException && t.getCause() instanceof SafeheronException) {
+            t = t.getCause();
+        }
+        if (t instanceof SafeheronException) {
+            return (SafeheronException) t;
+        }
+        log.error("Safeheron request failed", t);
+        SafeheronException exception = new SafeheronException(500, t.getMessage());
+        exception.initCause(t);
+        return exception;
+    }
+
+    private static void complete(CompletableFuture<?> future, Executor executor, Runnable completion) {
+        if (executor == null || future.isDone()) {
+            completion.run();
+            return;
+        }
+        try {
+            executor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
 }
@@ -0,0 +1,199 @@
+package com.safeheron.client.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+
+/**
+ * Canonical "k1=v1&amp;k2=v2" content that requests, responses, webhooks and co-signer callbacks
+ * are signed over.
+ * <p>
+ * Callers add the fields in lexicographic key order, which is what the TreeMap used before
+ * produced, and the content is written as UTF-8 straight into a reusable per-thread buffer.
+ * A null value is written as "null", the same as joining the TreeMap entries did. When built
+ * with {@link #begin(Signature)}, large values are passed to {@link Signature#update} directly
+ * instead of being copied into the buffer.
+ *
+ * <pre>
+ * SignContent content = SignContent.begin()
+ *         .add("bizContent", bizContent)
+ *         .add("key", key)
+ *         .add("timestamp", timestamp);
+ * boolean checkResult = RsaUtil.verifySign(content, sig, publicKey);
+ * </pre>
+ * The returned instance belongs to the calling thread and is only valid until its next
+ * {@code begin}. Virtual threads get a new instance for each {@code begin}.
+ *
+ * @author safeheron
+ */
+public final class SignContent {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final int DIRECT_UPDATE_THRESHOLD = 256;
+    private static final ThreadLocal<SignContent> CONTENTS = ThreadLocal.withInitial(SignContent::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private String lastKey;
+    private Signature signature;
+
+    private SignContent() {
+    }
+
+    /**
+     * Start building canonical content in this thread's buffer
+     *
+     * @return empty content
+     */
+    public static SignContent begin() {
+        SignContent content = current();
+        content.reset(null);
+        return content;
+    }
+
+    /**
+     * Start building canonical content that is fed to an initialised signature engine as it is
+     * built; call {@link #finish()} before {@code sign} or {@code verify}
+     *
+     * @param signature signature engine, already initialised
+     * @return empty content
+     */
+    public static SignContent begin(Signature signature) {
+        SignContent content = current();
+        content.reset(signature);
+        return content;
+    }
+
+    /**
+     * Append a field
+     *
+     * @param key   field name, greater than the previous one
+     * @param value field value
+     * @return this
+     */
+    public SignContent add(String key, String value) {
+        appendKey(key);
+        append(String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Append a field whose value is already UTF-8 encoded
+     *
+     * @param key    field name, greater than the previous one
+     * @param value  buffer holding the value
+     * @param offset offset of the value in the buffer
+     * @param len    length of the value
+     * @return this
+     * @throws SignatureException if the value can not be passed to the signature engine
+     */
+    public SignContent add(String key, byte[] value, int offset, int len) throws SignatureException {
+        appendKey(key);
+        if (signature != null && len >= DIRECT_UPDATE_THRESHOLD) {
+            flush();
+            signature.update(value, offset, len);
+        } else {
+            append(value, offset, len);
+        }
+        return this;
+    }
+
+    /**
+     * Pass whatever is still buffered to the signature engine given to {@link #begin(Signature)}
+     *
+     * @return the signature engine
+     * @throws SignatureException if the content can not be passed to the signature engine
+     */
+    public Signature finish() throws SignatureException {
+        if (signature == null) {
+            throw new IllegalStateException("content was not started with a signature engine");
+        }
+        flush();
+        return signature;
+    }
+
+    /**
+     * @return buffer holding the content, valid from 0 to {@link #length()}
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return content length in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static SignContent current() {
+        return VirtualThreads.isCurrentThreadVirtual() ? new SignContent() : CONTENTS.get();
+    }
+
+    private void reset(Signature signature) {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        this.length = 0;
+        this.lastKey = null;
+        this.signature = signature;
+    }
+
+    private void appendKey(String key) {
+        if (lastKey != null) {
+            if (key.compareTo(lastKey) <= 0) {
+                throw new IllegalStateException("sign content key " + key + " must come after " + lastKey);
+            }
+            appendByte('&');
+        }
+        lastKey = key;
+        append(key);
+        appendByte('=');
+    }
+
+    private void append(String value) {
+        int len = value.length();
+        ensureCapacity(length + len);
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // non-ASCII, let the JDK encode the remainder
+                byte[] encoded = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                append(encoded, 0, encoded.length);
+                return;
+            }
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    private void append(byte[] value, int offset, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(value, offset, buffer, length, len);
+        length += len;
+    }
+
+    private void appendByte(char c) {
+        ensureCapacity(length + 1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void flush() throws SignatureException {
+        if (length > 0) {
+            signature.update(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, capacity));
+        }
+    }
+}
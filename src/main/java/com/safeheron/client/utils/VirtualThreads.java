@@ -0,0 +1,52 @@
+package com.safeheron.client.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Access to virtual threads from code compiled for Java 8.
+ * <p>
+ * This is the Java 8 implementation, used on runtimes without virtual threads. The SDK jar is a
+ * multi-release jar whose Java 21 layer replaces this class with one backed by
+ * {@code Thread.ofVirtual()}.
+ *
+ * @author safeheron
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether this runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @return whether the calling thread is a virtual thread
+     */
+    public static boolean isCurrentThreadVirtual() {
+        return false;
+    }
+
+    /**
+     * Create an executor that starts a new thread for each task: a virtual thread on Java 21 and
+     * later, otherwise a daemon platform thread, reused when idle for up to 60 seconds.
+     *
+     * @param name thread name prefix
+     * @return executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+}
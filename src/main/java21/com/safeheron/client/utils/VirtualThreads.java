@@ -0,0 +1,42 @@
+package com.safeheron.client.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads from code compiled for Java 8.
+ * <p>
+ * This is the Java 21 implementation, packaged under {@code META-INF/versions/21} of the
+ * multi-release SDK jar.
+ *
+ * @author safeheron
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return whether this runtime supports virtual threads
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @return whether the calling thread is a virtual thread
+     */
+    public static boolean isCurrentThreadVirtual() {
+        return Thread.currentThread().isVirtual();
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task
+     *
+     * @param name thread name prefix
+     * @return executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 0).factory());
+    }
+}
@@ -0,0 +1,131 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.RsaUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the pooled Cipher/Signature engines in AesUtil and RsaUtil against the previous
+ * implementation, which looked every engine up through {@code getInstance} on each call.
+ *
+ * <pre>
+ * $ mvn test-compile
+ * $ java -cp target/test-classes:target/classes:&lt;test classpath&gt; com.safeheron.benchmark.CryptoEngineBenchmark
+ * </pre>
+ * The gc profiler is enabled, so {@code gc.alloc.rate.norm} reports bytes allocated per operation.
+ *
+ * @author safeheron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoEngineBenchmark {
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    private String content;
+    private byte[] aesKey;
+    private byte[] iv;
+    private byte[] envelopeKey;
+    private PrivateKey privateKey;
+    private PublicKey publicKey;
+    private String signature;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            builder.append("{\"txKey\":\"tx").append(i).append("\",\"coinKey\":\"ETH\"}");
+        }
+        content = builder.toString();
+        aesKey = AesUtil.generateAESKey();
+        iv = AesUtil.generateIvKey();
+        envelopeKey = new byte[48];
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(4096);
+        KeyPair keyPair = generator.generateKeyPair();
+        privateKey = keyPair.getPrivate();
+        publicKey = keyPair.getPublic();
+        signature = RsaUtil.sign(content, privateKey);
+    }
+
+    @Benchmark
+    public String aesGcmEncryptLookup() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", "BC");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(aesKey, "AES"), new GCMParameterSpec(128, nextIv()));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String aesGcmEncryptPooled() throws Exception {
+        return AesUtil.encrypt(content, aesKey, nextIv(), AESTypeEnum.GCM, CryptoProviderEnum.BOUNCY_CASTLE);
+    }
+
+    @Benchmark
+    public String aesGcmEncryptPooledJdk() throws Exception {
+        return AesUtil.encrypt(content, aesKey, nextIv(), AESTypeEnum.GCM, CryptoProviderEnum.JDK);
+    }
+
+    @Benchmark
+    public String rsaOaepEncryptLookup() throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA-256AndMGF1Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, publicKey, new OAEPParameterSpec("SHA-256", "MGF1", new MGF1ParameterSpec("SHA-256"), PSource.PSpecified.DEFAULT));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(envelopeKey));
+    }
+
+    @Benchmark
+    public String rsaOaepEncryptPooled() throws Exception {
+        return RsaUtil.encrypt(envelopeKey, publicKey, RSATypeEnum.ECB_OAEP);
+    }
+
+    @Benchmark
+    public boolean verifySignLookup() throws Exception {
+        Signature engine = Signature.getInstance("SHA256WithRSA");
+        engine.initVerify(publicKey);
+        engine.update(content.getBytes(StandardCharsets.UTF_8));
+        return engine.verify(Base64.getDecoder().decode(signature));
+    }
+
+    @Benchmark
+    public boolean verifySignPooled() throws Exception {
+        return RsaUtil.verifySign(content, signature, publicKey);
+    }
+
+    private byte[] nextIv() {
+        // GCM refuses to encrypt twice with the same key and IV
+        iv[0]++;
+        return iv;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(CryptoEngineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
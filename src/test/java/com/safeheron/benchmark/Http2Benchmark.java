@@ -0,0 +1,105 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.config.HttpProtocolEnum;
+import com.safeheron.client.config.TransportConfig;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.utils.ServiceCreator;
+import com.safeheron.client.utils.ServiceExecutor;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Latency of 200 concurrent callers over HTTP/1.1, HTTP/2 over TLS, HTTP/2 requested from a
+ * server that only speaks HTTP/1.1 (the ALPN fallback), and cleartext HTTP/2 with prior
+ * knowledge, against a local stand-in with injected latency.
+ * <p>
+ * The stand-in uses a self-signed certificate, which is put in a temporary trust store
+ * installed through {@code javax.net.ssl.trustStore}.
+ *
+ * <pre>
+ * $ mvn test-compile
+ * $ java -cp target/test-classes:target/classes:&lt;test classpath&gt; com.safeheron.benchmark.Http2Benchmark [callers] [seconds] [latencyMillis]
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class Http2Benchmark {
+
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+
+        HeldCertificate certificate = new HeldCertificate.Builder()
+                .addSubjectAlternativeName("localhost")
+                .build();
+        trust(certificate);
+        HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+                .heldCertificate(certificate)
+                .build();
+
+        System.out.printf("%d callers, %d ms server latency%n", callers, latencyMillis);
+        run("HTTP/1.1 over TLS          ", tlsServer(serverCertificates, Collections.singletonList(Protocol.HTTP_1_1)),
+                HttpProtocolEnum.HTTP_1_1, callers, seconds, latencyMillis);
+        run("HTTP/2 over TLS            ", tlsServer(serverCertificates, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)),
+                HttpProtocolEnum.HTTP_2, callers, seconds, latencyMillis);
+        run("HTTP/2 -> HTTP/1.1 fallback", tlsServer(serverCertificates, Collections.singletonList(Protocol.HTTP_1_1)),
+                HttpProtocolEnum.HTTP_2, callers, seconds, latencyMillis);
+        MockWebServer h2c = new MockWebServer();
+        h2c.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        run("h2c prior knowledge        ", h2c, HttpProtocolEnum.H2_PRIOR_KNOWLEDGE, callers, seconds, latencyMillis);
+        System.exit(0);
+    }
+
+    private static MockWebServer tlsServer(HandshakeCertificates certificates, List<Protocol> protocols) {
+        MockWebServer server = new MockWebServer();
+        server.useHttps(certificates.sslSocketFactory(), false);
+        server.setProtocols(protocols);
+        return server;
+    }
+
+    private static void run(String name, MockWebServer mockWebServer, HttpProtocolEnum protocol,
+                            int callers, int seconds, long latencyMillis) throws Exception {
+        try (StandInServer server = new StandInServer(mockWebServer, latencyMillis)) {
+            TransportConfig transport = TransportConfig.builder()
+                    .protocol(protocol)
+                    .maxIdleConnections(callers)
+                    .build();
+            TransactionApiService api = ServiceCreator.create(TransactionApiService.class,
+                    server.configBuilder("http2-" + name.trim()).transport(transport).build());
+            OneTransactionsRequest request = new OneTransactionsRequest();
+            request.setTxKey("tx-1");
+
+            LoadRunner.run(callers, 2000, () -> ServiceExecutor.execute(api.oneTransactions(request)));
+            LoadRunner.Result result = LoadRunner.run(callers, seconds * 1000L,
+                    () -> ServiceExecutor.execute(api.oneTransactions(request)));
+            System.out.printf("%s: %s  connections %d%n", name, result, server.takeConnectionCount());
+        }
+    }
+
+    private static void trust(HeldCertificate certificate) throws Exception {
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("stand-in", certificate.certificate());
+        File file = File.createTempFile("stand-in-truststore", ".p12");
+        file.deleteOnExit();
+        char[] password = "changeit".toCharArray();
+        try (OutputStream out = new FileOutputStream(file)) {
+            trustStore.store(out, password);
+        }
+        System.setProperty("javax.net.ssl.trustStore", file.getAbsolutePath());
+        System.setProperty("javax.net.ssl.trustStorePassword", "changeit");
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+    }
+}
@@ -0,0 +1,112 @@
+package com.safeheron.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator: a fixed number of callers each repeat a call for a fixed time,
+ * and the runner reports throughput and latency percentiles.
+ *
+ * @author safeheron
+ */
+public final class LoadRunner {
+
+    private LoadRunner() {
+    }
+
+    public static final class Result {
+        private final long calls;
+        private final long errors;
+        private final double seconds;
+        private final long[] latenciesNanos;
+
+        Result(long calls, long errors, double seconds, long[] latenciesNanos) {
+            this.calls = calls;
+            this.errors = errors;
+            this.seconds = seconds;
+            this.latenciesNanos = latenciesNanos;
+        }
+
+        public double throughput() {
+            return calls / seconds;
+        }
+
+        public double percentileMillis(double percentile) {
+            if (latenciesNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.max(0, Math.min(index, latenciesNanos.length - 1))] / 1e6;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8.1f calls/s  p50 %7.1f ms  p99 %7.1f ms  p99.9 %7.1f ms  errors %d",
+                    throughput(), percentileMillis(50), percentileMillis(99), percentileMillis(99.9), errors);
+        }
+    }
+
+    /**
+     * @param callers number of concurrent callers
+     * @param millis  how long to run
+     * @param call    the call each caller repeats
+     * @return throughput and latencies of the successful calls
+     */
+    public static Result run(int callers, long millis, Callable<?> call) throws InterruptedException {
+        long deadline = System.nanoTime() + millis * 1_000_000L;
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[callers][];
+        int[] counts = new int[callers];
+        CountDownLatch done = new CountDownLatch(callers);
+        long start = System.nanoTime();
+        for (int i = 0; i < callers; i++) {
+            int caller = i;
+            Thread thread = new Thread(() -> {
+                long[] own = new long[1024];
+                int count = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long begin = System.nanoTime();
+                        try {
+                            call.call();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == own.length) {
+                            own = Arrays.copyOf(own, own.length * 2);
+                        }
+                        own[count++] = System.nanoTime() - begin;
+                    }
+                } finally {
+                    // published to the runner by the latch
+                    latencies[caller] = own;
+                    counts[caller] = count;
+                    done.countDown();
+                }
+            }, "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < callers; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+        return new Result(all.length, errors.get(), seconds, all);
+    }
+}
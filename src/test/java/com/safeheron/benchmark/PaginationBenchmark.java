@@ -0,0 +1,98 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.paging.LimitSearchIterator;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.utils.ServiceCreator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wall-clock time of a full listTransactionsV2 scan through {@link LimitSearchIterator} with
+ * and without prefetching, against a local stand-in with injected latency. The consumer spends
+ * a fixed time per transaction, standing in for e.g. a database write.
+ * <p>
+ * The stand-in cannot read the encrypted fromId, so it serves the pages in the order they are
+ * requested, which is the order of a single scan.
+ *
+ * <pre>
+ * $ mvn test-compile
+ * $ java -cp target/test-classes:target/classes:&lt;test classpath&gt; com.safeheron.benchmark.PaginationBenchmark [transactions] [latencyMillis] [workMicrosPerTransaction]
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class PaginationBenchmark {
+
+    private static final int PAGE_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 50;
+        long workMicros = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        List<String> pages = new ArrayList<>();
+        for (int from = 0; from < transactions; from += PAGE_SIZE) {
+            pages.add(page(from, Math.min(transactions, from + PAGE_SIZE)));
+        }
+        pages.add("[]");
+        AtomicInteger served = new AtomicInteger();
+
+        try (StandInServer server = new StandInServer(latencyMillis)) {
+            server.setPayload(request -> pages.get(Math.min(served.getAndIncrement(), pages.size() - 1)));
+            TransactionApiService api = ServiceCreator.create(TransactionApiService.class,
+                    server.configBuilder("pagination").build());
+            System.out.printf("%d transactions in pages of %d, %d ms server latency, %d us work per transaction%n",
+                    transactions, PAGE_SIZE, latencyMillis, workMicros);
+
+            // warm-up, which also fills the stand-in's envelope cache
+            served.set(0);
+            scan(api, 0, 0);
+            for (int prefetch : new int[]{0, 1, 2, 4}) {
+                served.set(0);
+                long start = System.nanoTime();
+                int scanned = scan(api, prefetch, workMicros);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("prefetch %d: %6.2f s  %9.0f transactions/s  (%d transactions)%n",
+                        prefetch, seconds, scanned / seconds, scanned);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static int scan(TransactionApiService api, int prefetch, long workMicros) {
+        ListTransactionsV2Request request = new ListTransactionsV2Request();
+        request.setLimit((long) PAGE_SIZE);
+        int scanned = 0;
+        try (LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator =
+                     LimitSearchIterator.transactions(api, request, prefetch)) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                scanned++;
+                if (workMicros > 0 && scanned % 50 == 0) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50 * workMicros));
+                }
+            }
+        }
+        return scanned;
+    }
+
+    private static String page(int from, int to) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                json.append(',');
+            }
+            json.append(String.format("{\"txKey\":\"tx-%08d\",\"coinKey\":\"ETH\",\"txAmount\":\"0.01\","
+                    + "\"sourceAddress\":\"0x6f4b2d1c9a0e3b7d5f8a1c2e4b6d8f0a2c4e6b8d\","
+                    + "\"destinationAddress\":\"0x1a3c5e7b9d2f4a6c8e0b1d3f5a7c9e2b4d6f8a0c\","
+                    + "\"transactionStatus\":\"COMPLETED\",\"createTime\":%d}", i, 1700000000000L + i));
+        }
+        return json.append(']').toString();
+    }
+}
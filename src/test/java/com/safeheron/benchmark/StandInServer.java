@@ -0,0 +1,174 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.config.SafeheronConfig;
+import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.RsaUtil;
+import com.safeheron.client.utils.SignContent;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the Safeheron API used by the load benchmarks.
+ * <p>
+ * Answers every request with a correctly encrypted and signed envelope after an injected
+ * latency. Request envelopes are not opened, so the client pays the full crypto cost while the
+ * server stays cheap; payload functions that need the request can open it with
+ * {@link #requestJson}. Envelopes are cached per payload.
+ *
+ * @author safeheron
+ */
+public final class StandInServer implements Closeable {
+
+    private final MockWebServer server;
+    private final KeyPair clientKeys;
+    private final KeyPair serverKeys;
+    private final ConcurrentMap<String, String> envelopes = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile Function<RecordedRequest, String> payload = request -> "{\"txKey\":\"tx-1\",\"transactionStatus\":\"COMPLETED\"}";
+
+    public StandInServer(long latencyMillis) throws Exception {
+        this(new MockWebServer(), latencyMillis);
+    }
+
+    /**
+     * @param server        server to use, e.g. configured for TLS or HTTP/2; started here
+     * @param latencyMillis latency added to every response
+     */
+    public StandInServer(MockWebServer server, long latencyMillis) throws Exception {
+        this.server = server;
+        this.latencyMillis = latencyMillis;
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        this.clientKeys = generator.generateKeyPair();
+        this.serverKeys = generator.generateKeyPair();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getSequenceNumber() == 0) {
+                    connections.incrementAndGet();
+                }
+                long latency = StandInServer.this.latencyMillis;
+                if (latency > 0) {
+                    Thread.sleep(latency);
+                }
+                try {
+                    String json = payload.apply(request);
+                    return new MockResponse().setHeader("Content-Type", "application/json")
+                            .setBody(envelopes.computeIfAbsent(json, StandInServer.this::envelope));
+                } catch (RuntimeException e) {
+                    return new MockResponse().setResponseCode(500).setBody(String.valueOf(e));
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @param payload function from request to decrypted response payload JSON
+     */
+    public void setPayload(Function<RecordedRequest, String> payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Open the envelope of a request
+     *
+     * @param request request received
+     * @return decrypted request JSON, or null for a request without bizContent
+     */
+    public String requestJson(RecordedRequest request) {
+        try {
+            Map<?, ?> envelope = JsonUtil.getObjectMapper().readValue(request.getBody().clone().readUtf8(), Map.class);
+            if (envelope.get("bizContent") == null) {
+                return null;
+            }
+            byte[] sourceKey = RsaUtil.decrypt((String) envelope.get("key"), serverKeys.getPrivate(), RSATypeEnum.ECB_OAEP);
+            byte[] aesKey = Arrays.copyOf(sourceKey, 32);
+            byte[] iv = Arrays.copyOfRange(sourceKey, 32, sourceKey.length);
+            return AesUtil.decrypt((String) envelope.get("bizContent"), aesKey, iv, AESTypeEnum.GCM);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return connections that have carried at least one request, since the last call
+     */
+    public int takeConnectionCount() {
+        return connections.getAndSet(0);
+    }
+
+    public MockWebServer getServer() {
+        return server;
+    }
+
+    /**
+     * @param apiKey api key; clients are cached per api key, so use a new one per configuration
+     * @return config builder pointing at this server with matching keys
+     */
+    public SafeheronConfig.SafeheronConfigBuilder configBuilder(String apiKey) {
+        return SafeheronConfig.builder()
+                .baseUrl(server.url("/").toString())
+                .apiKey(apiKey)
+                .rsaPrivateKey(Base64.getEncoder().encodeToString(clientKeys.getPrivate().getEncoded()))
+                .safeheronRsaPublicKey(Base64.getEncoder().encodeToString(serverKeys.getPublic().getEncoded()));
+    }
+
+    private String envelope(String json) {
+        try {
+            byte[] aesKey = AesUtil.generateAESKey();
+            byte[] iv = AesUtil.generateIvKey();
+            String bizContent = AesUtil.encrypt(json, aesKey, iv, AESTypeEnum.GCM);
+            byte[] sourceKey = Arrays.copyOf(aesKey, aesKey.length + iv.length);
+            System.arraycopy(iv, 0, sourceKey, aesKey.length, iv.length);
+            String key = RsaUtil.encrypt(sourceKey, clientKeys.getPublic(), RSATypeEnum.ECB_OAEP);
+            String timestamp = Long.toString(System.currentTimeMillis());
+            SignContent signContent = SignContent.begin()
+                    .add("bizContent", bizContent)
+                    .add("code", "200")
+                    .add("key", key)
+                    .add("message", "SUCCESS")
+                    .add("timestamp", timestamp);
+            Map<String, Object> response = new TreeMap<>();
+            response.put("code", 200);
+            response.put("message", "SUCCESS");
+            response.put("timestamp", timestamp);
+            response.put("bizContent", bizContent);
+            response.put("key", key);
+            response.put("sig", RsaUtil.sign(signContent, serverKeys.getPrivate()));
+            response.put("rsaType", RSATypeEnum.ECB_OAEP.getCode());
+            response.put("aesType", AESTypeEnum.GCM.getCode());
+            return JsonUtil.toJson(response);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+}
@@ -0,0 +1,119 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.config.TransactionStoreConfig;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.store.TransactionStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures lookups in a {@link TransactionStore} holding 10M transactions, by txKey, by
+ * customerRefId and for a txKey that is not stored.
+ *
+ * <pre>
+ * $ mvn test-compile
+ * $ java -cp target/test-classes:target/classes:&lt;test classpath&gt; com.safeheron.benchmark.TransactionStoreBenchmark
+ * </pre>
+ * The store is written to a temporary directory before each benchmark, about 480 bytes of log
+ * per transaction, so 5GB at 10M. Keys are picked at random: once the log is larger than the
+ * page cache, hits are page faults, and the scores measure the disk rather than the store. For
+ * fewer records, run JMH's own main:
+ * <pre>
+ * $ java -cp ... org.openjdk.jmh.Main TransactionStoreBenchmark -p records=1000000
+ * </pre>
+ *
+ * @author safeheron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionStoreBenchmark {
+
+    @Param("10000000")
+    private int records;
+
+    private Path directory;
+    private TransactionStore store;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("transaction-store");
+        store = new TransactionStore(TransactionStoreConfig.builder()
+                .directory(directory.toString())
+                .initialIndexCapacity(records * 10 / 7 + 1)
+                .build());
+        for (int i = 0; i < records; i++) {
+            store.put(transaction(i));
+        }
+        store.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static TransactionsResponse transaction(int i) {
+        TransactionsResponse transaction = new TransactionsResponse();
+        transaction.setTxKey(txKey(i));
+        transaction.setCustomerRefId(customerRefId(i));
+        transaction.setTxHash(String.format("0x%064x", (long) i * 0x9e3779b97f4a7c15L));
+        transaction.setCoinKey("ETHEREUM_ETH");
+        transaction.setTxAmount("0.0" + i);
+        transaction.setSourceAccountKey("account-" + i % 1000);
+        transaction.setSourceAccountType("VAULT_ACCOUNT");
+        transaction.setDestinationAddress(String.format("0x%040x", (long) i));
+        transaction.setTransactionType("NORMAL");
+        transaction.setTransactionStatus("COMPLETED");
+        transaction.setTransactionSubStatus("CONFIRMED");
+        transaction.setCreateTime(1700000000000L + i);
+        transaction.setCompletedTime(1700000060000L + i);
+        return transaction;
+    }
+
+    private static String txKey(int i) {
+        return "tx" + (100000000000L + i);
+    }
+
+    private static String customerRefId(int i) {
+        return "ref-" + i;
+    }
+
+    @Benchmark
+    public TransactionsResponse getByTxKey() {
+        return store.get(txKey(ThreadLocalRandom.current().nextInt(records)));
+    }
+
+    @Benchmark
+    public TransactionsResponse getByCustomerRefId() {
+        return store.getByCustomerRefId(customerRefId(ThreadLocalRandom.current().nextInt(records)));
+    }
+
+    @Benchmark
+    public TransactionsResponse getMissing() {
+        return store.get(txKey(records + ThreadLocalRandom.current().nextInt(records)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(TransactionStoreBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,78 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.config.TransportConfig;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.utils.ServiceCreator;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Load test of the transport settings: a fixed number of callers query a local stand-in with
+ * injected latency while maxRequestsPerHost goes up. With the OkHttp default of 5 calls per
+ * host, throughput is capped at 5 / latency however many callers there are.
+ * <p>
+ * The dispatcher limits only apply to calls that are enqueued, so the callers go through
+ * {@link Call#enqueue}; {@link Call#execute} runs on the calling thread and is only bounded by
+ * the number of calling threads.
+ *
+ * <pre>
+ * $ mvn test-compile
+ * $ java -cp target/test-classes:target/classes:&lt;test classpath&gt; com.safeheron.benchmark.TransportLoadBenchmark [callers] [seconds] [latencyMillis]
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class TransportLoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        try (StandInServer server = new StandInServer(latencyMillis)) {
+            System.out.printf("%d callers, %d ms server latency%n", callers, latencyMillis);
+            for (int maxRequestsPerHost : new int[]{1, 5, 20, 64}) {
+                TransportConfig transport = TransportConfig.builder()
+                        .maxRequests(256)
+                        .maxRequestsPerHost(maxRequestsPerHost)
+                        .maxIdleConnections(maxRequestsPerHost)
+                        .build();
+                TransactionApiService api = ServiceCreator.create(TransactionApiService.class,
+                        server.configBuilder("transport-" + maxRequestsPerHost).transport(transport).build());
+                OneTransactionsRequest request = new OneTransactionsRequest();
+                request.setTxKey("tx-1");
+
+                // warm up connections and crypto engines
+                LoadRunner.run(callers, 1000, () -> enqueue(api.oneTransactions(request)).get());
+                LoadRunner.Result result = LoadRunner.run(callers, seconds * 1000L,
+                        () -> enqueue(api.oneTransactions(request)).get());
+                System.out.printf("maxRequestsPerHost %3d: %s%n", maxRequestsPerHost, result);
+            }
+        }
+        System.exit(0);
+    }
+
+    static <T> CompletableFuture<T> enqueue(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (response.isSuccessful()) {
+                    future.complete(response.body());
+                } else {
+                    future.completeExceptionally(new IllegalStateException("HTTP " + response.code()));
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,117 @@
+package com.safeheron.benchmark;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.config.HttpProtocolEnum;
+import com.safeheron.client.config.TransportConfig;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.response.OneTransactionsResponse;
+import com.safeheron.client.utils.BlockingCallExecutor;
+import com.safeheron.client.utils.ServiceCreator;
+import com.safeheron.client.utils.VirtualThreads;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-per-call blocking calls through {@link BlockingCallExecutor}: a burst of calls is
+ * submitted at once against a local h2c stand-in with injected latency, once on a fixed pool
+ * of platform threads and once with a thread per call, which is a virtual thread on Java 21.
+ * <p>
+ * Directories on the class path are not multi-release, so run it against the packaged jar to
+ * get the Java 21 layer.
+ *
+ * <pre>
+ * $ mvn package -DskipTests
+ * $ java -cp target/test-classes:target/api-sdk-java-&lt;version&gt;.jar:&lt;test classpath&gt; com.safeheron.benchmark.VirtualThreadBenchmark [calls] [latencyMillis] [poolSize]
+ * </pre>
+ *
+ * @author safeheron
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int poolSize = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        MockWebServer h2c = new MockWebServer();
+        h2c.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        try (StandInServer server = new StandInServer(h2c, latencyMillis)) {
+            TransportConfig transport = TransportConfig.builder()
+                    .protocol(HttpProtocolEnum.H2_PRIOR_KNOWLEDGE)
+                    .build();
+            TransactionApiService api = ServiceCreator.create(TransactionApiService.class,
+                    server.configBuilder("virtual-threads").transport(transport).build());
+            System.out.printf("%d calls, %d ms server latency, virtual threads %s%n",
+                    calls, latencyMillis, VirtualThreads.isSupported() ? "available" : "not available");
+
+            run("warm-up                       ", api, Math.min(calls, poolSize), "bench-",
+                    new BlockingCallExecutor(Executors.newFixedThreadPool(poolSize, named("bench-"))));
+            run(String.format("%4d platform threads          ", poolSize), api, calls, "bench-",
+                    new BlockingCallExecutor(Executors.newFixedThreadPool(poolSize, named("bench-"))));
+            run("thread per call               ", api, calls, "safeheron-blocking-",
+                    new BlockingCallExecutor());
+        }
+        System.exit(0);
+    }
+
+    private static void run(String name, TransactionApiService api, int calls, String threadPrefix,
+                            BlockingCallExecutor executor) throws Exception {
+        OneTransactionsRequest request = new OneTransactionsRequest();
+        request.setTxKey("tx-1");
+        AtomicInteger peakThreads = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                int threads = 0;
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.getName().startsWith(threadPrefix)) {
+                        threads++;
+                    }
+                }
+                peakThreads.accumulateAndGet(threads, Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        List<CompletableFuture<OneTransactionsResponse>> futures = new ArrayList<>(calls);
+        for (int i = 0; i < calls; i++) {
+            futures.add(executor.submit(api.oneTransactions(request)));
+        }
+        int errors = 0;
+        for (CompletableFuture<OneTransactionsResponse> future : futures) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                errors++;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sampler.interrupt();
+        executor.close();
+        System.out.printf("%s: %6.2f s  %8.1f calls/s  platform threads (peak) %5d  errors %d%n",
+                name, seconds, calls / seconds, peakThreads.get(), errors);
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
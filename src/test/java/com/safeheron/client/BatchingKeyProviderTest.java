@@ -0,0 +1,172 @@
+package com.safeheron.client;
+
+import com.safeheron.client.config.RSATypeEnum;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class BatchingKeyProviderTest {
+
+    private final RecordingProvider delegate = new RecordingProvider();
+    private BatchingKeyProvider provider;
+
+    @After
+    public void close() {
+        if (provider != null) {
+            provider.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void callsWithinTheWindowShareOneBatch() throws Exception {
+        provider = new BatchingKeyProvider(delegate, 200, 64);
+        CompletableFuture<String> a = provider.signAsync("a");
+        CompletableFuture<String> b = provider.signAsync("b");
+        CompletableFuture<String> c = provider.signAsync("c");
+
+        assertEquals("sig:a", a.get());
+        assertEquals("sig:b", b.get());
+        assertEquals("sig:c", c.get());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), delegate.signBatches);
+    }
+
+    @Test(timeout = 10000)
+    public void fullBatchIsSentWithoutWaitingForTheWindow() throws Exception {
+        provider = new BatchingKeyProvider(delegate, 60000, 2);
+        CompletableFuture<String> a = provider.signAsync("a");
+        CompletableFuture<String> b = provider.signAsync("b");
+
+        assertEquals("sig:a", a.get(1, TimeUnit.SECONDS));
+        assertEquals("sig:b", b.get(1, TimeUnit.SECONDS));
+        assertEquals(1, delegate.signBatches.size());
+    }
+
+    @Test(timeout = 10000)
+    public void windowOfAFullBatchDoesNotCutTheNextOneShort() throws Exception {
+        provider = new BatchingKeyProvider(delegate, 1000, 2);
+        long start = System.nanoTime();
+        provider.signAsync("a");
+        Thread.sleep(300);
+        provider.signAsync("b");
+        // a new window opens here and ends 1000ms later, after the first one has expired
+        CompletableFuture<String> c = provider.signAsync("c");
+
+        sleepUntil(start, 1150);
+        assertFalse("flushed by the window of the batch before", c.isDone());
+        assertEquals("sig:c", c.get());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c")), delegate.signBatches);
+    }
+
+    @Test(timeout = 10000)
+    public void kindsAreBatchedApart() throws Exception {
+        provider = new BatchingKeyProvider(delegate, 100, 64);
+        CompletableFuture<String> sign = provider.signAsync("a");
+        CompletableFuture<String> signPSS = provider.signPSSAsync("b");
+        CompletableFuture<byte[]> rsa = provider.decryptAsync("c", RSATypeEnum.RSA);
+        CompletableFuture<byte[]> oaep = provider.decryptAsync("d", RSATypeEnum.ECB_OAEP);
+
+        assertEquals("sig:a", sign.get());
+        assertEquals("pss:b", signPSS.get());
+        assertEquals("RSA:c", new String(rsa.get(), StandardCharsets.UTF_8));
+        assertEquals("ECB_OAEP:d", new String(oaep.get(), StandardCharsets.UTF_8));
+        assertEquals(1, delegate.signBatches.size());
+        assertEquals(3, delegate.otherBatches.size());
+    }
+
+    @Test(timeout = 10000)
+    public void closeSendsWaitingCallsAndRejectsNewOnes() throws Exception {
+        provider = new BatchingKeyProvider(delegate, 60000, 64);
+        CompletableFuture<String> waiting = provider.signAsync("a");
+        provider.close();
+
+        assertEquals("sig:a", waiting.get(1, TimeUnit.SECONDS));
+        try {
+            provider.signAsync("b").get();
+            fail("accepted a call after close");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            provider.decrypt("c", RSATypeEnum.RSA);
+            fail("accepted a call after close");
+        } catch (IllegalStateException expected) {
+            // rejected
+        }
+        assertEquals(1, delegate.signBatches.size());
+        assertTrue(delegate.otherBatches.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void callRacingCloseIsSentOrRejected() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            BatchingKeyProvider racing = new BatchingKeyProvider(delegate, 60000, 64);
+            CompletableFuture<CompletableFuture<String>> submitted = CompletableFuture.supplyAsync(() -> racing.signAsync("a"));
+            racing.close();
+            // signAsync itself must not throw, e.g. because the window timer was shut down
+            CompletableFuture<String> call = submitted.get();
+            try {
+                assertEquals("sig:a", call.get(1, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    private static void sleepUntil(long start, long millis) throws InterruptedException {
+        long remaining = millis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+    }
+
+    private static final class RecordingProvider implements AsyncKeyProvider {
+        final List<List<String>> signBatches = new CopyOnWriteArrayList<>();
+        final List<List<String>> otherBatches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<String> signAsync(String content) {
+            return CompletableFuture.completedFuture("sig:" + content);
+        }
+
+        @Override
+        public CompletableFuture<String> signPSSAsync(String content) {
+            return CompletableFuture.completedFuture("pss:" + content);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> decryptAsync(String content, RSATypeEnum rsaType) {
+            return CompletableFuture.completedFuture((rsaType + ":" + content).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public CompletableFuture<List<String>> signBatch(List<String> contents) {
+            signBatches.add(new ArrayList<>(contents));
+            return AsyncKeyProvider.super.signBatch(contents);
+        }
+
+        @Override
+        public CompletableFuture<List<String>> signPSSBatch(List<String> contents) {
+            otherBatches.add(new ArrayList<>(contents));
+            return AsyncKeyProvider.super.signPSSBatch(contents);
+        }
+
+        @Override
+        public CompletableFuture<List<byte[]>> decryptBatch(List<String> contents, RSATypeEnum rsaType) {
+            otherBatches.add(new ArrayList<>(contents));
+            return AsyncKeyProvider.super.decryptBatch(contents, rsaType);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.safeheron.client.converter;
+
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.utils.RsaUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class EnvelopeKeyPoolTest {
+
+    private static KeyPair safeheron;
+
+    private EnvelopeKeyPool pool;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        safeheron = generator.generateKeyPair();
+    }
+
+    @After
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private static EnvelopeKeyPool pool(int capacity) {
+        return new EnvelopeKeyPool(Base64.getEncoder().encodeToString(safeheron.getPublic().getEncoded()), capacity);
+    }
+
+    private void awaitDepth(int depth) throws InterruptedException {
+        while (pool.getDepth() != depth) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void everyKeyIsHandedOutOnce() throws Exception {
+        pool = pool(4);
+        awaitDepth(4);
+        Set<String> aesKeys = new HashSet<>();
+        Set<String> encryptedKeys = new HashSet<>();
+        for (int i = 0; i < 16; i++) {
+            EnvelopeKey envelopeKey = pool.take();
+            aesKeys.add(Base64.getEncoder().encodeToString(envelopeKey.getAesKey()));
+            encryptedKeys.add(envelopeKey.getEncryptedKey());
+        }
+
+        assertEquals(16, aesKeys.size());
+        assertEquals(16, encryptedKeys.size());
+        assertEquals(16, pool.getHits() + pool.getMisses());
+        assertTrue(pool.getHits() >= 4);
+    }
+
+    @Test(timeout = 10000)
+    public void encryptedKeyHoldsTheKeyAndIv() throws Exception {
+        pool = pool(1);
+        EnvelopeKey envelopeKey = pool.take();
+        byte[] keyAndIv = RsaUtil.decrypt(envelopeKey.getEncryptedKey(), safeheron.getPrivate(), RSATypeEnum.ECB_OAEP);
+
+        assertArrayEquals(envelopeKey.getAesKey(), Arrays.copyOfRange(keyAndIv, 0, 32));
+        assertArrayEquals(envelopeKey.getIv(), Arrays.copyOfRange(keyAndIv, 32, keyAndIv.length));
+    }
+
+    @Test(timeout = 10000)
+    public void takenKeysAreRefilled() throws Exception {
+        pool = pool(2);
+        awaitDepth(2);
+        pool.take();
+        pool.take();
+        awaitDepth(2);
+        assertEquals(2, pool.getHits());
+    }
+
+    @Test(timeout = 10000)
+    public void closedPoolIsEmptiedAndMissesAreGeneratedByTheCaller() throws Exception {
+        pool = pool(2);
+        awaitDepth(2);
+        pool.close();
+        assertEquals(0, pool.getDepth());
+        Thread.sleep(100);
+        assertEquals("refilled after close", 0, pool.getDepth());
+
+        assertNotNull(pool.take());
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getMisses());
+    }
+}
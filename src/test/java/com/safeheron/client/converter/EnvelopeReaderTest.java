@@ -0,0 +1,202 @@
+package com.safeheron.client.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.safeheron.client.DefaultPrivateKeyProvider;
+import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.CryptoStageTimings;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.RsaUtil;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streaming response envelopes, built the way the server builds them
+ *
+ * @author safeheron
+ */
+public class EnvelopeReaderTest {
+
+    private static final String PAYLOAD = "{\"txKey\":\"tx-1\",\"note\":\"café 中文\",\"amount\":\"0.1\"}";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=UTF-8");
+
+    private static KeyPair client;
+    private static KeyPair safeheron;
+
+    private final byte[] aesKey = new byte[32];
+    private final byte[] iv = new byte[12];
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        client = generator.generateKeyPair();
+        safeheron = generator.generateKeyPair();
+    }
+
+    public EnvelopeReaderTest() {
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(aesKey);
+        random.nextBytes(iv);
+    }
+
+    /**
+     * @param tamper changes the ciphertext before it is signed
+     */
+    private String envelope(String payload, Consumer<byte[]> tamper) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(aesKey, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        tamper.accept(ciphertext);
+        byte[] keyAndIv = Arrays.copyOf(aesKey, aesKey.length + iv.length);
+        System.arraycopy(iv, 0, keyAndIv, aesKey.length, iv.length);
+
+        Map<String, String> sigMap = new TreeMap<>();
+        sigMap.put("bizContent", Base64.getEncoder().encodeToString(ciphertext));
+        sigMap.put("code", "200");
+        sigMap.put("key", RsaUtil.encrypt(keyAndIv, client.getPublic(), RSATypeEnum.ECB_OAEP));
+        sigMap.put("message", "SUCCESS");
+        sigMap.put("timestamp", "1700000000000");
+        String signContent = sigMap.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"));
+
+        Map<String, Object> response = new LinkedHashMap<>(sigMap);
+        response.put("code", 200);
+        response.put("sig", RsaUtil.sign(signContent, safeheron.getPrivate()));
+        response.put("rsaType", RSATypeEnum.ECB_OAEP.getCode());
+        response.put("aesType", AESTypeEnum.GCM.getCode());
+        return JsonUtil.getObjectMapper().writeValueAsString(response);
+    }
+
+    private String envelope() throws Exception {
+        return envelope(PAYLOAD, ciphertext -> {
+        });
+    }
+
+    private static EnvelopeReader parse(String envelope) throws IOException {
+        return EnvelopeReader.parse(envelope.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InputStream decrypt(EnvelopeReader reader) throws Exception {
+        byte[] keyAndIv = RsaUtil.decrypt(reader.getKey(), client.getPrivate(), RSATypeEnum.ECB_OAEP);
+        return EnvelopeReader.verifyOnClose(AesUtil.decrypt(reader.bizContent(), Arrays.copyOfRange(keyAndIv, 0, 32),
+                Arrays.copyOfRange(keyAndIv, 32, keyAndIv.length), AESTypeEnum.GCM, CryptoProviderEnum.AUTO));
+    }
+
+    private static ResponseBodyConverter<Map<String, String>> converter(boolean streaming) {
+        return new ResponseBodyConverter<>(JsonUtil.getObjectMapper().readerFor(new TypeReference<Map<String, String>>() {
+        }), safeheron.getPublic(), new DefaultPrivateKeyProvider(client.getPrivate()), CryptoProviderEnum.AUTO,
+                streaming, null, false, new CryptoStageTimings());
+    }
+
+    @Test
+    public void streamingRoundTrip() throws Exception {
+        EnvelopeReader reader = parse(envelope());
+        assertNotNull(reader);
+        assertEquals(200, (int) reader.getCode());
+        assertEquals("SUCCESS", reader.getMessage());
+        assertEquals(AESTypeEnum.GCM.getCode(), reader.getAesType());
+        assertTrue(reader.verifySign(safeheron.getPublic()));
+
+        Map<String, String> payload;
+        try (InputStream decrypted = decrypt(reader)) {
+            payload = JsonUtil.getObjectMapper().readValue(decrypted, new TypeReference<Map<String, String>>() {
+            });
+        }
+        assertEquals("café 中文", payload.get("note"));
+    }
+
+    @Test
+    public void streamingAndBufferedConvertersAgree() throws Exception {
+        String envelope = envelope();
+        Map<String, String> streamed = converter(true).convert(ResponseBody.create(envelope, JSON));
+        Map<String, String> buffered = converter(false).convert(ResponseBody.create(envelope, JSON));
+
+        assertEquals(buffered, streamed);
+        assertEquals("tx-1", streamed.get("txKey"));
+    }
+
+    @Test
+    public void tamperedBizContentFailsVerification() throws Exception {
+        String envelope = envelope();
+        int bizContent = envelope.indexOf("\"bizContent\":\"") + "\"bizContent\":\"".length();
+        char c = envelope.charAt(bizContent);
+        String tampered = envelope.substring(0, bizContent) + (c == 'A' ? 'B' : 'A') + envelope.substring(bizContent + 1);
+
+        assertFalse(parse(tampered).verifySign(safeheron.getPublic()));
+        try {
+            converter(true).convert(ResponseBody.create(tampered, JSON));
+            fail("the signature does not match");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause().getMessage().contains("signature verification failed"));
+        }
+    }
+
+    @Test
+    public void tamperedSignatureFailsVerification() throws Exception {
+        Map<String, Object> fields = JsonUtil.getObjectMapper().readValue(envelope(), new TypeReference<LinkedHashMap<String, Object>>() {
+        });
+        fields.put("sig", RsaUtil.sign("bizContent=", safeheron.getPrivate()));
+        String tampered = JsonUtil.getObjectMapper().writeValueAsString(fields);
+
+        assertFalse(parse(tampered).verifySign(safeheron.getPublic()));
+    }
+
+    @Test
+    public void tamperedTagFailsWhenTheStreamIsClosed() throws Exception {
+        // signed after tampering, so only the GCM tag gives it away
+        String tampered = envelope(PAYLOAD, ciphertext -> ciphertext[ciphertext.length - 1] ^= 1);
+        EnvelopeReader reader = parse(tampered);
+        assertTrue(reader.verifySign(safeheron.getPublic()));
+
+        InputStream decrypted = decrypt(reader);
+        try {
+            // the parser may stop reading at the closing brace, before the tag
+            decrypted.read(new byte[1]);
+            decrypted.close();
+            fail("the tag does not match");
+        } catch (IOException expected) {
+            // checked at the latest on close
+        }
+        try {
+            converter(true).convert(ResponseBody.create(tampered, JSON));
+            fail("the tag does not match");
+        } catch (RuntimeException expected) {
+            // no result from a payload that failed authentication
+        }
+    }
+
+    @Test
+    public void escapedOrMissingBizContentIsLeftToTheBufferedPath() throws Exception {
+        String envelope = envelope();
+        int bizContent = envelope.indexOf("\"bizContent\":\"") + "\"bizContent\":\"".length();
+        // an escaped 'A', valid JSON but not Base64 in place
+        String escaped = envelope.substring(0, bizContent) + "\\u0041" + envelope.substring(bizContent);
+        assertNull(parse(escaped));
+        assertNull(parse("{\"code\":200,\"message\":\"SUCCESS\"}"));
+    }
+}
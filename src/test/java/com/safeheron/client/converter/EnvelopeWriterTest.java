@@ -0,0 +1,165 @@
+package com.safeheron.client.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.safeheron.client.DefaultPrivateKeyProvider;
+import com.safeheron.client.KeyProvider;
+import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
+import com.safeheron.client.config.RSATypeEnum;
+import com.safeheron.client.utils.AesUtil;
+import com.safeheron.client.utils.JsonUtil;
+import com.safeheron.client.utils.RsaUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Golden test: EnvelopeWriter must produce exactly the envelope of the TreeMap and
+ * ObjectWriter code it replaced
+ *
+ * @author safeheron
+ */
+public class EnvelopeWriterTest {
+
+    private static final String API_KEY = "0bd0e5a9a3f54ab2b2e9d6b1a7a6c5c1";
+
+    private static KeyPair client;
+    private static KeyPair safeheron;
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        client = generator.generateKeyPair();
+        safeheron = generator.generateKeyPair();
+    }
+
+    /**
+     * The previous RequestInterceptor, with the timestamp of the envelope under test
+     */
+    private static byte[] treeMapEnvelope(String requestJson, EnvelopeKey envelopeKey, String timestamp,
+                                          StringBuilder signContent) throws Exception {
+        Map<String, String> requestData = new TreeMap<>();
+        requestData.put("apiKey", API_KEY);
+        requestData.put("timestamp", timestamp);
+        if (!requestJson.trim().isEmpty()) {
+            requestData.put("bizContent", Base64.getEncoder().encodeToString(gcm(envelopeKey).doFinal(
+                    requestJson.getBytes(StandardCharsets.UTF_8))));
+        }
+        requestData.put("key", envelopeKey.getEncryptedKey());
+        signContent.append(requestData.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&")));
+        requestData.put("sig", RsaUtil.sign(signContent.toString(), client.getPrivate()));
+        requestData.put("rsaType", RSATypeEnum.ECB_OAEP.getCode());
+        requestData.put("aesType", AESTypeEnum.GCM.getCode());
+        return JsonUtil.getObjectMapper().writerFor(Map.class).writeValueAsBytes(requestData);
+    }
+
+    /**
+     * A cipher of its own: the thread's pooled cipher refuses to encrypt twice with one key and IV
+     */
+    private static Cipher gcm(EnvelopeKey envelopeKey) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(envelopeKey.getAesKey(), "AES"),
+                new GCMParameterSpec(128, envelopeKey.getIv()));
+        return cipher;
+    }
+
+    private static void assertGolden(String requestJson) throws Exception {
+        RecordingKeyProvider keyProvider = new RecordingKeyProvider();
+        EnvelopeKey envelopeKey = EnvelopeKey.generate(safeheron.getPublic());
+        byte[] envelope = EnvelopeWriter.get().write(requestJson.getBytes(StandardCharsets.UTF_8), envelopeKey,
+                API_KEY, keyProvider, CryptoProviderEnum.AUTO, null);
+        Map<String, String> fields = JsonUtil.getObjectMapper().readValue(envelope,
+                new TypeReference<LinkedHashMap<String, String>>() {
+                });
+
+        StringBuilder signContent = new StringBuilder();
+        byte[] expected = treeMapEnvelope(requestJson, envelopeKey, fields.get("timestamp"), signContent);
+        assertEquals(signContent.toString(), new String(keyProvider.signed, StandardCharsets.UTF_8));
+        // PKCS#1 v1.5 signatures are deterministic, so the envelopes are byte for byte the same
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(envelope, StandardCharsets.UTF_8));
+        assertTrue(RsaUtil.verifySign(signContent.toString(), fields.get("sig"), client.getPublic()));
+    }
+
+    @Test
+    public void envelopeMatchesTheTreeMapEnvelope() throws Exception {
+        assertGolden("{\"txKey\":\"tx-1\",\"note\":\"café 中文\",\"amount\":\"0.1\"}");
+    }
+
+    @Test
+    public void blankRequestHasNoBizContent() throws Exception {
+        assertGolden("  ");
+    }
+
+    @Test
+    public void scratchBuffersAreReusedAcrossSizes() throws Exception {
+        char[] large = new char[3 << 20];
+        Arrays.fill(large, 'x');
+        assertGolden("{\"note\":\"" + new String(large) + "\"}");
+        assertGolden("{\"txKey\":\"tx-2\"}");
+    }
+
+    @Test
+    public void bizContentDecryptsToTheRequest() throws Exception {
+        String requestJson = "{\"txKey\":\"tx-3\"}";
+        EnvelopeKey envelopeKey = EnvelopeKey.generate(safeheron.getPublic());
+        byte[] envelope = EnvelopeWriter.get().write(requestJson.getBytes(StandardCharsets.UTF_8), envelopeKey,
+                API_KEY, new RecordingKeyProvider(), CryptoProviderEnum.AUTO, null);
+        Map<String, String> fields = JsonUtil.getObjectMapper().readValue(envelope,
+                new TypeReference<LinkedHashMap<String, String>>() {
+                });
+
+        // as the server does it
+        byte[] keyAndIv = RsaUtil.decrypt(fields.get("key"), safeheron.getPrivate(), RSATypeEnum.ECB_OAEP);
+        assertArrayEquals(envelopeKey.getAesKey(), Arrays.copyOfRange(keyAndIv, 0, 32));
+        assertEquals(requestJson, AesUtil.decrypt(fields.get("bizContent"), Arrays.copyOfRange(keyAndIv, 0, 32),
+                Arrays.copyOfRange(keyAndIv, 32, keyAndIv.length), AESTypeEnum.GCM));
+    }
+
+    /**
+     * Signs with the client key and keeps the bytes it was given
+     */
+    private static final class RecordingKeyProvider implements KeyProvider {
+        private final KeyProvider delegate = new DefaultPrivateKeyProvider(client.getPrivate());
+        byte[] signed;
+
+        @Override
+        public String sign(String content) {
+            signed = content.getBytes(StandardCharsets.UTF_8);
+            return delegate.sign(content);
+        }
+
+        @Override
+        public String sign(byte[] content, int offset, int length) {
+            signed = Arrays.copyOfRange(content, offset, offset + length);
+            return delegate.sign(content, offset, length);
+        }
+
+        @Override
+        public String signPSS(String content) {
+            return delegate.signPSS(content);
+        }
+
+        @Override
+        public byte[] decrypt(String content, RSATypeEnum rsaType) {
+            return delegate.decrypt(content, rsaType);
+        }
+    }
+}
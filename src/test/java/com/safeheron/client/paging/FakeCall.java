@@ -0,0 +1,142 @@
+package com.safeheron.client.paging;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Retrofit call that answers without a server, for tests of the paging helpers. Depending on
+ * its mode it completes inside enqueue, as Retrofit does when a request cannot be built or the
+ * dispatcher rejects it, on another thread, or only when the test releases it.
+ *
+ * @param <T> response body type
+ * @author safeheron
+ */
+final class FakeCall<T> implements Call<T> {
+
+    enum Mode {
+        /**
+         * Respond inside enqueue, on the caller's thread
+         */
+        SYNC,
+        /**
+         * Fail inside enqueue, on the caller's thread
+         */
+        SYNC_FAILURE,
+        /**
+         * Respond on another thread
+         */
+        ASYNC,
+        /**
+         * Respond when {@link #release()} is called
+         */
+        HELD
+    }
+
+    private static final ExecutorService RESPONDER = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "fake-call");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<T> body;
+    private final Mode mode;
+    private volatile Callback<T> callback;
+    private volatile boolean executed;
+    private volatile boolean canceled;
+
+    FakeCall(Supplier<T> body, Mode mode) {
+        this.body = body;
+        this.mode = mode;
+    }
+
+    /**
+     * Calls created by a fetch function, in order
+     */
+    static <T> List<FakeCall<T>> recorder() {
+        return new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        executed = true;
+        if (mode == Mode.SYNC_FAILURE) {
+            throw new IOException("rejected");
+        }
+        return Response.success(body.get());
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        executed = true;
+        this.callback = callback;
+        switch (mode) {
+            case SYNC:
+                respond();
+                break;
+            case SYNC_FAILURE:
+                callback.onFailure(this, new IOException("rejected"));
+                break;
+            case ASYNC:
+                RESPONDER.execute(this::respond);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Deliver the response of a held call
+     */
+    void release() {
+        respond();
+    }
+
+    /**
+     * Deliver a failure for a held call
+     */
+    void fail(IOException failure) {
+        callback.onFailure(this, failure);
+    }
+
+    private void respond() {
+        if (canceled) {
+            callback.onFailure(this, new IOException("Canceled"));
+        } else {
+            callback.onResponse(this, Response.success(body.get()));
+        }
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @Override
+    public Call<T> clone() {
+        return new FakeCall<>(body, mode);
+    }
+
+    @Override
+    public Request request() {
+        return new Request.Builder().url("http://localhost/").build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.response.TransactionsResponse;
+import retrofit2.Call;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * listTransactionsV2 over a fixed set of transactions tx-00000, tx-00001, ..., paged by fromId
+ *
+ * @author safeheron
+ */
+final class FakeTransactions implements Function<ListTransactionsV2Request, Call<List<TransactionsResponse>>> {
+
+    private final int total;
+    private final FakeCall.Mode mode;
+    final List<FakeCall<List<TransactionsResponse>>> calls = FakeCall.recorder();
+
+    FakeTransactions(int total, FakeCall.Mode mode) {
+        this.total = total;
+        this.mode = mode;
+    }
+
+    static String txKey(int i) {
+        return String.format("tx-%05d", i);
+    }
+
+    @Override
+    public Call<List<TransactionsResponse>> apply(ListTransactionsV2Request request) {
+        String fromId = request.getFromId();
+        long limit = request.getLimit();
+        FakeCall<List<TransactionsResponse>> call = new FakeCall<>(() -> {
+            int from = fromId == null ? 0 : Integer.parseInt(fromId.substring(3)) + 1;
+            List<TransactionsResponse> page = new ArrayList<>();
+            for (int i = from; i < total && page.size() < limit; i++) {
+                TransactionsResponse transaction = new TransactionsResponse();
+                transaction.setTxKey(txKey(i));
+                page.add(transaction);
+            }
+            return page;
+        }, mode);
+        calls.add(call);
+        return call;
+    }
+
+    static ListTransactionsV2Request request(long limit) {
+        ListTransactionsV2Request request = new ListTransactionsV2Request();
+        request.setLimit(limit);
+        return request;
+    }
+}
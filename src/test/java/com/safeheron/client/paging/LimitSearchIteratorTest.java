@@ -0,0 +1,126 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.response.TransactionsResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Order, prefetch bound and completion on the consuming thread of {@link LimitSearchIterator}
+ *
+ * @author safeheron
+ */
+public class LimitSearchIteratorTest {
+
+    private static LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator(
+            FakeTransactions api, long limit, int prefetch) {
+        return new LimitSearchIterator<>(FakeTransactions.request(limit), api, TransactionsResponse::getTxKey, prefetch);
+    }
+
+    private static void assertAll(int total, List<String> txKeys) {
+        Assert.assertEquals(total, txKeys.size());
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals(FakeTransactions.txKey(i), txKeys.get(i));
+        }
+    }
+
+    private static List<String> drain(LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator) {
+        try (LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> it = iterator) {
+            return it.stream().map(TransactionsResponse::getTxKey).collect(Collectors.toList());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void pagesCompletedOnTheConsumingThread() {
+        for (int prefetch = 0; prefetch <= 2; prefetch++) {
+            FakeTransactions api = new FakeTransactions(95, FakeCall.Mode.SYNC);
+            assertAll(95, drain(iterator(api, 10, prefetch)));
+            Assert.assertEquals(10, api.calls.size());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void pagesCompletedOnAnotherThread() {
+        for (int prefetch = 0; prefetch <= 2; prefetch++) {
+            FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.ASYNC);
+            assertAll(100, drain(iterator(api, 10, prefetch)));
+            // the last full page is followed by an empty one
+            Assert.assertEquals(11, api.calls.size());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void failureOnTheConsumingThreadIsThrown() {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.SYNC_FAILURE);
+        LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator = iterator(api, 10, 0);
+        try {
+            iterator.hasNext();
+            Assert.fail("expected the page failure");
+        } catch (SafeheronException e) {
+            Assert.assertTrue(e.getMessage().contains("rejected"));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void pagesBufferedBeforeAFailureAreConsumedFirst() {
+        FakeTransactions api = new FakeTransactions(1000, FakeCall.Mode.HELD);
+        LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator = iterator(api, 10, 2);
+        api.calls.get(0).release();
+        api.calls.get(1).fail(new IOException("rejected"));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(iterator.hasNext());
+            Assert.assertEquals(FakeTransactions.txKey(i), iterator.next().getTxKey());
+        }
+        try {
+            iterator.hasNext();
+            Assert.fail("expected the page failure");
+        } catch (SafeheronException e) {
+            Assert.assertTrue(e.getMessage().contains("rejected"));
+        }
+        Assert.assertEquals(2, api.calls.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void prefetchIsBounded() {
+        FakeTransactions api = new FakeTransactions(1000, FakeCall.Mode.HELD);
+        LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator = iterator(api, 10, 2);
+        Assert.assertEquals(1, api.calls.size());
+        api.calls.get(0).release();
+        api.calls.get(1).release();
+        // two pages buffered, none in flight
+        Assert.assertEquals(2, api.calls.size());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals(3, api.calls.size());
+        iterator.close();
+        Assert.assertTrue(api.calls.get(2).isCanceled());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test(timeout = 10_000)
+    public void interruptedWaitThrows() throws Exception {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.HELD);
+        LimitSearchIterator<ListTransactionsV2Request, TransactionsResponse> iterator = iterator(api, 10, 0);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                iterator.hasNext();
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+        consumer.start();
+        while (api.calls.isEmpty()) {
+            Thread.sleep(1);
+        }
+        consumer.interrupt();
+        consumer.join();
+        Assert.assertTrue(thrown.get() instanceof SafeheronException);
+        iterator.close();
+    }
+}
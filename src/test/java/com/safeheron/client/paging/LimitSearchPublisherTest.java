@@ -0,0 +1,131 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.response.TransactionsResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Demand and cancellation of {@link LimitSearchPublisher}
+ *
+ * @author safeheron
+ */
+public class LimitSearchPublisherTest {
+
+    private static final class TestSubscriber implements Subscriber<TransactionsResponse> {
+        final List<String> txKeys = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Subscription subscription;
+        volatile Throwable error;
+        volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TransactionsResponse transaction) {
+            txKeys.add(transaction.getTxKey());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+
+    private static TestSubscriber subscribe(FakeTransactions api, long limit) {
+        TestSubscriber subscriber = new TestSubscriber();
+        new LimitSearchPublisher<ListTransactionsV2Request, TransactionsResponse>(
+                FakeTransactions.request(limit), api, TransactionsResponse::getTxKey).subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Test
+    public void nothingIsFetchedBeforeDemand() {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.SYNC);
+        TestSubscriber subscriber = subscribe(api, 10);
+        Assert.assertNotNull(subscriber.subscription);
+        Assert.assertEquals(0, api.calls.size());
+    }
+
+    @Test
+    public void onePagePerRequestOfOne() {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.SYNC);
+        TestSubscriber subscriber = subscribe(api, 10);
+        subscriber.subscription.request(1);
+        Assert.assertEquals(1, api.calls.size());
+        Assert.assertEquals(1, subscriber.txKeys.size());
+        for (int i = 1; i < 10; i++) {
+            subscriber.subscription.request(1);
+        }
+        // the first page is used up, the next one is only fetched on further demand
+        Assert.assertEquals(1, api.calls.size());
+        Assert.assertEquals(10, subscriber.txKeys.size());
+        subscriber.subscription.request(1);
+        Assert.assertEquals(2, api.calls.size());
+        Assert.assertEquals(FakeTransactions.txKey(10), subscriber.txKeys.get(10));
+    }
+
+    @Test
+    public void requestOfZeroSignalsIllegalArgument() {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.SYNC);
+        TestSubscriber subscriber = subscribe(api, 10);
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+        Assert.assertEquals(0, api.calls.size());
+    }
+
+    @Test
+    public void unboundedDemandEmitsAllInOrder() throws Exception {
+        FakeTransactions api = new FakeTransactions(95, FakeCall.Mode.ASYNC);
+        TestSubscriber subscriber = subscribe(api, 10);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.completed);
+        Assert.assertEquals(95, subscriber.txKeys.size());
+        for (int i = 0; i < 95; i++) {
+            Assert.assertEquals(FakeTransactions.txKey(i), subscriber.txKeys.get(i));
+        }
+    }
+
+    @Test
+    public void cancelStopsTheScanAndTheCallInFlight() {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.HELD);
+        TestSubscriber subscriber = subscribe(api, 10);
+        subscriber.subscription.request(5);
+        Assert.assertEquals(1, api.calls.size());
+        subscriber.subscription.cancel();
+        Assert.assertTrue(api.calls.get(0).isCanceled());
+        api.calls.get(0).release();
+        subscriber.subscription.request(100);
+        Assert.assertEquals(1, api.calls.size());
+        Assert.assertTrue(subscriber.txKeys.isEmpty());
+        Assert.assertNull(subscriber.error);
+        Assert.assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void synchronousFailureIsSignalled() {
+        FakeTransactions api = new FakeTransactions(100, FakeCall.Mode.SYNC_FAILURE);
+        TestSubscriber subscriber = subscribe(api, 10);
+        subscriber.subscription.request(1);
+        Assert.assertNotNull(subscriber.error);
+        Assert.assertFalse(subscriber.completed);
+    }
+}
@@ -0,0 +1,144 @@
+package com.safeheron.client.paging;
+
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.ListAccountRequest;
+import com.safeheron.client.response.AccountResponse;
+import com.safeheron.client.response.PageResult;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Call;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Order, concurrency bound and failures of {@link PageSearchLoader}
+ *
+ * @author safeheron
+ */
+public class PageSearchLoaderTest {
+
+    /**
+     * listAccounts over accounts account-000, account-001, ...; the first page is always answered
+     * at once, the others in the given mode, and failingPage fails inside enqueue
+     */
+    private static final class FakeAccounts implements Function<ListAccountRequest, Call<PageResult<AccountResponse>>> {
+        final int total;
+        final FakeCall.Mode mode;
+        final long failingPage;
+        final List<FakeCall<PageResult<AccountResponse>>> calls = FakeCall.recorder();
+
+        FakeAccounts(int total, FakeCall.Mode mode, long failingPage) {
+            this.total = total;
+            this.mode = mode;
+            this.failingPage = failingPage;
+        }
+
+        @Override
+        public Call<PageResult<AccountResponse>> apply(ListAccountRequest request) {
+            long pageNumber = request.getPageNumber();
+            long pageSize = request.getPageSize();
+            FakeCall.Mode pageMode = pageNumber == 1 ? FakeCall.Mode.SYNC
+                    : pageNumber == failingPage ? FakeCall.Mode.SYNC_FAILURE : mode;
+            FakeCall<PageResult<AccountResponse>> call = new FakeCall<>(() -> {
+                PageResult<AccountResponse> page = new PageResult<>();
+                page.setPageSize(pageSize);
+                page.setTotalElements((long) total);
+                List<AccountResponse> content = new ArrayList<>();
+                for (long i = (pageNumber - 1) * pageSize; i < total && content.size() < pageSize; i++) {
+                    AccountResponse account = new AccountResponse();
+                    account.setAccountKey(String.format("account-%03d", i));
+                    content.add(account);
+                }
+                page.setContent(content);
+                return page;
+            }, pageMode);
+            if (pageNumber != 1) {
+                calls.add(call);
+            }
+            return call;
+        }
+    }
+
+    private static ListAccountRequest request(long pageSize) {
+        ListAccountRequest request = new ListAccountRequest();
+        request.setPageSize(pageSize);
+        return request;
+    }
+
+    private static void assertAll(int total, List<AccountResponse> accounts) {
+        Assert.assertEquals(total, accounts.size());
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals(String.format("account-%03d", i), accounts.get(i).getAccountKey());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void pagesCompletedOnTheCallingThread() {
+        FakeAccounts api = new FakeAccounts(95, FakeCall.Mode.SYNC, -1);
+        assertAll(95, new PageSearchLoader<>(request(10), api, 4).loadAll());
+        Assert.assertEquals(9, api.calls.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void pagesCompletedOutOfOrderAreMergedInOrder() throws Exception {
+        FakeAccounts api = new FakeAccounts(200, FakeCall.Mode.HELD, -1);
+        int concurrency = 3;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Thread releaser = new Thread(() -> {
+            int released = 0;
+            while (!done.get()) {
+                int created = api.calls.size();
+                maxInFlight.accumulateAndGet(created - released, Math::max);
+                // newest first, so that pages complete out of order
+                for (int i = created - 1; i >= released; i--) {
+                    api.calls.get(i).release();
+                }
+                released = created;
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        releaser.start();
+        try {
+            assertAll(200, new PageSearchLoader<>(request(10), api, concurrency).loadAll());
+        } finally {
+            done.set(true);
+            releaser.join();
+        }
+        Assert.assertEquals(19, api.calls.size());
+        Assert.assertTrue("in flight " + maxInFlight.get(), maxInFlight.get() <= concurrency);
+    }
+
+    @Test(timeout = 10_000)
+    public void firstPageComesFirst() {
+        FakeAccounts api = new FakeAccounts(50, FakeCall.Mode.ASYNC, -1);
+        List<Long> pageNumbers = new ArrayList<>();
+        new PageSearchLoader<>(request(10), api, 4).forEachPage(page -> pageNumbers.add(page.getPageNumber()));
+        Assert.assertEquals(5, pageNumbers.size());
+        Assert.assertEquals(Long.valueOf(1), pageNumbers.get(0));
+    }
+
+    @Test(timeout = 10_000)
+    public void failedPageIsThrownAndTheRestCancelled() {
+        FakeAccounts api = new FakeAccounts(200, FakeCall.Mode.HELD, 3);
+        try {
+            new PageSearchLoader<>(request(10), api, 4).loadAll();
+            Assert.fail("expected the page failure");
+        } catch (SafeheronException e) {
+            Assert.assertTrue(e.getMessage().contains("rejected"));
+        }
+        for (FakeCall<PageResult<AccountResponse>> call : api.calls) {
+            if (call != api.calls.get(1)) {
+                Assert.assertTrue(call.isCanceled());
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.CircuitBreakerConfig;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class CircuitBreakerInterceptorTest {
+
+    private final MockWebServer server = new MockWebServer();
+    private final CircuitBreakerRegistry registry = new CircuitBreakerRegistry(CircuitBreakerConfig.builder()
+            .slidingWindowSize(2)
+            .minimumCalls(2)
+            .slowCallDurationMillis(150L)
+            .build());
+
+    @Before
+    public void start() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * @param upstream stands in for the rate limiter and the RequestInterceptor
+     */
+    private OkHttpClient client(Interceptor upstream) {
+        CircuitBreakerInterceptor circuitBreakers = CircuitBreakerInterceptor.create(registry);
+        return new OkHttpClient.Builder()
+                .addInterceptor(circuitBreakers)
+                .addInterceptor(upstream)
+                .addInterceptor(circuitBreakers.timer())
+                .build();
+    }
+
+    private void call(OkHttpClient client) throws IOException {
+        try (Response ignored = client.newCall(new Request.Builder().url(server.url("/v1/test")).build()).execute()) {
+            // only the outcome matters
+        }
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return registry.circuitBreaker("/v1/test", null);
+    }
+
+    @Test(timeout = 10000)
+    public void waitingBeforeTheExchangeIsNotSlow() throws Exception {
+        OkHttpClient client = client(chain -> {
+            sleep(300);
+            return chain.proceed(chain.request());
+        });
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+        call(client);
+        call(client);
+
+        assertEquals(0.0, circuitBreaker().getSlowCallRate(), 0);
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker().getState());
+    }
+
+    @Test(timeout = 10000)
+    public void slowServerOpensTheCircuit() throws Exception {
+        OkHttpClient client = client(chain -> chain.proceed(chain.request()));
+        server.enqueue(new MockResponse().setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        call(client);
+        call(client);
+
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker().getState());
+        try {
+            call(client);
+            fail("the circuit is open");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void serverErrorsAreFailures() throws Exception {
+        OkHttpClient client = client(chain -> chain.proceed(chain.request()));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        call(client);
+        call(client);
+
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker().getState());
+    }
+
+    @Test(timeout = 10000)
+    public void failuresBeforeTheExchangeAreIgnored() throws Exception {
+        OkHttpClient client = client(chain -> {
+            throw new IOException(new IllegalStateException("could not sign"));
+        });
+        for (int i = 0; i < 5; i++) {
+            try {
+                call(client);
+                fail("the envelope failed");
+            } catch (IOException expected) {
+                // not counted
+            }
+        }
+
+        assertEquals(-1.0, circuitBreaker().getFailureRate(), 0);
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker().getState());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.CircuitBreakerConfig;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+    private static final long OPEN = TimeUnit.MILLISECONDS.toNanos(2000);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final List<CircuitStateEnum> transitions = new ArrayList<>();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("/v1/ping", CircuitBreakerConfig.builder()
+            .slidingWindowSize(10)
+            .minimumCalls(4)
+            .failureRateThreshold(50.0)
+            .slowCallDurationMillis(1000L)
+            .slowCallRateThreshold(80.0)
+            .openDurationMillis(2000L)
+            .halfOpenCalls(3)
+            .build(), breaker -> transitions.add(breaker.getState()), clock::get);
+
+    private void record(long durationNanos, boolean failure) {
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onResult(durationNanos, failure);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            record(FAST, true);
+        }
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void failureRateOpensTheCircuitOnceMinimumCallsAreRecorded() {
+        record(FAST, false);
+        record(FAST, true);
+        record(FAST, true);
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker.getState());
+        assertEquals(-1, circuitBreaker.getFailureRate(), 0);
+
+        record(FAST, false);
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker.getState());
+        assertEquals(50, circuitBreaker.getFailureRate(), 0);
+        assertEquals(Arrays.asList(CircuitStateEnum.OPEN), transitions);
+    }
+
+    @Test
+    public void slowCallRateOpensTheCircuit() {
+        record(SLOW, false);
+        record(SLOW, false);
+        record(SLOW, false);
+        record(FAST, false);
+        // 75% slow
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker.getState());
+        assertEquals(75, circuitBreaker.getSlowCallRate(), 0);
+
+        record(SLOW, false);
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getFailureRate(), 0);
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() {
+        record(FAST, true);
+        for (int i = 0; i < 9; i++) {
+            record(FAST, false);
+        }
+        assertEquals(10, circuitBreaker.getFailureRate(), 0);
+        // the first failure leaves the window
+        for (int i = 0; i < 4; i++) {
+            record(FAST, true);
+        }
+        // the window holds the last 10 outcomes: 6 successes and 4 failures
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker.getState());
+        assertEquals(40, circuitBreaker.getFailureRate(), 0);
+
+        record(FAST, true);
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void openCircuitRefusesCallsUntilTheOpenDurationHasPassed() {
+        open();
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        clock.addAndGet(OPEN - 1);
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertEquals(2, circuitBreaker.getNotPermittedCalls());
+
+        clock.addAndGet(1);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitStateEnum.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void halfOpenCircuitClosesAfterThreeGoodTrialCalls() {
+        open();
+        clock.addAndGet(OPEN);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+        }
+        assertFalse("only three trial calls", circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.onResult(FAST, false);
+        circuitBreaker.onResult(FAST, true);
+        assertEquals(CircuitStateEnum.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onResult(FAST, false);
+
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker.getState());
+        assertEquals("the window starts empty", -1, circuitBreaker.getFailureRate(), 0);
+        assertEquals(Arrays.asList(CircuitStateEnum.OPEN, CircuitStateEnum.HALF_OPEN, CircuitStateEnum.CLOSED),
+                transitions);
+    }
+
+    @Test
+    public void failedTrialCallsReopenTheCircuit() {
+        open();
+        clock.addAndGet(OPEN);
+        record(FAST, true);
+        record(FAST, false);
+        record(SLOW, true);
+        assertEquals(CircuitStateEnum.OPEN, circuitBreaker.getState());
+
+        // the open duration starts again
+        clock.addAndGet(OPEN - 1);
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        clock.addAndGet(1);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void ignoredTrialCallGivesBackItsPermission() {
+        open();
+        clock.addAndGet(OPEN);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+        }
+        circuitBreaker.onIgnored();
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onResult(FAST, false);
+        }
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void ignoredCallsAreNotRecorded() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onIgnored();
+        }
+        assertEquals(-1, circuitBreaker.getFailureRate(), 0);
+        assertEquals(CircuitStateEnum.CLOSED, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,173 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.exception.SafeheronException;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class HedgedExecutorTest {
+
+    private static final String READ = "/v1/account/one";
+
+    private final MockWebServer server = new MockWebServer();
+    private Account api;
+
+    @Before
+    public void start() throws IOException {
+        server.start();
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(new OkHttpClient())
+                .build()
+                .create(Account.class);
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    private static HedgedExecutor hedgedExecutor(long initialDelayMillis, RetryBudget budget) {
+        return new HedgedExecutor(HedgePolicy.builder()
+                .initialDelayMillis(initialDelayMillis)
+                .minDelayMillis(1L)
+                .minSamples(20)
+                .readPaths(Collections.singleton(READ))
+                .budget(budget)
+                .build());
+    }
+
+    private static MockResponse ok(long delayMillis) {
+        return new MockResponse().setBody("ok").setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static MockResponse error(long delayMillis) {
+        return new MockResponse().setResponseCode(500).setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The future completes before the executor's bookkeeping on the completing thread is done
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void fastReadIsSentOnce() throws Exception {
+        HedgedExecutor hedgedExecutor = hedgedExecutor(1000, new RetryBudget());
+        server.enqueue(ok(0));
+
+        assertEquals("ok", hedgedExecutor.execute(api.one()).string());
+        assertEquals(1, hedgedExecutor.getCalls());
+        assertEquals(0, hedgedExecutor.getHedges());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test(timeout = 20000)
+    public void delayFollowsThePercentileOfRecentLatencies() throws Exception {
+        HedgedExecutor hedgedExecutor = hedgedExecutor(5000, new RetryBudget());
+        assertEquals(5000, hedgedExecutor.getHedgeDelayMillis(READ));
+        for (int i = 0; i < 20; i++) {
+            server.enqueue(ok(0));
+            hedgedExecutor.execute(api.one()).close();
+        }
+        await(() -> hedgedExecutor.getHedgeDelayMillis(READ) < 5000);
+
+        assertTrue(hedgedExecutor.getHedgeDelayMillis(READ) < 1000);
+        assertEquals(0, hedgedExecutor.getHedges());
+    }
+
+    @Test(timeout = 10000)
+    public void slowPrimaryIsHedgedAndCancelledWhenTheHedgeWins() throws Exception {
+        HedgedExecutor hedgedExecutor = hedgedExecutor(100, new RetryBudget());
+        server.enqueue(ok(5000));
+        server.enqueue(ok(0));
+        Call<ResponseBody> call = api.one();
+        long start = System.nanoTime();
+
+        assertEquals("ok", hedgedExecutor.execute(call).string());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4));
+        assertEquals(1, hedgedExecutor.getHedges());
+        await(call::isCanceled);
+        assertEquals(1, hedgedExecutor.getHedgesWon());
+    }
+
+    @Test(timeout = 10000)
+    public void budgetCapsTheHedges() throws Exception {
+        // no deposits: the one token the budget starts with is all there is
+        HedgedExecutor hedgedExecutor = hedgedExecutor(50, new RetryBudget(0, 1));
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(ok(300));
+        }
+        CompletableFuture<ResponseBody> first = hedgedExecutor.executeAsync(api.one());
+        CompletableFuture<ResponseBody> second = hedgedExecutor.executeAsync(api.one());
+
+        assertEquals("ok", first.get().string());
+        assertEquals("ok", second.get().string());
+        assertEquals(1, hedgedExecutor.getHedges());
+        assertEquals(1, hedgedExecutor.getBudgetExhausted());
+    }
+
+    @Test(timeout = 10000)
+    public void failureBeforeTheHedgeIsDueFailsTheRead() {
+        HedgedExecutor hedgedExecutor = hedgedExecutor(1000, new RetryBudget());
+        server.enqueue(error(0));
+        try {
+            hedgedExecutor.execute(api.one());
+            fail("the primary request failed");
+        } catch (SafeheronException expected) {
+            assertEquals(500, (int) expected.getCode());
+        }
+        assertEquals(0, hedgedExecutor.getHedges());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test(timeout = 10000)
+    public void failureAfterTheHedgeWasSentWaitsForTheHedge() throws Exception {
+        HedgedExecutor hedgedExecutor = hedgedExecutor(100, new RetryBudget());
+        server.enqueue(error(300));
+        server.enqueue(ok(400));
+
+        assertEquals("ok", hedgedExecutor.execute(api.one()).string());
+        await(() -> hedgedExecutor.getHedgesWon() == 1);
+    }
+
+    @Test(timeout = 10000)
+    public void readFailsWhenBothRequestsFail() {
+        HedgedExecutor hedgedExecutor = hedgedExecutor(100, new RetryBudget());
+        server.enqueue(error(300));
+        server.enqueue(error(0));
+        try {
+            hedgedExecutor.execute(api.one());
+            fail("both requests failed");
+        } catch (SafeheronException expected) {
+            assertEquals(500, (int) expected.getCode());
+        }
+        assertEquals(1, hedgedExecutor.getHedges());
+    }
+
+    interface Account {
+        @GET(READ)
+        Call<ResponseBody> one();
+    }
+}
@@ -0,0 +1,40 @@
+package com.safeheron.client.resilience;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class LatencyWindowTest {
+
+    @Test
+    public void percentileOfTheRecordedLatencies() {
+        LatencyWindow window = new LatencyWindow(100, 95.0);
+        for (int i = 1; i <= 19; i++) {
+            window.record(i);
+        }
+        assertEquals(-1, window.percentileNanos(20));
+        // refreshed every 12 recordings, last after the 13th
+        window.record(20);
+        assertEquals(13, window.percentileNanos(20));
+
+        for (int i = 21; i <= 97; i++) {
+            window.record(i);
+        }
+        assertEquals(93, window.percentileNanos(20));
+    }
+
+    @Test
+    public void oldLatenciesLeaveTheWindow() {
+        LatencyWindow window = new LatencyWindow(16, 50.0);
+        for (int i = 0; i < 16; i++) {
+            window.record(1000);
+        }
+        for (int i = 0; i < 16; i++) {
+            window.record(1);
+        }
+        assertEquals(1, window.percentileNanos(1));
+    }
+}
@@ -0,0 +1,192 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.config.RateLimitConfig;
+import com.safeheron.client.config.RateLimitModeEnum;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class RateLimiterTest {
+
+    private static final String PATH = "/v1/ping";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final MockWebServer server = new MockWebServer();
+
+    @Before
+    public void start() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    private RateLimiter rateLimiter(RateLimitModeEnum mode, long maxWaitMillis) {
+        return new RateLimiter(RateLimitConfig.builder()
+                .permitsPerSecond(10.0)
+                .burst(1)
+                .endpointPermitsPerSecond(Collections.singletonMap("/v1/slow", 1.0))
+                .mode(mode)
+                .maxWaitMillis(maxWaitMillis)
+                .build(), clock::get);
+    }
+
+    @Test
+    public void endpointLimitAppliesOnTopOfTheApiKeyLimit() {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.FAIL_FAST, 0);
+        assertTrue(rateLimiter.tryAcquire("/v1/slow"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        // the API key has a permit again, the endpoint not before a second
+        assertFalse(rateLimiter.tryAcquire("/v1/slow"));
+        assertTrue(rateLimiter.tryAcquire(PATH));
+
+        assertEquals(2, rateLimiter.getAcquired());
+        assertEquals(1, rateLimiter.getRejected());
+    }
+
+    @Test
+    public void apiKeyRefusalGivesBackTheEndpointPermit() {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.FAIL_FAST, 0);
+        assertTrue(rateLimiter.tryAcquire(PATH));
+        assertFalse(rateLimiter.tryAcquire("/v1/slow"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(rateLimiter.tryAcquire("/v1/slow"));
+    }
+
+    @Test(timeout = 10000)
+    public void acquireWaitsForThePermit() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.BLOCK, 1000);
+        rateLimiter.acquire(PATH);
+        long start = System.nanoTime();
+        rateLimiter.acquire(PATH);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, rateLimiter.getDelayed());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimiter.getTotalWaitNanos());
+    }
+
+    @Test
+    public void acquireRefusesAWaitBeyondMaxWait() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.BLOCK, 50);
+        rateLimiter.acquire(PATH);
+        try {
+            rateLimiter.acquire(PATH);
+            fail("the wait is 100ms");
+        } catch (RateLimitExceededException e) {
+            assertEquals(429, (int) e.getCode());
+        }
+        // nothing was reserved by the refused call
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(rateLimiter.tryAcquire(PATH));
+    }
+
+    @Test(timeout = 10000)
+    public void acquireAsyncCompletesWhenThePermitIsDue() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.BLOCK, 1000);
+        assertTrue(rateLimiter.acquireAsync(PATH).isDone());
+        CompletableFuture<Void> permit = rateLimiter.acquireAsync(PATH);
+        assertFalse(permit.isDone());
+        permit.get(1, TimeUnit.SECONDS);
+        assertEquals(1, rateLimiter.getDelayed());
+    }
+
+    @Test
+    public void acquireAsyncFailsBeyondMaxWait() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.BLOCK, 50);
+        rateLimiter.acquireAsync(PATH);
+        try {
+            rateLimiter.acquireAsync(PATH).get();
+            fail("the wait is 100ms");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RateLimitExceededException);
+        }
+        assertEquals(1, rateLimiter.getRejected());
+    }
+
+    @Test(timeout = 10000)
+    public void failFastInterceptorRefusesWithoutSending() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(RateLimitInterceptor.create(rateLimiter(RateLimitModeEnum.FAIL_FAST, 1000)))
+                .build();
+        server.enqueue(new MockResponse());
+        Request request = new Request.Builder().url(server.url(PATH)).build();
+        client.newCall(request).execute().close();
+        try {
+            client.newCall(request).execute().close();
+            fail("no permit left");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof RateLimitExceededException);
+            assertEquals(429, (int) ((RateLimitExceededException) e.getCause()).getCode());
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test(timeout = 10000)
+    public void executeAsyncTakesOnePermitPerCall() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.FAIL_FAST, 1000);
+        Ping api = ping(rateLimiter);
+        server.enqueue(new MockResponse().setBody("pong"));
+        server.enqueue(new MockResponse().setBody("pong"));
+
+        Call<ResponseBody> first = api.ping();
+        assertEquals("pong", rateLimiter.executeAsync(first).get().string());
+        // due in 100ms; the FAIL_FAST interceptor would refuse it if it took a permit of its own
+        Call<ResponseBody> second = api.ping();
+        assertEquals("pong", rateLimiter.executeAsync(second).get().string());
+
+        assertEquals(2, rateLimiter.getAcquired());
+        assertEquals(0, rateLimiter.getRejected());
+        assertFalse(rateLimiter.isAdmitted(first.request()));
+        assertFalse(rateLimiter.isAdmitted(second.request()));
+    }
+
+    @Test(timeout = 10000)
+    public void cancellingWhileWaitingCancelsTheCall() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(RateLimitModeEnum.BLOCK, 10000);
+        Ping api = ping(rateLimiter);
+        rateLimiter.acquire(PATH);
+        clock.addAndGet(-TimeUnit.SECONDS.toNanos(5));
+
+        Call<ResponseBody> call = api.ping();
+        CompletableFuture<ResponseBody> future = rateLimiter.executeAsync(call);
+        assertTrue(future.cancel(false));
+
+        assertTrue(call.isCanceled());
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private Ping ping(RateLimiter rateLimiter) {
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(new OkHttpClient.Builder().addInterceptor(RateLimitInterceptor.create(rateLimiter)).build())
+                .build()
+                .create(Ping.class);
+    }
+
+    interface Ping {
+        @GET(PATH)
+        Call<ResponseBody> ping();
+    }
+}
@@ -0,0 +1,238 @@
+package com.safeheron.client.resilience;
+
+import com.safeheron.client.exception.SafeheronException;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.Assert;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backoff, budget and write handling of {@link RetryExecutor}
+ *
+ * @author safeheron
+ */
+public class RetryExecutorTest {
+
+    private static final String READ = "/v1/transactions/one";
+    private static final String WRITE = "/v2/transactions/create";
+
+    /**
+     * Call whose attempts, the original and its clones, play the outcomes of a script in turn
+     */
+    private static final class ScriptedCall implements Call<String> {
+        final String path;
+        final Deque<Callable<Response<String>>> script;
+        final AtomicInteger attempts;
+
+        @SafeVarargs
+        ScriptedCall(String path, Callable<Response<String>>... script) {
+            this(path, new ArrayDeque<>(Arrays.asList(script)), new AtomicInteger());
+        }
+
+        private ScriptedCall(String path, Deque<Callable<Response<String>>> script, AtomicInteger attempts) {
+            this.path = path;
+            this.script = script;
+            this.attempts = attempts;
+        }
+
+        @Override
+        public Response<String> execute() throws IOException {
+            attempts.incrementAndGet();
+            try {
+                return script.pop().call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<String> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return attempts.get() > 0;
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+
+        @Override
+        public Call<String> clone() {
+            return new ScriptedCall(path, script, attempts);
+        }
+
+        @Override
+        public Request request() {
+            return new Request.Builder().url("http://localhost" + path).build();
+        }
+    }
+
+    private static Callable<Response<String>> ok(String body) {
+        return () -> Response.success(body);
+    }
+
+    private static Callable<Response<String>> unavailable() {
+        return () -> Response.error(503, ResponseBody.create(MediaType.get("text/plain"), "unavailable"));
+    }
+
+    private static Callable<Response<String>> refused() {
+        return () -> {
+            throw new ConnectException("Connection refused");
+        };
+    }
+
+    private static Callable<Response<String>> timedOut() {
+        return () -> {
+            throw new SocketTimeoutException("timeout");
+        };
+    }
+
+    private static Callable<Response<String>> duplicateCustomerRefId() {
+        return () -> {
+            throw new SafeheronException(9001, "customerRefId already exists");
+        };
+    }
+
+    private static RetryPolicy.RetryPolicyBuilder fastPolicy() {
+        return RetryPolicy.builder().initialBackoffMillis(1L).maxBackoffMillis(5L);
+    }
+
+    @Test
+    public void readIsRetriedUntilItSucceeds() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(READ, unavailable(), refused(), ok("tx-1"));
+        Assert.assertEquals("tx-1", executor.execute(call));
+        Assert.assertEquals(3, call.attempts.get());
+        Assert.assertEquals(2, executor.getRetries());
+    }
+
+    @Test
+    public void attemptsAreCappedAndEarlierFailuresSuppressed() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(READ, unavailable(), timedOut(), unavailable(), ok("tx-1"));
+        try {
+            executor.execute(call);
+            Assert.fail("expected the third failure");
+        } catch (SafeheronException e) {
+            Assert.assertEquals(2, e.getSuppressed().length);
+        }
+        Assert.assertEquals(3, call.attempts.get());
+    }
+
+    @Test
+    public void backoffIsFullJitterBelowTheExponentialBound() {
+        RetryExecutor executor = new RetryExecutor(RetryPolicy.builder()
+                .initialBackoffMillis(100L).backoffMultiplier(2.0).maxBackoffMillis(1000L).build());
+        long[] bounds = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= bounds.length; attempt++) {
+            long max = 0;
+            for (int i = 0; i < 2000; i++) {
+                long backoff = executor.backoffMillis(attempt);
+                Assert.assertTrue(backoff >= 0 && backoff <= bounds[attempt - 1]);
+                max = Math.max(max, backoff);
+            }
+            Assert.assertTrue("attempt " + attempt + " max " + max, max > bounds[attempt - 1] * 9 / 10);
+        }
+    }
+
+    @Test
+    public void emptyBudgetStopsRetries() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().budget(new RetryBudget(0, 1)).build());
+        Assert.assertEquals("tx-1", executor.execute(new ScriptedCall(READ, unavailable(), ok("tx-1"))));
+        ScriptedCall call = new ScriptedCall(READ, unavailable(), ok("tx-2"));
+        try {
+            executor.execute(call);
+            Assert.fail("expected the failure, as the budget is spent");
+        } catch (SafeheronException e) {
+            Assert.assertTrue(e.getMessage().contains("503"));
+        }
+        Assert.assertEquals(1, call.attempts.get());
+        Assert.assertEquals(1, executor.getBudgetExhausted());
+    }
+
+    @Test
+    public void businessErrorsAreNotRetried() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(READ, () -> {
+            throw new SafeheronException(1001, "invalid request");
+        }, ok("tx-1"));
+        try {
+            executor.execute(call);
+            Assert.fail("expected the business error");
+        } catch (SafeheronException e) {
+            Assert.assertEquals(Integer.valueOf(1001), e.getCode());
+        }
+        Assert.assertEquals(1, call.attempts.get());
+    }
+
+    @Test
+    public void writePassedToExecuteIsSentOnce() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(WRITE, timedOut(), ok("tx-1"));
+        try {
+            executor.execute(call);
+            Assert.fail("expected the timeout");
+        } catch (SafeheronException e) {
+            Assert.assertTrue(e.getCause() instanceof SocketTimeoutException);
+        }
+        Assert.assertEquals(1, call.attempts.get());
+    }
+
+    @Test
+    public void writeWithoutCustomerRefIdIsSentOnce() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(WRITE, timedOut(), ok("tx-1"));
+        try {
+            executor.executeWrite(call, null, customerRefId -> "tx-existing");
+            Assert.fail("expected the timeout");
+        } catch (SafeheronException e) {
+            Assert.assertEquals(0, executor.getRetries());
+        }
+        Assert.assertEquals(1, call.attempts.get());
+    }
+
+    @Test
+    public void duplicateCustomerRefIdAfterARetryReturnsTheExistingRecord() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(WRITE, timedOut(), duplicateCustomerRefId());
+        Assert.assertEquals("tx-existing:ref-1", executor.executeWrite(call, "ref-1", customerRefId -> "tx-existing:" + customerRefId));
+        Assert.assertEquals(2, call.attempts.get());
+        Assert.assertEquals(1, executor.getDuplicatesResolved());
+    }
+
+    @Test
+    public void duplicateCustomerRefIdOnTheFirstAttemptIsThrown() {
+        RetryExecutor executor = new RetryExecutor(fastPolicy().build());
+        ScriptedCall call = new ScriptedCall(WRITE, duplicateCustomerRefId());
+        try {
+            executor.executeWrite(call, "ref-1", customerRefId -> "tx-existing");
+            Assert.fail("expected the duplicate error");
+        } catch (SafeheronException e) {
+            Assert.assertEquals(Integer.valueOf(9001), e.getCode());
+        }
+        Assert.assertEquals(0, executor.getDuplicatesResolved());
+    }
+}
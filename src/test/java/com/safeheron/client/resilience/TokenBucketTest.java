@@ -0,0 +1,74 @@
+package com.safeheron.client.resilience;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class TokenBucketTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final TokenBucket bucket = new TokenBucket(10, 3, clock::get);
+
+    @Test
+    public void burstIsAvailableAtOnceThenOnePermitPerInterval() {
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        clock.addAndGet(INTERVAL - 1);
+        assertFalse(bucket.tryAcquire());
+        clock.addAndGet(1);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void idleTimeFillsTheBucketUpToTheBurstOnly() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void reserveQueuesPermitsOneIntervalApart() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.reserve(0));
+        }
+        long maxWait = TimeUnit.SECONDS.toNanos(1);
+        assertEquals(INTERVAL, bucket.reserve(maxWait));
+        assertEquals(2 * INTERVAL, bucket.reserve(maxWait));
+
+        // too far away: nothing is reserved
+        assertEquals(-1, bucket.reserve(2 * INTERVAL));
+        assertEquals(3 * INTERVAL, bucket.reserve(maxWait));
+    }
+
+    @Test
+    public void releaseGivesBackAReservedPermit() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertEquals(INTERVAL, bucket.reserve(INTERVAL));
+        bucket.release();
+        assertEquals(INTERVAL, bucket.reserve(INTERVAL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateMustBePositive() {
+        new TokenBucket(0, 1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.safeheron.client.store;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * The index keeps put and get in agreement across resizes and hash collisions
+ *
+ * @author safeheron
+ */
+public class OffHeapHashIndexTest {
+
+    /**
+     * Stands in for the log: the key stored at each location
+     */
+    private final Map<Long, String> keys = new HashMap<>();
+    private final OffHeapHashIndex index = new OffHeapHashIndex(16);
+    private long nextLocation = 8;
+
+    @After
+    public void release() {
+        index.release();
+    }
+
+    private LongPredicate sameKey(String key) {
+        return location -> key.equals(keys.get(location));
+    }
+
+    private long put(String key, long hash) {
+        long location = nextLocation++;
+        keys.put(location, key);
+        return index.put(hash, location, sameKey(key));
+    }
+
+    private long get(String key, long hash) {
+        return index.get(hash, sameKey(key));
+    }
+
+    @Test
+    public void getAgreesWithPutAcrossResizes() {
+        int count = 100_000;
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = "tx-" + i;
+            Assert.assertEquals(0, put(key, OffHeapHashIndex.hash(key)));
+            expected.put(key, nextLocation - 1);
+        }
+        Assert.assertEquals(count, index.size());
+        Assert.assertTrue(index.memoryBytes() >= (long) count * OffHeapHashIndex.SLOT);
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getKey(), (long) entry.getValue(), get(entry.getKey(), OffHeapHashIndex.hash(entry.getKey())));
+        }
+        Assert.assertEquals(0, get("tx-" + count, OffHeapHashIndex.hash("tx-" + count)));
+    }
+
+    @Test
+    public void putReplacesAndReturnsTheOldLocation() {
+        String key = "tx-1";
+        put(key, OffHeapHashIndex.hash(key));
+        long first = nextLocation - 1;
+        Assert.assertEquals(first, put(key, OffHeapHashIndex.hash(key)));
+        Assert.assertEquals(nextLocation - 1, get(key, OffHeapHashIndex.hash(key)));
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void collidingHashesAreKeptApart() {
+        for (int i = 0; i < 1000; i++) {
+            put("tx-" + i, 42L);
+        }
+        for (int i = 0; i < 1000; i++) {
+            long location = get("tx-" + i, 42L);
+            Assert.assertEquals("tx-" + i, keys.get(location));
+        }
+        Assert.assertEquals(0, get("tx-1000", 42L));
+    }
+
+    @Test
+    public void largestTableFitsIntOffsets() {
+        Assert.assertTrue((long) OffHeapHashIndex.MAX_CAPACITY * OffHeapHashIndex.SLOT <= Integer.MAX_VALUE);
+    }
+}
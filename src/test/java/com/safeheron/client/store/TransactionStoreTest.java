@@ -0,0 +1,147 @@
+package com.safeheron.client.store;
+
+import com.safeheron.client.config.TransactionStoreConfig;
+import com.safeheron.client.response.TransactionsResponse;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Lookups, compaction and recovery of a store with small segments
+ *
+ * @author safeheron
+ */
+public class TransactionStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TransactionStoreConfig config() {
+        return TransactionStoreConfig.builder()
+                .directory(folder.getRoot().getPath())
+                .segmentSizeBytes(16 * 1024)
+                .initialIndexCapacity(16)
+                .build();
+    }
+
+    private static TransactionsResponse transaction(int i, String status) {
+        TransactionsResponse transaction = new TransactionsResponse();
+        transaction.setTxKey("tx-" + i);
+        transaction.setCustomerRefId(i % 3 == 0 ? null : "ref-" + i);
+        transaction.setTransactionStatus(status);
+        transaction.setTxAmount("1." + i);
+        return transaction;
+    }
+
+    private static void assertStored(TransactionStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            TransactionsResponse transaction = store.get("tx-" + i);
+            Assert.assertNotNull("tx-" + i, transaction);
+            Assert.assertEquals(i % 4 != 1 ? "COMPLETED" : "PROCESSING", transaction.getTransactionStatus());
+            Assert.assertEquals("1." + i, transaction.getTxAmount());
+            if (i % 3 != 0) {
+                Assert.assertEquals("tx-" + i, store.getByCustomerRefId("ref-" + i).getTxKey());
+            }
+        }
+    }
+
+    private void fill(TransactionStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            store.put(transaction(i, "PROCESSING"));
+        }
+        for (int i = 0; i < count; i++) {
+            if (i % 4 != 1) {
+                store.put(transaction(i, "COMPLETED"));
+            }
+        }
+    }
+
+    @Test
+    public void getReturnsTheLatestRecord() {
+        try (TransactionStore store = new TransactionStore(config())) {
+            fill(store, 2000);
+            Assert.assertEquals(2000, store.getSize());
+            assertStored(store, 2000);
+            Assert.assertNull(store.get("tx-2000"));
+            Assert.assertNull(store.getByCustomerRefId("ref-2000"));
+        }
+    }
+
+    @Test
+    public void compactionKeepsCurrentRecords() {
+        try (TransactionStore store = new TransactionStore(config())) {
+            fill(store, 2000);
+            int segments = store.getSegmentCount();
+            Assert.assertTrue(store.compact() > 0);
+            Assert.assertTrue(store.getSegmentCount() < segments);
+            assertStored(store, 2000);
+        }
+        try (TransactionStore store = new TransactionStore(config())) {
+            Assert.assertEquals(2000, store.getRecoveredRecords());
+            assertStored(store, 2000);
+        }
+    }
+
+    @Test
+    public void customerRefIdStaysWithTheNewerTransactionAfterCompaction() {
+        TransactionsResponse older = transaction(0, "FAILED");
+        older.setTxKey("tx-older");
+        older.setCustomerRefId("ref-reused");
+        TransactionsResponse newer = transaction(0, "COMPLETED");
+        newer.setTxKey("tx-newer");
+        newer.setCustomerRefId("ref-reused");
+        try (TransactionStore store = new TransactionStore(config())) {
+            store.put(older);
+            fill(store, 500);
+            store.put(newer);
+            // the older transaction is copied to the end of the log, after the newer one
+            Assert.assertTrue(store.compact() > 0);
+            Assert.assertEquals("tx-newer", store.getByCustomerRefId("ref-reused").getTxKey());
+        }
+        try (TransactionStore store = new TransactionStore(config())) {
+            Assert.assertEquals("tx-newer", store.getByCustomerRefId("ref-reused").getTxKey());
+            Assert.assertEquals("FAILED", store.get("tx-older").getTransactionStatus());
+            Assert.assertEquals("ref-reused", store.get("tx-older").getCustomerRefId());
+            assertStored(store, 500);
+        }
+    }
+
+    @Test
+    public void reopeningCutsOffATornTail() throws Exception {
+        try (TransactionStore store = new TransactionStore(config())) {
+            fill(store, 500);
+            store.put(transaction(9999, "COMPLETED"));
+        }
+        Path last;
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            last = files.sorted().reduce((a, b) -> b).get();
+        }
+        byte[] bytes = Files.readAllBytes(last);
+        int end = bytes.length;
+        while (bytes[end - 1] == 0) {
+            end--;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            file.seek(end - 5);
+            file.write(new byte[]{'x', 'x'});
+        }
+
+        try (TransactionStore store = new TransactionStore(config())) {
+            Assert.assertTrue(store.getTruncatedBytes() > 0);
+            Assert.assertNull(store.get("tx-9999"));
+            Assert.assertEquals(500, store.getSize());
+            assertStored(store, 500);
+            store.put(transaction(9999, "COMPLETED"));
+        }
+        try (TransactionStore store = new TransactionStore(config())) {
+            Assert.assertEquals(0, store.getTruncatedBytes());
+            Assert.assertEquals("COMPLETED", store.get("tx-9999").getTransactionStatus());
+        }
+    }
+}
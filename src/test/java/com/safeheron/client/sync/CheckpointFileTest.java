@@ -0,0 +1,41 @@
+package com.safeheron.client.sync;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class CheckpointFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsNothingBeforeTheFirstWrite() throws Exception {
+        assertNull(new CheckpointFile(folder.getRoot().toPath().resolve("sync.json")).read());
+    }
+
+    @Test
+    public void writeReplacesTheCheckpoint() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("sync.json");
+        CheckpointFile file = new CheckpointFile(path);
+        SyncCheckpoint first = new SyncCheckpoint();
+        first.setFromId("tx-1");
+        first.getPending().put("tx-1", "SUBMITTED/CONFIRMING");
+        file.write(first);
+        SyncCheckpoint second = new SyncCheckpoint();
+        second.setFromId("tx-2");
+        second.setCompletedTimeWatermark(1700000000000L);
+        file.write(second);
+
+        assertEquals(second, new CheckpointFile(path).read());
+        assertFalse(Files.exists(path.resolveSibling("sync.json.tmp")));
+    }
+}
@@ -0,0 +1,123 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.api.TransactionApiService;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.request.OneTransactionsRequest;
+import com.safeheron.client.response.OneTransactionsResponse;
+import com.safeheron.client.response.TransactionsResponse;
+import com.safeheron.client.utils.JsonUtil;
+import retrofit2.Call;
+import retrofit2.mock.Calls;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * TransactionApiService answering listTransactionsV2 and oneTransactions from a map of
+ * transactions, for tests of the sync helpers. Lists are ordered by createTime, then txKey,
+ * and paged with the fromId cursor; the other methods are not supported.
+ *
+ * @author safeheron
+ */
+final class FakeTransactionApi {
+
+    /**
+     * Transactions by txKey; tests change them between and during calls
+     */
+    final Map<String, TransactionsResponse> transactions = new ConcurrentHashMap<>();
+
+    /**
+     * listTransactionsV2 requests, copied, and txKeys looked up with oneTransactions
+     */
+    final List<ListTransactionsV2Request> lists = new CopyOnWriteArrayList<>();
+    final List<String> lookups = new CopyOnWriteArrayList<>();
+
+    /**
+     * Pages answer in descending createTime order
+     */
+    volatile boolean descending;
+
+    /**
+     * listTransactionsV2 requests failing with an IOException
+     */
+    volatile Predicate<ListTransactionsV2Request> failing = request -> false;
+
+    final TransactionApiService api = (TransactionApiService) Proxy.newProxyInstance(
+            TransactionApiService.class.getClassLoader(), new Class<?>[]{TransactionApiService.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "listTransactionsV2":
+                        return list((ListTransactionsV2Request) args[0]);
+                    case "oneTransactions":
+                        return one((OneTransactionsRequest) args[0]);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    TransactionsResponse put(String txKey, long createTime, String status, Long completedTime) {
+        TransactionsResponse transaction = new TransactionsResponse();
+        transaction.setTxKey(txKey);
+        transaction.setCreateTime(createTime);
+        transaction.setTransactionStatus(status);
+        transaction.setTransactionSubStatus(status);
+        transaction.setCompletedTime(completedTime);
+        transactions.put(txKey, transaction);
+        return transaction;
+    }
+
+    private Call<List<TransactionsResponse>> list(ListTransactionsV2Request request) {
+        ListTransactionsV2Request copy = JsonUtil.getObjectMapper().convertValue(request, ListTransactionsV2Request.class);
+        lists.add(copy);
+        if (failing.test(copy)) {
+            return Calls.failure(new IOException("rejected"));
+        }
+        Comparator<TransactionsResponse> order = Comparator.comparing(TransactionsResponse::getCreateTime)
+                .thenComparing(TransactionsResponse::getTxKey);
+        List<TransactionsResponse> matching = new ArrayList<>();
+        for (TransactionsResponse transaction : transactions.values()) {
+            if (matches(copy, transaction)) {
+                matching.add(copy(transaction));
+            }
+        }
+        matching.sort(descending ? order.reversed() : order);
+        int start = 0;
+        if (copy.getFromId() != null) {
+            while (start < matching.size() && !matching.get(start).getTxKey().equals(copy.getFromId())) {
+                start++;
+            }
+            if (start == matching.size()) {
+                throw new IllegalStateException("fromId " + copy.getFromId() + " is not in the list");
+            }
+            start++;
+        }
+        int end = (int) Math.min(matching.size(), start + copy.getLimit());
+        return Calls.response(new ArrayList<>(matching.subList(start, end)));
+    }
+
+    private static boolean matches(ListTransactionsV2Request request, TransactionsResponse transaction) {
+        long createTime = transaction.getCreateTime();
+        Long completedTime = transaction.getCompletedTime();
+        return (request.getCreateTimeMin() == null || createTime >= request.getCreateTimeMin())
+                && (request.getCreateTimeMax() == null || createTime <= request.getCreateTimeMax())
+                && (request.getCompletedTimeMin() == null
+                || (completedTime != null && completedTime >= request.getCompletedTimeMin()));
+    }
+
+    private Call<OneTransactionsResponse> one(OneTransactionsRequest request) {
+        lookups.add(request.getTxKey());
+        TransactionsResponse transaction = transactions.get(request.getTxKey());
+        return Calls.response(JsonUtil.getObjectMapper().convertValue(transaction, OneTransactionsResponse.class));
+    }
+
+    private static TransactionsResponse copy(TransactionsResponse transaction) {
+        return JsonUtil.getObjectMapper().convertValue(transaction, TransactionsResponse.class);
+    }
+}
@@ -0,0 +1,97 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.config.BackfillConfig;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.request.ListTransactionsV2Request;
+import com.safeheron.client.response.TransactionsResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class TransactionBackfillTest {
+
+    private final FakeTransactionApi api = new FakeTransactionApi();
+    private final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+    private final TransactionSink sink = transactions -> {
+        for (TransactionsResponse transaction : transactions) {
+            received.computeIfAbsent(transaction.getTxKey(), txKey -> new AtomicInteger()).incrementAndGet();
+        }
+    };
+    private final BackfillConfig config = BackfillConfig.builder()
+            .parallelism(4)
+            .initialShards(4)
+            .targetShardSize(20)
+            .minShardMillis(1L)
+            .pageSize(10L)
+            .build();
+
+    @Before
+    public void setUp() {
+        int n = 0;
+        for (long createTime = 0; createTime <= 1000; createTime++) {
+            // the initial shard boundaries, and every tenth millisecond, hold many transactions
+            int count = createTime % 250 == 0 ? 35 : createTime % 10 == 0 ? 12 : 1;
+            for (int i = 0; i < count; i++) {
+                api.put(String.format("tx-%05d", n++), createTime, "COMPLETED", createTime);
+            }
+        }
+        // outside the range
+        api.put("tx-before", -1, "COMPLETED", -1L);
+        api.put("tx-after", 1001, "COMPLETED", 1001L);
+    }
+
+    private void assertEachOnce(BackfillResult result) {
+        int expected = api.transactions.size() - 2;
+        assertEquals(expected, received.size());
+        for (Map.Entry<String, AtomicInteger> entry : received.entrySet()) {
+            assertEquals(entry.getKey(), 1, entry.getValue().get());
+        }
+        assertFalse(received.containsKey("tx-before"));
+        assertFalse(received.containsKey("tx-after"));
+        assertEquals(expected, result.getTransactions());
+        assertTrue("the shards were split", result.getSplits() > 0);
+        assertTrue("boundaries were seen twice", result.getDuplicates() > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void ascendingPagesReachTheSinkOnce() {
+        assertEachOnce(new TransactionBackfill(api.api, config).run(new ListTransactionsV2Request(), 0, 1000, sink));
+    }
+
+    @Test(timeout = 60000)
+    public void descendingPagesReachTheSinkOnce() {
+        api.descending = true;
+        assertEachOnce(new TransactionBackfill(api.api, config).run(new ListTransactionsV2Request(), 0, 1000, sink));
+    }
+
+    @Test(timeout = 60000)
+    public void failedPageFailsTheRun() {
+        api.failing = request -> request.getFromId() != null && request.getCreateTimeMin() >= 500;
+        try {
+            new TransactionBackfill(api.api, config).run(new ListTransactionsV2Request(), 0, 1000, sink);
+            fail("a page failed");
+        } catch (SafeheronException expected) {
+            assertEquals(500, (int) expected.getCode());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void sinkFailureFailsTheRun() {
+        try {
+            new TransactionBackfill(api.api, config).run(new ListTransactionsV2Request(), 0, 1000, transactions -> {
+                throw new Exception("sink is down");
+            });
+            fail("the sink failed");
+        } catch (SafeheronException expected) {
+            assertTrue(expected.getMessage().contains("sink is down"));
+        }
+    }
+}
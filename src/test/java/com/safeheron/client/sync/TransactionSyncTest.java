@@ -0,0 +1,185 @@
+package com.safeheron.client.sync;
+
+import com.safeheron.client.config.SyncConfig;
+import com.safeheron.client.exception.SafeheronException;
+import com.safeheron.client.response.TransactionsResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class TransactionSyncTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeTransactionApi api = new FakeTransactionApi();
+    private final RecordingSink sink = new RecordingSink();
+    private final long now = System.currentTimeMillis();
+    private SyncConfig config;
+
+    @Before
+    public void setUp() {
+        config = SyncConfig.builder()
+                .checkpointFile(folder.getRoot().toPath().resolve("sync.json").toString())
+                .pageSize(2L)
+                .build();
+    }
+
+    private TransactionSync sync() {
+        return new TransactionSync(api.api, config, sink);
+    }
+
+    @Test
+    public void completedAndPendingTransactionsAreDeliveredOnce() {
+        api.put("tx-1", now - 3 * DAY, "COMPLETED", now - 3 * DAY);
+        api.put("tx-2", now - 2 * DAY, "COMPLETED", now - 2 * DAY);
+        api.put("tx-3", now - 5000, "COMPLETED", now - 1000);
+        api.put("tx-4", now - 4000, "SUBMITTED", null);
+        TransactionSync sync = sync();
+
+        assertEquals(4, sync.syncOnce());
+        // the next scan overlaps tx-3, which is skipped
+        assertEquals(0, sync.syncOnce());
+
+        assertEquals(Arrays.asList("tx-1", "tx-2", "tx-3", "tx-4"), sink.txKeys());
+        assertEquals(Collections.singleton("tx-4"), sync.getCheckpoint().getPending().keySet());
+    }
+
+    @Test
+    public void restartResumesFromTheCursorAndRedeliversTheFailedPage() {
+        for (int i = 1; i <= 5; i++) {
+            api.put("tx-" + i, now - 10 * DAY + i, "COMPLETED", now - 10 * DAY + i);
+        }
+        sink.failOnCall = 2;
+        try {
+            sync().syncOnce();
+            fail("the sink failed");
+        } catch (SafeheronException expected) {
+            assertEquals(500, (int) expected.getCode());
+        }
+        sink.failOnCall = 0;
+        int listed = api.lists.size();
+
+        // a new instance reads the checkpoint written after the first page
+        TransactionSync restarted = sync();
+        assertEquals(3, restarted.syncOnce());
+
+        assertEquals(Arrays.asList(Arrays.asList("tx-1", "tx-2"), Arrays.asList("tx-3", "tx-4"),
+                Arrays.asList("tx-3", "tx-4"), Arrays.asList("tx-5")), sink.pages);
+        assertEquals("tx-2", api.lists.get(listed).getFromId());
+    }
+
+    @Test
+    public void pendingTransactionIsDeliveredAgainWhenItCompletes() {
+        TransactionsResponse transaction = api.put("tx-1", now - 5000, "SUBMITTED", null);
+        TransactionSync sync = sync();
+        assertEquals(1, sync.syncOnce());
+        assertEquals(0, sync.syncOnce());
+
+        transaction.setTransactionStatus("SIGNING");
+        transaction.setTransactionSubStatus("SIGNING");
+        assertEquals(1, sync.syncOnce());
+
+        transaction.setTransactionStatus("COMPLETED");
+        transaction.setTransactionSubStatus("CONFIRMED");
+        transaction.setCompletedTime(now);
+        assertEquals(1, sync.syncOnce());
+        assertEquals(0, sync.syncOnce());
+
+        assertEquals(Arrays.asList("SUBMITTED", "SIGNING", "COMPLETED"), sink.statuses());
+        assertTrue(sync.getCheckpoint().getPending().isEmpty());
+        assertTrue(sync.getCheckpoint().getRecent().containsKey("tx-1"));
+    }
+
+    @Test
+    public void pendingTransactionOutsideTheRecheckWindowIsLookedUp() {
+        TransactionsResponse transaction = api.put("tx-1", now - 5000, "SUBMITTED", null);
+        TransactionSync sync = sync();
+        assertEquals(1, sync.syncOnce());
+        assertTrue(api.lookups.isEmpty());
+
+        // the window has moved past it
+        transaction.setCreateTime(now - 2 * DAY);
+        assertEquals(0, sync.syncOnce());
+        transaction.setTransactionStatus("SIGNING");
+        assertEquals(1, sync.syncOnce());
+
+        assertEquals(Arrays.asList("tx-1", "tx-1"), api.lookups);
+        assertEquals(Arrays.asList("SUBMITTED", "SIGNING"), sink.statuses());
+    }
+
+    @Test
+    public void transactionCompletedBehindTheCursorIsDeliveredByTheNextScan() {
+        api.put("tx-1", now - 10 * DAY, "COMPLETED", now - 10 * DAY);
+        TransactionsResponse passed = api.put("tx-2", now - 10 * DAY + 1, "SIGNING", null);
+        api.put("tx-3", now - 10 * DAY + 2, "COMPLETED", now - 10 * DAY + 2);
+        TransactionsResponse ahead = api.put("tx-4", now - 10 * DAY + 3, "SIGNING", null);
+        sink.afterCall = call -> {
+            if (call == 1) {
+                // while the scan runs: tx-2, behind the cursor, completes; then tx-4, ahead of it, two minutes later
+                passed.setTransactionStatus("COMPLETED");
+                passed.setCompletedTime(now + 1000);
+                ahead.setTransactionStatus("COMPLETED");
+                ahead.setCompletedTime(now + 121000);
+            }
+        };
+        config.setStartCompletedTime(now - 30 * DAY);
+        TransactionSync sync = sync();
+        assertEquals(3, sync.syncOnce());
+        assertEquals(1, sync.syncOnce());
+        assertEquals(0, sync.syncOnce());
+
+        assertEquals(Arrays.asList("tx-1", "tx-3", "tx-4", "tx-2"), sink.txKeys());
+    }
+
+    private static final class RecordingSink implements TransactionSink {
+        final List<List<String>> pages = new ArrayList<>();
+        final List<String> statuses = new ArrayList<>();
+        int calls;
+        int failOnCall;
+        IntConsumer afterCall = call -> {
+        };
+
+        @Override
+        public void accept(List<TransactionsResponse> transactions) throws Exception {
+            calls++;
+            List<String> page = new ArrayList<>();
+            for (TransactionsResponse transaction : transactions) {
+                page.add(transaction.getTxKey());
+                statuses.add(transaction.getTransactionStatus());
+            }
+            pages.add(page);
+            if (calls == failOnCall) {
+                throw new Exception("sink is down");
+            }
+            afterCall.accept(calls);
+        }
+
+        List<String> txKeys() {
+            List<String> txKeys = new ArrayList<>();
+            for (List<String> page : pages) {
+                txKeys.addAll(page);
+            }
+            return txKeys;
+        }
+
+        List<String> statuses() {
+            return statuses;
+        }
+    }
+}
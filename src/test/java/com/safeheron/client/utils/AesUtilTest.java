@@ -0,0 +1,119 @@
+package com.safeheron.client.utils;
+
+import com.safeheron.client.config.AESTypeEnum;
+import com.safeheron.client.config.CryptoProviderEnum;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * The JDK and BouncyCastle providers must be interchangeable: same ciphertext, and each
+ * decrypts what the other encrypted
+ *
+ * @author safeheron
+ */
+public class AesUtilTest {
+
+    private static final int[] LENGTHS = {1, 15, 16, 17, 31, 32, 100, 4096};
+
+    private static String content(int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        return new String(chars);
+    }
+
+    private static String encrypt(String content, byte[] aesKey, byte[] iv, AESTypeEnum aesType,
+                                  CryptoProviderEnum provider) throws Exception {
+        return AesUtil.encrypt(content, aesKey, iv, aesType, provider);
+    }
+
+    private static void assertInterchangeable(AESTypeEnum aesType) throws Exception {
+        byte[] aesKey = AesUtil.generateAESKey();
+        for (int length : LENGTHS) {
+            String content = content(length);
+            // a fresh IV per encryption: a GCM cipher refuses to encrypt twice with one key and IV
+            byte[] iv = AesUtil.generateIvKey();
+            String jdk = encrypt(content, aesKey, iv, aesType, CryptoProviderEnum.JDK);
+            String bc = encrypt(content, aesKey, iv, aesType, CryptoProviderEnum.BOUNCY_CASTLE);
+            assertEquals(aesType + " " + length, bc, jdk);
+            assertEquals(content, AesUtil.decrypt(bc, aesKey, iv, aesType, CryptoProviderEnum.JDK));
+            assertEquals(content, AesUtil.decrypt(jdk, aesKey, iv, aesType, CryptoProviderEnum.BOUNCY_CASTLE));
+
+            byte[] autoIv = AesUtil.generateIvKey();
+            assertEquals(encrypt(content, aesKey, autoIv, aesType, CryptoProviderEnum.BOUNCY_CASTLE),
+                    encrypt(content, aesKey, autoIv, aesType, CryptoProviderEnum.AUTO));
+        }
+    }
+
+    @Test
+    public void gcmProvidersAreInterchangeable() throws Exception {
+        assertInterchangeable(AESTypeEnum.GCM);
+    }
+
+    @Test
+    public void cbcProvidersAreInterchangeable() throws Exception {
+        // the JDK spells BouncyCastle's PKCS7Padding as PKCS5Padding
+        assertInterchangeable(AESTypeEnum.CBC);
+    }
+
+    @Test
+    public void cbcPadsAFullBlockToAFurtherBlock() throws Exception {
+        byte[] aesKey = AesUtil.generateAESKey();
+        for (CryptoProviderEnum provider : new CryptoProviderEnum[]{CryptoProviderEnum.JDK, CryptoProviderEnum.BOUNCY_CASTLE}) {
+            byte[] ciphertext = Base64.getDecoder().decode(
+                    encrypt(content(16), aesKey, AesUtil.generateIvKey(), AESTypeEnum.CBC, provider));
+            assertEquals(provider.name(), 32, ciphertext.length);
+        }
+    }
+
+    @Test
+    public void bytesAndStringEncryptionAgree() throws Exception {
+        byte[] aesKey = AesUtil.generateAESKey();
+        byte[] iv = AesUtil.generateIvKey();
+        byte[] framed = "xx{\"txKey\":\"tx-1\"}yy".getBytes(StandardCharsets.UTF_8);
+        byte[] ciphertext = AesUtil.encrypt(framed, 2, framed.length - 4, aesKey, iv, AESTypeEnum.GCM, CryptoProviderEnum.BOUNCY_CASTLE);
+
+        assertEquals("{\"txKey\":\"tx-1\"}", AesUtil.decrypt(Base64.getEncoder().encodeToString(ciphertext),
+                aesKey, iv, AESTypeEnum.GCM, CryptoProviderEnum.JDK));
+    }
+
+    @Test
+    public void streamDecryptionChecksTheTagAtTheEnd() throws Exception {
+        byte[] aesKey = AesUtil.generateAESKey();
+        for (CryptoProviderEnum provider : new CryptoProviderEnum[]{CryptoProviderEnum.JDK, CryptoProviderEnum.BOUNCY_CASTLE}) {
+            byte[] iv = AesUtil.generateIvKey();
+            String content = content(1000);
+            byte[] ciphertext = Base64.getDecoder().decode(encrypt(content, aesKey, iv, AESTypeEnum.GCM, provider));
+            assertEquals(content, new String(readAll(AesUtil.decrypt(new ByteArrayInputStream(ciphertext),
+                    aesKey, iv, AESTypeEnum.GCM, provider)), StandardCharsets.UTF_8));
+
+            byte[] tampered = Arrays.copyOf(ciphertext, ciphertext.length);
+            tampered[tampered.length - 1] ^= 1;
+            try {
+                readAll(AesUtil.decrypt(new ByteArrayInputStream(tampered), aesKey, iv, AESTypeEnum.GCM, provider));
+                fail(provider + " accepted a tampered tag");
+            } catch (IOException expected) {
+                // the tag is checked once the stream is read to the end
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        for (int n; (n = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package com.safeheron.client.utils;
+
+import com.safeheron.client.api.AccountApiService;
+import com.safeheron.client.config.ClientRegistryConfig;
+import com.safeheron.client.config.SafeheronConfig;
+import com.safeheron.client.config.TransportConfig;
+import com.safeheron.client.request.ListAccountRequest;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class ClientRegistryTest {
+
+    private static String privateKey;
+    private static String publicKey;
+
+    private final ClientRegistry registry = new ClientRegistry(ClientRegistryConfig.builder().maxClients(2).build());
+
+    @BeforeClass
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    }
+
+    @After
+    public void close() {
+        registry.close();
+    }
+
+    private static SafeheronConfig config(String apiKey, TransportConfig transport) {
+        return SafeheronConfig.builder()
+                // nothing listens on port 1, so requests fail at once
+                .baseUrl("http://127.0.0.1:1/")
+                .apiKey(apiKey)
+                .rsaPrivateKey(privateKey)
+                .safeheronRsaPublicKey(publicKey)
+                .transport(transport)
+                .build();
+    }
+
+    @Test
+    public void requestsKeepTheClientRecentlyUsed() throws Exception {
+        AccountApiService first = registry.create(AccountApiService.class, config("first", TransportConfig.builder().build()));
+        Thread.sleep(2);
+        registry.create(AccountApiService.class, config("second", TransportConfig.builder().build()));
+        Thread.sleep(2);
+        try {
+            first.listAccounts(new ListAccountRequest()).execute();
+            fail("nothing listens on the port");
+        } catch (Exception expected) {
+            // the request still counts as use
+        }
+        Thread.sleep(2);
+        registry.create(AccountApiService.class, config("third", TransportConfig.builder().build()));
+
+        assertEquals(1, registry.getEvictions());
+        assertTrue(registry.invalidate("first"));
+        assertFalse(registry.invalidate("second"));
+    }
+
+    @Test
+    public void changingTheTransportConfigLaterDoesNotAffectTheRegistry() {
+        TransportConfig transport = TransportConfig.builder().build();
+        registry.create(AccountApiService.class, config("first", transport));
+        transport.setMaxRequestsPerHost(64);
+        registry.create(AccountApiService.class, config("second", TransportConfig.builder().build()));
+
+        assertEquals(1, registry.getTransportCount());
+    }
+
+    @Test
+    public void dispatcherLimitsFollowTheClientsOnTheTransport() {
+        TransportConfig transport = TransportConfig.builder().build();
+        registry.create(AccountApiService.class, config("first", transport));
+        assertEquals(5, registry.dispatcher(transport).getMaxRequestsPerHost());
+        assertEquals(64, registry.dispatcher(transport).getMaxRequests());
+
+        registry.create(AccountApiService.class, config("second", transport));
+        assertEquals(10, registry.dispatcher(transport).getMaxRequestsPerHost());
+        assertEquals(128, registry.dispatcher(transport).getMaxRequests());
+
+        // beyond maxClients, one client is evicted for the new one
+        registry.create(AccountApiService.class, config("third", transport));
+        assertEquals(10, registry.dispatcher(transport).getMaxRequestsPerHost());
+
+        registry.invalidate("third");
+        assertEquals(5, registry.dispatcher(transport).getMaxRequestsPerHost());
+    }
+}
@@ -0,0 +1,141 @@
+package com.safeheron.client.utils;
+
+import com.safeheron.client.config.CryptoRejectionPolicyEnum;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * The envelope key must never be handed out, and must be wiped, when the signature fails
+ *
+ * @author safeheron
+ */
+public class CryptoStagesTest {
+
+    private final CryptoStageTimings timings = new CryptoStageTimings();
+    private final AtomicInteger decryptions = new AtomicInteger();
+    private final byte[] key = new byte[48];
+    private CryptoExecutor executor;
+
+    @After
+    public void close() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    private byte[] decryptKey() {
+        Arrays.fill(key, (byte) 7);
+        decryptions.incrementAndGet();
+        return key;
+    }
+
+    private boolean wiped() {
+        for (byte b : key) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void awaitWiped() throws InterruptedException {
+        while (decryptions.get() == 0 || !wiped()) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void withoutExecutorTheKeyIsNotDecryptedForABadSignature() throws Exception {
+        assertNull(CryptoStages.verifyAndDecryptKey(() -> false, this::decryptKey, null, true, timings));
+        assertEquals(0, decryptions.get());
+
+        assertSame(key, CryptoStages.verifyAndDecryptKey(() -> true, this::decryptKey, null, true, timings));
+        assertEquals(7, key[0]);
+    }
+
+    @Test
+    public void withoutOverlapTheKeyIsNotDecryptedForABadSignature() throws Exception {
+        executor = new CryptoExecutor(2, 8, CryptoRejectionPolicyEnum.ABORT);
+        assertNull(CryptoStages.verifyAndDecryptKey(() -> false, this::decryptKey, executor, false, timings));
+        assertEquals(0, decryptions.get());
+    }
+
+    @Test(timeout = 10000)
+    public void overlappedKeyIsWipedWhenTheSignatureFails() throws Exception {
+        executor = new CryptoExecutor(2, 8, CryptoRejectionPolicyEnum.ABORT);
+        CountDownLatch verified = new CountDownLatch(1);
+        byte[] result = CryptoStages.verifyAndDecryptKey(() -> {
+            verified.countDown();
+            return false;
+        }, () -> {
+            // finish after the verdict, so the key is wiped when it arrives
+            verified.await();
+            Thread.sleep(50);
+            return decryptKey();
+        }, executor, true, timings);
+
+        assertNull(result);
+        awaitWiped();
+        assertEquals(1, decryptions.get());
+    }
+
+    @Test(timeout = 10000)
+    public void overlappedKeyIsWipedWhenVerificationThrows() throws Exception {
+        executor = new CryptoExecutor(2, 8, CryptoRejectionPolicyEnum.ABORT);
+        try {
+            CryptoStages.verifyAndDecryptKey(() -> {
+                throw new IllegalStateException("malformed signature");
+            }, this::decryptKey, executor, true, timings);
+            fail("verification failed");
+        } catch (IllegalStateException expected) {
+            awaitWiped();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void overlappedKeyIsHandedOutForAGoodSignature() throws Exception {
+        executor = new CryptoExecutor(2, 8, CryptoRejectionPolicyEnum.ABORT);
+        assertSame(key, CryptoStages.verifyAndDecryptKey(() -> true, this::decryptKey, executor, true, timings));
+        assertEquals(7, key[key.length - 1]);
+    }
+
+    @Test(timeout = 10000)
+    public void callerRunsKeyIsWipedWhenTheSignatureFails() throws Exception {
+        executor = new CryptoExecutor(1, 1, CryptoRejectionPolicyEnum.CALLER_RUNS);
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        busy.await();
+        executor.execute(() -> {
+        });
+        Thread caller = Thread.currentThread();
+        try {
+            byte[] result = CryptoStages.verifyAndDecryptKey(() -> {
+                assertSame(caller, Thread.currentThread());
+                return false;
+            }, () -> {
+                assertSame(caller, Thread.currentThread());
+                return decryptKey();
+            }, executor, true, timings);
+
+            assertNull(result);
+            assertTrue("wiped before returning", wiped());
+            assertEquals(2, executor.getCallerRuns());
+        } finally {
+            release.countDown();
+        }
+    }
+}
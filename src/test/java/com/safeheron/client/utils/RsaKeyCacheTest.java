@@ -0,0 +1,49 @@
+package com.safeheron.client.utils;
+
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class RsaKeyCacheTest {
+
+    @Test
+    public void lruDropsTheLeastRecentlyUsedBeyondItsSize() {
+        RsaKeyCache.Lru<String> lru = new RsaKeyCache.Lru<>(2);
+        lru.putIfAbsent("a", "A");
+        lru.putIfAbsent("b", "B");
+        assertEquals("A", lru.get("a"));
+        lru.putIfAbsent("c", "C");
+
+        assertEquals(2, lru.size());
+        assertEquals("A", lru.get("a"));
+        assertNull(lru.get("b"));
+        assertEquals("C", lru.get("c"));
+    }
+
+    @Test
+    public void lruKeepsTheFirstValueOfAKey() {
+        RsaKeyCache.Lru<String> lru = new RsaKeyCache.Lru<>(2);
+        assertEquals("A", lru.putIfAbsent("a", "A"));
+        assertEquals("A", lru.putIfAbsent("a", "other"));
+    }
+
+    @Test
+    public void publicKeyIsParsedOnce() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        String encoded = Base64.getEncoder().encodeToString(generator.generateKeyPair().getPublic().getEncoded());
+
+        PublicKey first = RsaKeyCache.getPublicKey(encoded);
+        assertSame(first, RsaKeyCache.getPublicKey(encoded));
+        RsaKeyCache.clear();
+        assertNotSame(first, RsaKeyCache.getPublicKey(encoded));
+        assertEquals(first, RsaKeyCache.getPublicKey(encoded));
+    }
+}
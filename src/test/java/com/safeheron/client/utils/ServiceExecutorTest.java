@@ -0,0 +1,143 @@
+package com.safeheron.client.utils;
+
+import com.safeheron.client.exception.SafeheronException;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author safeheron
+ */
+public class ServiceExecutorTest {
+
+    private final MockWebServer server = new MockWebServer();
+
+    @Before
+    public void start() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    private Ping api(Interceptor... interceptors) {
+        OkHttpClient.Builder client = new OkHttpClient.Builder();
+        for (Interceptor interceptor : interceptors) {
+            client.addInterceptor(interceptor);
+        }
+        return new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .client(client.build())
+                .build()
+                .create(Ping.class);
+    }
+
+    private static SafeheronException failure(CompletableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+            throw new AssertionError("the call succeeded");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SafeheronException);
+            return (SafeheronException) e.getCause();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void bodyOfASuccessfulResponse() throws Exception {
+        server.enqueue(new MockResponse().setBody("pong"));
+        assertEquals("pong", ServiceExecutor.executeAsync(api().ping()).get().string());
+    }
+
+    @Test(timeout = 10000)
+    public void errorResponseFailsWithItsBody() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("try later"));
+        SafeheronException exception = failure(ServiceExecutor.executeAsync(api().ping()));
+
+        assertEquals(500, (int) exception.getCode());
+        assertTrue(exception.getMessage().contains("try later"));
+    }
+
+    @Test(timeout = 10000)
+    public void cancellingTheFutureCancelsTheCall() throws Exception {
+        server.enqueue(new MockResponse().setBody("pong").setHeadersDelay(5, TimeUnit.SECONDS));
+        Call<ResponseBody> call = api().ping();
+        CompletableFuture<ResponseBody> future = ServiceExecutor.executeAsync(call);
+        server.takeRequest();
+
+        assertTrue(future.cancel(true));
+        assertTrue(call.isCanceled());
+    }
+
+    @Test(timeout = 10000)
+    public void safeheronExceptionCausingAnIOExceptionIsUnwrapped() throws Exception {
+        SafeheronException refused = new SafeheronException(429, "rate limit exceeded");
+        Ping api = api(chain -> {
+            throw new IOException(refused.getMessage(), refused);
+        });
+        assertSame(refused, failure(ServiceExecutor.executeAsync(api.ping())));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test(timeout = 10000)
+    public void runtimeExceptionOfAnInterceptorIsUnwrapped() throws Exception {
+        // OkHttp reports it as IOException("canceled due to ...") with the exception suppressed
+        SafeheronException refused = new SafeheronException(503, "circuit open");
+        Ping api = api(chain -> {
+            throw refused;
+        });
+        assertSame(refused, failure(ServiceExecutor.executeAsync(api.ping())));
+    }
+
+    @Test(timeout = 10000)
+    public void connectionFailureKeepsItsCause() throws Exception {
+        Ping api = api();
+        server.shutdown();
+        SafeheronException exception = failure(ServiceExecutor.executeAsync(api.ping()));
+
+        assertEquals(500, (int) exception.getCode());
+        assertTrue(exception.getCause() instanceof IOException);
+    }
+
+    @Test(timeout = 10000)
+    public void futureCompletesOnTheGivenExecutor() throws Exception {
+        server.enqueue(new MockResponse().setBody("pong"));
+        server.enqueue(new MockResponse().setBody("pong"));
+        Thread[] completedOn = new Thread[1];
+        CompletableFuture<ResponseBody> future = ServiceExecutor.executeAsync(api().ping(), command -> {
+            Thread thread = new Thread(command, "completion");
+            completedOn[0] = thread;
+            thread.start();
+        });
+        assertEquals("pong", future.get().string());
+        assertEquals("completion", completedOn[0].getName());
+
+        // a rejected completion runs on the dispatcher thread instead
+        CompletableFuture<ResponseBody> rejected = ServiceExecutor.executeAsync(api().ping(), command -> {
+            throw new RejectedExecutionException("shut down");
+        });
+        assertEquals("pong", rejected.get().string());
+    }
+
+    interface Ping {
+        @GET("/v1/ping")
+        Call<ResponseBody> ping();
+    }
+}
@@ -0,0 +1,153 @@
+package com.safeheron.client.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Golden test: SignContent must produce exactly the bytes of the TreeMap join it replaced
+ *
+ * @author safeheron
+ */
+public class SignContentTest {
+
+    private static String treeMapJoin(String... keyValues) {
+        Map<String, String> sigMap = new TreeMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            sigMap.put(keyValues[i], keyValues[i + 1]);
+        }
+        return sigMap.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"));
+    }
+
+    private static byte[] signContent(String... keyValues) {
+        SignContent content = SignContent.begin();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            content.add(keyValues[i], keyValues[i + 1]);
+        }
+        return Arrays.copyOf(content.buffer(), content.length());
+    }
+
+    private static void assertGolden(String... keyValues) {
+        byte[] expected = treeMapJoin(keyValues).getBytes(StandardCharsets.UTF_8);
+        Assert.assertArrayEquals(expected, signContent(keyValues));
+    }
+
+    @Test
+    public void requestContent() {
+        assertGolden("apiKey", "0bd0e5a9a3f54ab2b2e9d6b1a7a6c5c1",
+                "bizContent", "q1mO2fC+/a9w7lsH0Q==",
+                "key", "Zm9vYmFy+/==",
+                "timestamp", "1700000000000");
+    }
+
+    @Test
+    public void responseContent() {
+        assertGolden("bizContent", "q1mO2fC+/a9w7lsH0Q==",
+                "code", "200",
+                "key", "Zm9vYmFy+/==",
+                "message", "SUCCESS",
+                "timestamp", "1700000000000");
+    }
+
+    @Test
+    public void coSignerV3Content() {
+        assertGolden("bizContent", "eyJhIjoiYiJ9",
+                "timestamp", "1700000000000",
+                "version", "v3");
+    }
+
+    @Test
+    public void nullAndEmptyValues() {
+        assertGolden("bizContent", null,
+                "code", "200",
+                "key", "",
+                "message", null,
+                "timestamp", "1700000000000");
+    }
+
+    @Test
+    public void nonAsciiValues() {
+        assertGolden("bizContent", "abc",
+                "code", "1002",
+                "key", "k",
+                "message", "签名错误 é 😀",
+                "timestamp", "1700000000000");
+    }
+
+    @Test
+    public void largeValue() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.append((char) ('A' + i % 26));
+        }
+        assertGolden("bizContent", builder.toString(),
+                "key", "k",
+                "timestamp", "1700000000000");
+    }
+
+    @Test
+    public void bufferIsReused() {
+        assertGolden("bizContent", "first, a much longer value than the next one",
+                "key", "k1",
+                "timestamp", "1");
+        assertGolden("bizContent", "second",
+                "key", "k2",
+                "timestamp", "2");
+    }
+
+    @Test
+    public void byteValueMatchesStringValue() throws Exception {
+        byte[] bizContent = "x-q1mO2fC+/a9w7lsH0Q==-x".getBytes(StandardCharsets.UTF_8);
+        SignContent content = SignContent.begin()
+                .add("bizContent", bizContent, 2, bizContent.length - 4)
+                .add("key", "k");
+        Assert.assertEquals(treeMapJoin("bizContent", "q1mO2fC+/a9w7lsH0Q==", "key", "k"), content.toString());
+    }
+
+    @Test
+    public void streamedIntoSignature() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        String bizContent = builder.toString();
+        String expected = treeMapJoin("bizContent", bizContent, "code", "200", "key", "k",
+                "message", "SUCCESS", "timestamp", "1700000000000");
+        String sig = RsaUtil.sign(expected, keyPair.getPrivate());
+
+        byte[] raw = bizContent.getBytes(StandardCharsets.UTF_8);
+        Signature signature = SignContent.begin(RsaUtil.initVerify(keyPair.getPublic()))
+                .add("bizContent", raw, 0, raw.length)
+                .add("code", "200")
+                .add("key", "k")
+                .add("message", "SUCCESS")
+                .add("timestamp", "1700000000000")
+                .finish();
+        Assert.assertTrue(signature.verify(Base64.getDecoder().decode(sig)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void keysOutOfOrder() {
+        SignContent.begin().add("timestamp", "1").add("key", "k");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicateKey() {
+        SignContent.begin().add("key", "a").add("key", "b");
+    }
+}